@@ -0,0 +1,16 @@
+package guru.springfamework.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * The v1 API on WebFlux and R2DBC, for deployments with many concurrent, mostly idle connections.
+ * Requests and responses are the same as in the Spring MVC application.
+ */
+@SpringBootApplication
+public class ReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveApplication.class, args);
+    }
+}
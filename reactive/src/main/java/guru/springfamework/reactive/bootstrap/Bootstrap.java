@@ -0,0 +1,70 @@
+package guru.springfamework.reactive.bootstrap;
+
+import guru.springfamework.reactive.domain.Category;
+import guru.springfamework.reactive.domain.Customer;
+import guru.springfamework.reactive.domain.Vendor;
+import guru.springfamework.reactive.repositories.CategoryRepository;
+import guru.springfamework.reactive.repositories.CustomerRepository;
+import guru.springfamework.reactive.repositories.VendorRepository;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Loads the same seed data as the MVC application. Blocking is fine here, the server is not accepting requests yet.
+ */
+@Component
+public class Bootstrap implements CommandLineRunner {
+
+    private final CategoryRepository categoryRepository;
+    private final CustomerRepository customerRepository;
+    private final VendorRepository vendorRepository;
+
+    public Bootstrap(CategoryRepository categoryRepository, CustomerRepository customerRepository, VendorRepository vendorRepository) {
+        this.categoryRepository = categoryRepository;
+        this.customerRepository = customerRepository;
+        this.vendorRepository = vendorRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        loadCategories();
+        loadCustomers();
+        loadVendors();
+    }
+
+    private void loadCategories() {
+        categoryRepository.saveAll(Flux.just("fruits", "dried", "fresh", "exotic", "nuts").map(name -> {
+            Category category = new Category();
+            category.setName(name);
+            return category;
+        })).blockLast();
+
+        System.out.println(categoryRepository.count().block() + " categories loaded");
+    }
+
+    private void loadCustomers() {
+        customerRepository.saveAll(Flux.just(customer("Michale", "Weston"), customer("Sam", "Axe"))).blockLast();
+
+        System.out.println(customerRepository.count().block() + " customer loaded");
+    }
+
+    private void loadVendors() {
+        vendorRepository.saveAll(Flux.just(vendor("Western Tasty Fruits Ltd."), vendor("Exotic Fruits Company."))).blockLast();
+
+        System.out.println(vendorRepository.count().block() + " vendor loaded");
+    }
+
+    private static Customer customer(String firstName, String lastName) {
+        Customer customer = new Customer();
+        customer.setFirstName(firstName);
+        customer.setLastName(lastName);
+        return customer;
+    }
+
+    private static Vendor vendor(String name) {
+        Vendor vendor = new Vendor();
+        vendor.setName(name);
+        return vendor;
+    }
+}
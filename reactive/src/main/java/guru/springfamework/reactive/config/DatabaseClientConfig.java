@@ -0,0 +1,27 @@
+package guru.springfamework.reactive.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs every statement on the bounded elastic scheduler. The H2 driver is not asynchronous: it executes a statement
+ * on the thread that subscribes, which for a request is a Netty event loop, and a slow query or a row lock wait would
+ * stall every connection that loop serves. Rows are emitted on the elastic thread, so the mapping and the writes to
+ * the response follow there; only opening and committing a transaction still run on the caller's thread.
+ */
+@Configuration
+public class DatabaseClientConfig {
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.builder()
+                             .connectionFactory(connectionFactory)
+                             .executeFunction(statement -> Flux.from(statement.execute())
+                                                               .subscribeOn(Schedulers.boundedElastic()))
+                             .build();
+    }
+}
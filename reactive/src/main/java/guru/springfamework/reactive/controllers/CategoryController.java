@@ -0,0 +1,32 @@
+package guru.springfamework.reactive.controllers;
+
+import guru.springfamework.api.v1.model.CategoryDTO;
+import guru.springfamework.api.v1.model.CategoryListDTO;
+import guru.springfamework.reactive.services.CategoryService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping(CategoryController.BASE_URL)
+public class CategoryController {
+
+    public static final String BASE_URL = "/api/v1/categories/";
+    private final CategoryService categoryService;
+
+    public CategoryController(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @GetMapping
+    public Mono<CategoryListDTO> getAllCategories() {
+        return categoryService.getAllCategories().collectList().map(CategoryListDTO::new);
+    }
+
+    @GetMapping("{name}")
+    public Mono<CategoryDTO> getCategory(@PathVariable String name) {
+        return categoryService.getCategoryByName(name);
+    }
+}
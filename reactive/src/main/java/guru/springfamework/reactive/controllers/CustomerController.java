@@ -0,0 +1,144 @@
+package guru.springfamework.reactive.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import guru.springfamework.api.v1.export.ExportFormat;
+import guru.springfamework.api.v1.export.ExportWriter;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.api.v1.model.DeletedDTO;
+import guru.springfamework.controllers.v1.ApiHeaders;
+import guru.springfamework.controllers.v1.VersionETags;
+import guru.springfamework.reactive.services.CustomerService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequestMapping(CustomerController.BASE_URL)
+public class CustomerController {
+
+    public static final String BASE_URL = "/api/v1/customers/";
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter customerWriter;
+
+    public CustomerController(CustomerService customerService, ObjectMapper objectMapper) {
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.customerWriter = objectMapper.writerFor(CustomerDTO.class);
+    }
+
+    @GetMapping
+    public ResponseEntity<Flux<DataBuffer>> getListOfCustomers(ServerWebExchange exchange) {
+        return jsonList(customerService.getAllCustomers(), exchange);
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public Mono<CustomerPageDTO> getPageOfCustomers(@RequestParam int limit,
+                                                    @RequestParam(required = false) String cursor) {
+        return customerService.getCustomersPage(cursor, limit);
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<Flux<DataBuffer>> exportCustomers(@RequestParam(defaultValue = "ndjson") String format,
+                                                            ServerWebExchange exchange) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+
+        StreamingBodies.ExportWriterFactory<CustomerDTO> writerFactory = out -> exportFormat == ExportFormat.CSV
+                ? ExportWriter.csv(out, Arrays.asList("firstName", "lastName", "customer_url"),
+                        customer -> Arrays.asList(customer.getFirstName(), customer.getLastName(), customer.getCustomerUrl()))
+                : ExportWriter.ndjson(objectMapper, CustomerDTO.class, out);
+        return ResponseEntity.ok()
+                             .contentType(exportFormat.getMediaType())
+                             .body(StreamingBodies.export(customerService.getAllCustomers(), writerFactory,
+                                     exchange.getResponse().bufferFactory()));
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<CustomerLookupDTO> getCustomersByIds(@RequestParam List<Long> ids) {
+        return customerService.getCustomersByIds(ids);
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<CustomerDTO>> getCustomer(@PathVariable Long id, ServerWebExchange exchange) {
+        if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+            return customerService.getCustomerById(id).map(this::withETag);
+        }
+        // a matching If-None-Match gets 304 without loading the row
+        return customerService.getCustomerVersion(id)
+                              .filter(version -> !exchange.checkNotModified(VersionETags.toETag(version)))
+                              .flatMap(version -> customerService.getCustomerById(id).map(this::withETag));
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<CustomerDTO> createNewCustomer(@RequestBody CustomerDTO customerDTO) {
+        return customerService.createNewCustomer(customerDTO);
+    }
+
+    @PostMapping("batch")
+    public ResponseEntity<Flux<DataBuffer>> createNewCustomers(@RequestBody Flux<CustomerDTO> customerDTOs,
+                                                               ServerWebExchange exchange) {
+        return jsonList(customerService.createNewCustomers(customerDTOs), exchange, HttpStatus.CREATED);
+    }
+
+    @PutMapping("{id}")
+    public Mono<ResponseEntity<CustomerDTO>> updateCustomer(@PathVariable Long id, @RequestBody CustomerDTO customerDTO,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        customerDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        return customerService.saveCustomerByDTO(id, customerDTO).map(this::withETag);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<ResponseEntity<CustomerDTO>> patchCustomer(@PathVariable Long id, @RequestBody CustomerDTO customerDTO,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                           @RequestHeader(value = ApiHeaders.PREFER, required = false) String prefer) {
+        customerDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        if (ApiHeaders.prefersReturnMinimal(prefer)) {
+            return customerService.patchCustomerInPlace(id, customerDTO)
+                                  .map(patchedDTO -> VersionETags.withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), patchedDTO.getVersion())
+                                                                 .header(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                                                                 .build());
+        }
+        return customerService.patchCustomer(id, customerDTO).map(this::withETag);
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Void> deleteCustomer(@PathVariable Long id) {
+        return customerService.deleteCustomerByID(id);
+    }
+
+    @DeleteMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<DeletedDTO> deleteCustomers(@RequestParam List<Long> ids) {
+        return customerService.deleteCustomersByIDs(ids).map(DeletedDTO::new);
+    }
+
+    private ResponseEntity<CustomerDTO> withETag(CustomerDTO customerDTO) {
+        return VersionETags.withETag(ResponseEntity.ok(), customerDTO.getVersion()).body(customerDTO);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> jsonList(Flux<CustomerDTO> customers, ServerWebExchange exchange) {
+        return jsonList(customers, exchange, HttpStatus.OK);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> jsonList(Flux<CustomerDTO> customers, ServerWebExchange exchange,
+                                                      HttpStatus status) {
+        return ResponseEntity.status(status)
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(StreamingBodies.jsonList("customers", customers, customerWriter,
+                                     exchange.getResponse().bufferFactory()));
+    }
+}
@@ -0,0 +1,33 @@
+package guru.springfamework.reactive.controllers;
+
+import guru.springfamework.services.BadRequestException;
+import guru.springfamework.services.PreconditionFailedException;
+import guru.springfamework.services.ResourceNotFoundException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Same statuses and bodies as the MVC application's exception handler.
+ */
+@ControllerAdvice
+public class RestResponseEntityExceptionHandler {
+
+    @ExceptionHandler({ResourceNotFoundException.class})
+    public ResponseEntity<Object> handleNotFoundException(Exception exception) {
+        return new ResponseEntity<>("Resource Not Found", new HttpHeaders(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler({BadRequestException.class})
+    public ResponseEntity<Object> handleBadRequestException(Exception exception) {
+        return new ResponseEntity<>(exception.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler({PreconditionFailedException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<Object> handlePreconditionFailedException(Exception exception) {
+        return new ResponseEntity<>("Precondition Failed", new HttpHeaders(), HttpStatus.PRECONDITION_FAILED);
+    }
+}
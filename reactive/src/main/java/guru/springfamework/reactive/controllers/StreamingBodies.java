@@ -0,0 +1,108 @@
+package guru.springfamework.reactive.controllers;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import guru.springfamework.api.v1.export.ExportWriter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns a stream of rows into response body chunks of {@link #CHUNK_ROWS} rows each. Rows are only pulled
+ * from the database as the client reads, so a slow client holds back the query instead of filling the heap.
+ */
+final class StreamingBodies {
+
+    static final int CHUNK_ROWS = 256;
+
+    private StreamingBodies() {
+    }
+
+    /**
+     * Writes the rows as {@code {"<field>":[...]}}, the envelope of the MVC list responses.
+     */
+    static <T> Flux<DataBuffer> jsonList(String field, Flux<T> rows, ObjectWriter objectWriter,
+                                         DataBufferFactory bufferFactory) {
+        byte[] prefix = ("{\"" + field + "\":[").getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = "]}".getBytes(StandardCharsets.UTF_8);
+
+        Flux<DataBuffer> chunks = rows.index().buffer(CHUNK_ROWS).map(chunk -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                for (Tuple2<Long, T> row : chunk) {
+                    if (row.getT1() > 0) {
+                        out.write(',');
+                    }
+                    out.write(objectWriter.writeValueAsBytes(row.getT2()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bufferFactory.wrap(out.toByteArray());
+        });
+        return Flux.concat(Mono.fromSupplier(() -> bufferFactory.wrap(prefix)), chunks,
+                Mono.fromSupplier(() -> bufferFactory.wrap(suffix)));
+    }
+
+    /**
+     * Writes the rows with an {@link ExportWriter}, draining what it has written after every chunk.
+     */
+    static <T> Flux<DataBuffer> export(Flux<T> rows, ExportWriterFactory<T> writerFactory,
+                                       DataBufferFactory bufferFactory) {
+        return Flux.using(() -> new Export<>(writerFactory),
+                export -> rows.buffer(CHUNK_ROWS)
+                              .map(chunk -> export.write(chunk, bufferFactory))
+                              .concatWith(Mono.fromSupplier(() -> export.finish(bufferFactory)))
+                              .filter(buffer -> buffer.readableByteCount() > 0),
+                Export::discard);
+    }
+
+    @FunctionalInterface
+    interface ExportWriterFactory<T> {
+        ExportWriter<T> create(OutputStream out) throws IOException;
+    }
+
+    private static final class Export<T> {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final ExportWriter<T> writer;
+
+        Export(ExportWriterFactory<T> writerFactory) throws IOException {
+            this.writer = writerFactory.create(out);
+        }
+
+        DataBuffer write(Iterable<T> chunk, DataBufferFactory bufferFactory) {
+            chunk.forEach(writer);
+            return drain(bufferFactory, false);
+        }
+
+        DataBuffer finish(DataBufferFactory bufferFactory) {
+            return drain(bufferFactory, true);
+        }
+
+        private DataBuffer drain(DataBufferFactory bufferFactory, boolean close) {
+            try {
+                if (close) {
+                    writer.close();
+                } else {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            DataBuffer buffer = bufferFactory.wrap(out.toByteArray());
+            out.reset();
+            return buffer;
+        }
+
+        void discard() {
+            out.reset();
+        }
+    }
+}
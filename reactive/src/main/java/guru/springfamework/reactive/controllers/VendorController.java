@@ -0,0 +1,144 @@
+package guru.springfamework.reactive.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import guru.springfamework.api.v1.export.ExportFormat;
+import guru.springfamework.api.v1.export.ExportWriter;
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
+import guru.springfamework.api.v1.model.DeletedDTO;
+import guru.springfamework.controllers.v1.ApiHeaders;
+import guru.springfamework.controllers.v1.VersionETags;
+import guru.springfamework.reactive.services.VendorService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequestMapping(VendorController.BASE_URL)
+public class VendorController {
+
+    public static final String BASE_URL = "/api/v1/vendors/";
+    private final VendorService vendorService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter vendorWriter;
+
+    public VendorController(VendorService vendorService, ObjectMapper objectMapper) {
+        this.vendorService = vendorService;
+        this.objectMapper = objectMapper;
+        this.vendorWriter = objectMapper.writerFor(VendorDTO.class);
+    }
+
+    @GetMapping
+    public ResponseEntity<Flux<DataBuffer>> getListOfVendors(ServerWebExchange exchange) {
+        return jsonList(vendorService.getAllVendors(), exchange);
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public Mono<VendorPageDTO> getPageOfVendors(@RequestParam int limit,
+                                                    @RequestParam(required = false) String cursor) {
+        return vendorService.getVendorsPage(cursor, limit);
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<Flux<DataBuffer>> exportVendors(@RequestParam(defaultValue = "ndjson") String format,
+                                                            ServerWebExchange exchange) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+
+        StreamingBodies.ExportWriterFactory<VendorDTO> writerFactory = out -> exportFormat == ExportFormat.CSV
+                ? ExportWriter.csv(out, Arrays.asList("name", "vendor_url"),
+                        vendor -> Arrays.asList(vendor.getName(), vendor.getVendorUrl()))
+                : ExportWriter.ndjson(objectMapper, VendorDTO.class, out);
+        return ResponseEntity.ok()
+                             .contentType(exportFormat.getMediaType())
+                             .body(StreamingBodies.export(vendorService.getAllVendors(), writerFactory,
+                                     exchange.getResponse().bufferFactory()));
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<VendorLookupDTO> getVendorsByIds(@RequestParam List<Long> ids) {
+        return vendorService.getVendorsByIds(ids);
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<VendorDTO>> getVendor(@PathVariable Long id, ServerWebExchange exchange) {
+        if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+            return vendorService.getVendorById(id).map(this::withETag);
+        }
+        // a matching If-None-Match gets 304 without loading the row
+        return vendorService.getVendorVersion(id)
+                              .filter(version -> !exchange.checkNotModified(VersionETags.toETag(version)))
+                              .flatMap(version -> vendorService.getVendorById(id).map(this::withETag));
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<VendorDTO> createNewVendor(@RequestBody VendorDTO vendorDTO) {
+        return vendorService.createNewVendor(vendorDTO);
+    }
+
+    @PostMapping("batch")
+    public ResponseEntity<Flux<DataBuffer>> createNewVendors(@RequestBody Flux<VendorDTO> vendorDTOs,
+                                                               ServerWebExchange exchange) {
+        return jsonList(vendorService.createNewVendors(vendorDTOs), exchange, HttpStatus.CREATED);
+    }
+
+    @PutMapping("{id}")
+    public Mono<ResponseEntity<VendorDTO>> updateVendor(@PathVariable Long id, @RequestBody VendorDTO vendorDTO,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        vendorDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        return vendorService.saveVendorByDTO(id, vendorDTO).map(this::withETag);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<ResponseEntity<VendorDTO>> patchVendor(@PathVariable Long id, @RequestBody VendorDTO vendorDTO,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                       @RequestHeader(value = ApiHeaders.PREFER, required = false) String prefer) {
+        vendorDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        if (ApiHeaders.prefersReturnMinimal(prefer)) {
+            return vendorService.patchVendorInPlace(id, vendorDTO)
+                                .map(patchedDTO -> VersionETags.withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), patchedDTO.getVersion())
+                                                               .header(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                                                               .build());
+        }
+        return vendorService.patchVendor(id, vendorDTO).map(this::withETag);
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Void> deleteVendor(@PathVariable Long id) {
+        return vendorService.deleteVendorByID(id);
+    }
+
+    @DeleteMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<DeletedDTO> deleteVendors(@RequestParam List<Long> ids) {
+        return vendorService.deleteVendorsByIDs(ids).map(DeletedDTO::new);
+    }
+
+    private ResponseEntity<VendorDTO> withETag(VendorDTO vendorDTO) {
+        return VersionETags.withETag(ResponseEntity.ok(), vendorDTO.getVersion()).body(vendorDTO);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> jsonList(Flux<VendorDTO> vendors, ServerWebExchange exchange) {
+        return jsonList(vendors, exchange, HttpStatus.OK);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> jsonList(Flux<VendorDTO> vendors, ServerWebExchange exchange,
+                                                      HttpStatus status) {
+        return ResponseEntity.status(status)
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(StreamingBodies.jsonList("vendors", vendors, vendorWriter,
+                                     exchange.getResponse().bufferFactory()));
+    }
+}
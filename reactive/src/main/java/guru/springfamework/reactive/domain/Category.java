@@ -0,0 +1,14 @@
+package guru.springfamework.reactive.domain;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Table("category")
+public class Category {
+    @Id
+    private Long id;
+
+    private String name;
+}
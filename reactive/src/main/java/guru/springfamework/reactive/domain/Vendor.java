@@ -0,0 +1,18 @@
+package guru.springfamework.reactive.domain;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Table("vendor")
+public class Vendor {
+    @Id
+    private Long id;
+
+    @Version
+    private Long version;
+
+    private String name;
+}
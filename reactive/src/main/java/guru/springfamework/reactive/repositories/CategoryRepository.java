@@ -0,0 +1,10 @@
+package guru.springfamework.reactive.repositories;
+
+import guru.springfamework.reactive.domain.Category;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface CategoryRepository extends ReactiveCrudRepository<Category, Long> {
+
+    Mono<Category> findByName(String name);
+}
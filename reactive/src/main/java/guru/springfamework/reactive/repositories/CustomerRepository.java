@@ -0,0 +1,43 @@
+package guru.springfamework.reactive.repositories;
+
+import guru.springfamework.reactive.domain.Customer;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface CustomerRepository extends ReactiveCrudRepository<Customer, Long> {
+
+    @Query("select * from customer order by id")
+    Flux<Customer> findAllOrderById();
+
+    @Query("select * from customer where id > :id order by id limit :limit")
+    Flux<Customer> findPage(Long id, int limit);
+
+    @Query("select version from customer where id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    /**
+     * Writes the non-null arguments in one UPDATE statement and bumps the version, without reading the row.
+     */
+    @Modifying
+    @Query("update customer set first_name = coalesce(:firstName, first_name), "
+            + "last_name = coalesce(:lastName, last_name), version = version + 1 where id = :id")
+    Mono<Integer> patchById(Long id, String firstName, String lastName);
+
+    @Modifying
+    @Query("update customer set first_name = coalesce(:firstName, first_name), "
+            + "last_name = coalesce(:lastName, last_name), version = version + 1 where id = :id and version = :version")
+    Mono<Integer> patchByIdAndVersion(Long id, Long version, String firstName, String lastName);
+
+    @Modifying
+    @Query("delete from customer where id = :id")
+    Mono<Integer> purgeById(Long id);
+
+    @Modifying
+    @Query("delete from customer where id in (:ids)")
+    Mono<Integer> purgeAllByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,38 @@
+package guru.springfamework.reactive.repositories;
+
+import guru.springfamework.reactive.domain.Vendor;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface VendorRepository extends ReactiveCrudRepository<Vendor, Long> {
+
+    @Query("select * from vendor order by id")
+    Flux<Vendor> findAllOrderById();
+
+    @Query("select * from vendor where id > :id order by id limit :limit")
+    Flux<Vendor> findPage(Long id, int limit);
+
+    @Query("select version from vendor where id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    @Modifying
+    @Query("update vendor set name = coalesce(:name, name), version = version + 1 where id = :id")
+    Mono<Integer> patchById(Long id, String name);
+
+    @Modifying
+    @Query("update vendor set name = coalesce(:name, name), version = version + 1 where id = :id and version = :version")
+    Mono<Integer> patchByIdAndVersion(Long id, Long version, String name);
+
+    @Modifying
+    @Query("delete from vendor where id = :id")
+    Mono<Integer> purgeById(Long id);
+
+    @Modifying
+    @Query("delete from vendor where id in (:ids)")
+    Mono<Integer> purgeAllByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,36 @@
+package guru.springfamework.reactive.services;
+
+import guru.springfamework.api.v1.model.CategoryDTO;
+import guru.springfamework.reactive.domain.Category;
+import guru.springfamework.reactive.repositories.CategoryRepository;
+import guru.springfamework.services.ResourceNotFoundException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+
+    public CategoryService(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    public Flux<CategoryDTO> getAllCategories() {
+        return categoryRepository.findAll().map(CategoryService::categoryToDTO);
+    }
+
+    public Mono<CategoryDTO> getCategoryByName(String name) {
+        return categoryRepository.findByName(name)
+                                 .map(CategoryService::categoryToDTO)
+                                 .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Category " + name + " not found")));
+    }
+
+    private static CategoryDTO categoryToDTO(Category category) {
+        CategoryDTO categoryDTO = new CategoryDTO();
+        categoryDTO.setId(category.getId());
+        categoryDTO.setName(category.getName());
+        return categoryDTO;
+    }
+}
@@ -0,0 +1,213 @@
+package guru.springfamework.reactive.services;
+
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.reactive.controllers.CustomerController;
+import guru.springfamework.reactive.domain.Customer;
+import guru.springfamework.reactive.repositories.CustomerRepository;
+import guru.springfamework.services.BadRequestException;
+import guru.springfamework.services.PageCursor;
+import guru.springfamework.services.PreconditionFailedException;
+import guru.springfamework.services.ResourceNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of the MVC customer service, with the same checks and error semantics.
+ */
+@Service
+public class CustomerService {
+
+    static final int MAX_IDS_PER_REQUEST = 1000;
+
+    private final CustomerRepository customerRepository;
+
+    public CustomerService(CustomerRepository customerRepository) {
+        this.customerRepository = customerRepository;
+    }
+
+    public Flux<CustomerDTO> getAllCustomers() {
+        return customerRepository.findAllOrderById().map(this::customerToDTOWithUrl);
+    }
+
+    public Mono<CustomerPageDTO> getCustomersPage(String cursor, int limit) {
+        return Mono.defer(() -> {
+            PageCursor.checkLimit(limit);
+
+            // fetch one extra row to find out whether there is a next page without a count query
+            return customerRepository.findPage(PageCursor.decode(cursor), limit + 1).collectList().map(customers -> {
+                String next = null;
+                if (customers.size() > limit) {
+                    customers = customers.subList(0, limit);
+                    next = PageCursor.encode(customers.get(limit - 1).getId());
+                }
+                List<CustomerDTO> customerDTOs = new ArrayList<>(customers.size());
+                customers.forEach(customer -> customerDTOs.add(customerToDTOWithUrl(customer)));
+                return new CustomerPageDTO(customerDTOs, next);
+            });
+        });
+    }
+
+    public Mono<CustomerDTO> getCustomerById(Long id) {
+        return customerRepository.findById(id)
+                                 .map(this::customerToDTOWithUrl)
+                                 .switchIfEmpty(notFound(id));
+    }
+
+    public Mono<Long> getCustomerVersion(Long id) {
+        return customerRepository.findVersionById(id).switchIfEmpty(notFound(id));
+    }
+
+    public Mono<CustomerLookupDTO> getCustomersByIds(List<Long> ids) {
+        return Mono.defer(() -> {
+            checkIdCount(ids);
+
+            Set<Long> requestedIds = new LinkedHashSet<>(ids);
+            return customerRepository.findAllById(requestedIds).collectMap(Customer::getId).map(found -> {
+                List<CustomerDTO> customerDTOs = new ArrayList<>(found.size());
+                List<Long> missing = new ArrayList<>();
+                for (Long id : requestedIds) {
+                    Customer customer = found.get(id);
+                    if (customer == null) {
+                        missing.add(id);
+                    } else {
+                        customerDTOs.add(customerToDTOWithUrl(customer));
+                    }
+                }
+                return new CustomerLookupDTO(customerDTOs, missing);
+            });
+        });
+    }
+
+    public Mono<CustomerDTO> createNewCustomer(CustomerDTO customerDTO) {
+        return saveAndReturnDTO(customerDTOToCustomer(customerDTO));
+    }
+
+    /**
+     * Inserts the customers as they are decoded from the request body, one at a time and in request order, all in one
+     * transaction like the servlet variant.
+     */
+    @Transactional
+    public Flux<CustomerDTO> createNewCustomers(Flux<CustomerDTO> customerDTOs) {
+        return customerDTOs.concatMap(this::createNewCustomer);
+    }
+
+    public Mono<CustomerDTO> saveCustomerByDTO(Long id, CustomerDTO customerDTO) {
+        return customerRepository.findById(id)
+                .flatMap(customer -> {
+                    checkVersion(customer, customerDTO.getVersion());
+                    customer.setFirstName(customerDTO.getFirstName());
+                    customer.setLastName(customerDTO.getLastName());
+                    return saveAndReturnDTO(customer);
+                })
+                .switchIfEmpty(Mono.defer(() -> customerDTO.getVersion() != null
+                        ? notFound(id)
+                        : createNewCustomer(customerDTO)));
+    }
+
+    public Mono<CustomerDTO> patchCustomer(Long id, CustomerDTO customerDTO) {
+        return customerRepository.findById(id)
+                .flatMap(customer -> {
+                    checkVersion(customer, customerDTO.getVersion());
+
+                    if (customerDTO.getFirstName() != null) {
+                        customer.setFirstName(customerDTO.getFirstName());
+                    }
+
+                    if (customerDTO.getLastName() != null) {
+                        customer.setLastName(customerDTO.getLastName());
+                    }
+                    return saveAndReturnDTO(customer);
+                })
+                .switchIfEmpty(notFound(id));
+    }
+
+    @Transactional
+    public Mono<CustomerDTO> patchCustomerInPlace(Long id, CustomerDTO customerDTO) {
+        Long version = customerDTO.getVersion();
+        Mono<Integer> updated = version == null
+                ? customerRepository.patchById(id, customerDTO.getFirstName(), customerDTO.getLastName())
+                : customerRepository.patchByIdAndVersion(id, version, customerDTO.getFirstName(), customerDTO.getLastName());
+
+        return updated.flatMap(count -> {
+            if (count > 0) {
+                // the row is not read back, so the new version is only known when the old one was given
+                CustomerDTO patched = new CustomerDTO(customerDTO.getFirstName(), customerDTO.getLastName(), getCustomerUri(id));
+                patched.setVersion(version == null ? null : version + 1);
+                return Mono.just(patched);
+            }
+            if (version == null) {
+                return notFound(id);
+            }
+            return customerRepository.existsById(id).flatMap(exists -> exists
+                    ? Mono.error(new PreconditionFailedException("Customer " + id + " was modified"))
+                    : notFound(id));
+        });
+    }
+
+    public Mono<Void> deleteCustomerByID(Long id) {
+        return customerRepository.purgeById(id).flatMap(count -> count == 0 ? notFound(id) : Mono.empty());
+    }
+
+    public Mono<Integer> deleteCustomersByIDs(List<Long> ids) {
+        return Mono.defer(() -> {
+            checkIdCount(ids);
+            return ids.isEmpty() ? Mono.just(0) : customerRepository.purgeAllByIdIn(ids);
+        });
+    }
+
+    private void checkVersion(Customer customer, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+            throw new PreconditionFailedException("Customer " + customer.getId() + " was modified");
+        }
+    }
+
+    private void checkIdCount(List<Long> ids) {
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new BadRequestException("At most " + MAX_IDS_PER_REQUEST + " ids per request");
+        }
+    }
+
+    private Mono<CustomerDTO> saveAndReturnDTO(Customer customer) {
+        return customerRepository.save(customer).map(this::customerToDTOWithUrl);
+    }
+
+    private CustomerDTO customerToDTOWithUrl(Customer customer) {
+        CustomerDTO customerDTO = customerToDTO(customer);
+        customerDTO.setCustomerUrl(getCustomerUri(customer.getId()));
+        return customerDTO;
+    }
+
+    private static CustomerDTO customerToDTO(Customer customer) {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName(customer.getFirstName());
+        customerDTO.setLastName(customer.getLastName());
+        customerDTO.setVersion(customer.getVersion());
+        return customerDTO;
+    }
+
+    private static Customer customerDTOToCustomer(CustomerDTO customerDTO) {
+        Customer customer = new Customer();
+        customer.setFirstName(customerDTO.getFirstName());
+        customer.setLastName(customerDTO.getLastName());
+        return customer;
+    }
+
+    private static <T> Mono<T> notFound(Long id) {
+        return Mono.error(() -> new ResourceNotFoundException("Customer " + id + " not found"));
+    }
+
+    private String getCustomerUri(Long id) {
+        return CustomerController.BASE_URL + id;
+    }
+}
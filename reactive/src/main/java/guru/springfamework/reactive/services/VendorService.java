@@ -0,0 +1,206 @@
+package guru.springfamework.reactive.services;
+
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
+import guru.springfamework.reactive.controllers.VendorController;
+import guru.springfamework.reactive.domain.Vendor;
+import guru.springfamework.reactive.repositories.VendorRepository;
+import guru.springfamework.services.BadRequestException;
+import guru.springfamework.services.PageCursor;
+import guru.springfamework.services.PreconditionFailedException;
+import guru.springfamework.services.ResourceNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of the MVC vendor service, with the same checks and error semantics.
+ */
+@Service
+public class VendorService {
+
+    static final int MAX_IDS_PER_REQUEST = 1000;
+
+    private final VendorRepository vendorRepository;
+
+    public VendorService(VendorRepository vendorRepository) {
+        this.vendorRepository = vendorRepository;
+    }
+
+    public Flux<VendorDTO> getAllVendors() {
+        return vendorRepository.findAllOrderById().map(this::vendorToDTOWithUrl);
+    }
+
+    public Mono<VendorPageDTO> getVendorsPage(String cursor, int limit) {
+        return Mono.defer(() -> {
+            PageCursor.checkLimit(limit);
+
+            // fetch one extra row to find out whether there is a next page without a count query
+            return vendorRepository.findPage(PageCursor.decode(cursor), limit + 1).collectList().map(vendors -> {
+                String next = null;
+                if (vendors.size() > limit) {
+                    vendors = vendors.subList(0, limit);
+                    next = PageCursor.encode(vendors.get(limit - 1).getId());
+                }
+                List<VendorDTO> vendorDTOs = new ArrayList<>(vendors.size());
+                vendors.forEach(vendor -> vendorDTOs.add(vendorToDTOWithUrl(vendor)));
+                return new VendorPageDTO(vendorDTOs, next);
+            });
+        });
+    }
+
+    public Mono<VendorDTO> getVendorById(Long id) {
+        return vendorRepository.findById(id)
+                               .map(this::vendorToDTOWithUrl)
+                               .switchIfEmpty(notFound(id));
+    }
+
+    public Mono<Long> getVendorVersion(Long id) {
+        return vendorRepository.findVersionById(id).switchIfEmpty(notFound(id));
+    }
+
+    public Mono<VendorLookupDTO> getVendorsByIds(List<Long> ids) {
+        return Mono.defer(() -> {
+            checkIdCount(ids);
+
+            Set<Long> requestedIds = new LinkedHashSet<>(ids);
+            return vendorRepository.findAllById(requestedIds).collectMap(Vendor::getId).map(found -> {
+                List<VendorDTO> vendorDTOs = new ArrayList<>(found.size());
+                List<Long> missing = new ArrayList<>();
+                for (Long id : requestedIds) {
+                    Vendor vendor = found.get(id);
+                    if (vendor == null) {
+                        missing.add(id);
+                    } else {
+                        vendorDTOs.add(vendorToDTOWithUrl(vendor));
+                    }
+                }
+                return new VendorLookupDTO(vendorDTOs, missing);
+            });
+        });
+    }
+
+    public Mono<VendorDTO> createNewVendor(VendorDTO vendorDTO) {
+        return saveAndReturnDTO(vendorDTOToVendor(vendorDTO));
+    }
+
+    /**
+     * Inserts the vendors as they are decoded from the request body, one at a time and in request order, all in one
+     * transaction like the servlet variant.
+     */
+    @Transactional
+    public Flux<VendorDTO> createNewVendors(Flux<VendorDTO> vendorDTOs) {
+        return vendorDTOs.concatMap(this::createNewVendor);
+    }
+
+    public Mono<VendorDTO> saveVendorByDTO(Long id, VendorDTO vendorDTO) {
+        return vendorRepository.findById(id)
+                .flatMap(vendor -> {
+                    checkVersion(vendor, vendorDTO.getVersion());
+                    vendor.setName(vendorDTO.getName());
+                    return saveAndReturnDTO(vendor);
+                })
+                .switchIfEmpty(Mono.defer(() -> vendorDTO.getVersion() != null
+                        ? notFound(id)
+                        : createNewVendor(vendorDTO)));
+    }
+
+    public Mono<VendorDTO> patchVendor(Long id, VendorDTO vendorDTO) {
+        return vendorRepository.findById(id)
+                .flatMap(vendor -> {
+                    checkVersion(vendor, vendorDTO.getVersion());
+
+                    if (vendorDTO.getName() != null) {
+                        vendor.setName(vendorDTO.getName());
+                    }
+                    return saveAndReturnDTO(vendor);
+                })
+                .switchIfEmpty(notFound(id));
+    }
+
+    @Transactional
+    public Mono<VendorDTO> patchVendorInPlace(Long id, VendorDTO vendorDTO) {
+        Long version = vendorDTO.getVersion();
+        Mono<Integer> updated = version == null
+                ? vendorRepository.patchById(id, vendorDTO.getName())
+                : vendorRepository.patchByIdAndVersion(id, version, vendorDTO.getName());
+
+        return updated.flatMap(count -> {
+            if (count > 0) {
+                // the row is not read back, so the new version is only known when the old one was given
+                VendorDTO patched = new VendorDTO(vendorDTO.getName(), getVendorUri(id));
+                patched.setVersion(version == null ? null : version + 1);
+                return Mono.just(patched);
+            }
+            if (version == null) {
+                return notFound(id);
+            }
+            return vendorRepository.existsById(id).flatMap(exists -> exists
+                    ? Mono.error(new PreconditionFailedException("Vendor " + id + " was modified"))
+                    : notFound(id));
+        });
+    }
+
+    public Mono<Void> deleteVendorByID(Long id) {
+        return vendorRepository.purgeById(id).flatMap(count -> count == 0 ? notFound(id) : Mono.empty());
+    }
+
+    public Mono<Integer> deleteVendorsByIDs(List<Long> ids) {
+        return Mono.defer(() -> {
+            checkIdCount(ids);
+            return ids.isEmpty() ? Mono.just(0) : vendorRepository.purgeAllByIdIn(ids);
+        });
+    }
+
+    private void checkVersion(Vendor vendor, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(vendor.getVersion())) {
+            throw new PreconditionFailedException("Vendor " + vendor.getId() + " was modified");
+        }
+    }
+
+    private void checkIdCount(List<Long> ids) {
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new BadRequestException("At most " + MAX_IDS_PER_REQUEST + " ids per request");
+        }
+    }
+
+    private Mono<VendorDTO> saveAndReturnDTO(Vendor vendor) {
+        return vendorRepository.save(vendor).map(this::vendorToDTOWithUrl);
+    }
+
+    private VendorDTO vendorToDTOWithUrl(Vendor vendor) {
+        VendorDTO vendorDTO = vendorToDTO(vendor);
+        vendorDTO.setVendorUrl(getVendorUri(vendor.getId()));
+        return vendorDTO;
+    }
+
+    private static VendorDTO vendorToDTO(Vendor vendor) {
+        VendorDTO vendorDTO = new VendorDTO();
+        vendorDTO.setName(vendor.getName());
+        vendorDTO.setVersion(vendor.getVersion());
+        return vendorDTO;
+    }
+
+    private static Vendor vendorDTOToVendor(VendorDTO vendorDTO) {
+        Vendor vendor = new Vendor();
+        vendor.setName(vendorDTO.getName());
+        return vendor;
+    }
+
+    private static <T> Mono<T> notFound(Long id) {
+        return Mono.error(() -> new ResourceNotFoundException("Vendor " + id + " not found"));
+    }
+
+    private String getVendorUri(Long id) {
+        return VendorController.BASE_URL + id;
+    }
+}
@@ -0,0 +1,17 @@
+create table if not exists category (
+    id bigint auto_increment primary key,
+    name varchar(255)
+);
+
+create table if not exists customer (
+    id bigint auto_increment primary key,
+    version bigint,
+    first_name varchar(255),
+    last_name varchar(255)
+);
+
+create table if not exists vendor (
+    id bigint auto_increment primary key,
+    version bigint,
+    name varchar(255)
+);
@@ -0,0 +1,201 @@
+package guru.springfamework.reactive.controllers;
+
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.controllers.v1.ApiHeaders;
+import guru.springfamework.reactive.domain.Customer;
+import guru.springfamework.reactive.repositories.CustomerRepository;
+import guru.springfamework.reactive.services.CustomerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+class CustomerControllerTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    CustomerService customerService;
+
+    Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setFirstName("Fiona");
+        customer.setLastName("Glenanne");
+        customer = customerRepository.save(customer).block();
+    }
+
+    @Test
+    void listStreamsTheMvcEnvelope() {
+        long count = customerRepository.count().block();
+
+        webTestClient.get().uri(CustomerController.BASE_URL)
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                     .expectBody()
+                     .jsonPath("$.customers.length()").isEqualTo((int) count);
+    }
+
+    @Test
+    void getByIdSendsVersionAsETag() {
+        webTestClient.get().uri(CustomerController.BASE_URL + customer.getId())
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + customer.getVersion() + "\"")
+                     .expectBody()
+                     .jsonPath("$.firstName").isEqualTo("Fiona");
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() {
+        webTestClient.get().uri(CustomerController.BASE_URL + customer.getId())
+                     .header(HttpHeaders.IF_NONE_MATCH, "\"" + customer.getVersion() + "\"")
+                     .exchange()
+                     .expectStatus().isNotModified()
+                     .expectBody().isEmpty();
+    }
+
+    @Test
+    void unknownIdIsNotFound() {
+        webTestClient.get().uri(CustomerController.BASE_URL + Long.MAX_VALUE)
+                     .exchange()
+                     .expectStatus().isNotFound()
+                     .expectBody(String.class).isEqualTo("Resource Not Found");
+    }
+
+    @Test
+    void pageReturnsNextCursor() {
+        webTestClient.get().uri(CustomerController.BASE_URL + "?limit=1")
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectBody()
+                     .jsonPath("$.customers.length()").isEqualTo(1)
+                     .jsonPath("$.next").isNotEmpty();
+    }
+
+    @Test
+    void batchCreatesInRequestOrder() {
+        webTestClient.post().uri(CustomerController.BASE_URL + "batch")
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .bodyValue("[{\"firstName\":\"Jesse\",\"lastName\":\"Porter\"},{\"firstName\":\"Madeline\",\"lastName\":\"Westen\"}]")
+                     .exchange()
+                     .expectStatus().isCreated()
+                     .expectBody()
+                     .jsonPath("$.customers.length()").isEqualTo(2)
+                     .jsonPath("$.customers[0].firstName").isEqualTo("Jesse")
+                     .jsonPath("$.customers[1].firstName").isEqualTo("Madeline");
+    }
+
+    @Test
+    void batchWithAFailingRowCreatesNone() {
+        long count = customerRepository.count().block();
+        CustomerDTO tooLong = new CustomerDTO("x".repeat(256), "Porter", null);
+
+        assertThrows(DataAccessException.class, () -> customerService.createNewCustomers(
+                Flux.just(new CustomerDTO("Jesse", "Porter", null), tooLong)).blockLast());
+
+        assertEquals(count, customerRepository.count().block());
+    }
+
+    @Test
+    void patchWithStaleIfMatchFails() {
+        webTestClient.patch().uri(CustomerController.BASE_URL + customer.getId())
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .header(HttpHeaders.IF_MATCH, "\"" + (customer.getVersion() + 1) + "\"")
+                     .bodyValue("{\"lastName\":\"Westen\"}")
+                     .exchange()
+                     .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void patchInPlaceAnswersWithoutABody() {
+        webTestClient.patch().uri(CustomerController.BASE_URL + customer.getId())
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .header(ApiHeaders.PREFER, ApiHeaders.RETURN_MINIMAL)
+                     .header(HttpHeaders.IF_MATCH, "\"" + customer.getVersion() + "\"")
+                     .bodyValue("{\"lastName\":\"Westen\"}")
+                     .exchange()
+                     .expectStatus().isNoContent()
+                     .expectHeader().valueEquals(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                     .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + (customer.getVersion() + 1) + "\"")
+                     .expectBody().isEmpty();
+
+        assertEquals("Westen", customerRepository.findById(customer.getId()).block().getLastName());
+    }
+
+    @Test
+    void patchInPlaceWithoutIfMatchSendsNoETag() {
+        webTestClient.patch().uri(CustomerController.BASE_URL + customer.getId())
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .header(ApiHeaders.PREFER, "respond-async, return=minimal")
+                     .bodyValue("{\"lastName\":\"Westen\"}")
+                     .exchange()
+                     .expectStatus().isNoContent()
+                     .expectHeader().valueEquals(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                     .expectHeader().doesNotExist(HttpHeaders.ETAG);
+    }
+
+    @Test
+    void exportWritesCsvHeaderAndRows() {
+        String csv = webTestClient.get().uri(CustomerController.BASE_URL + "export?format=csv")
+                                  .exchange()
+                                  .expectStatus().isOk()
+                                  .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = csv.split("\r\n");
+        assertEquals("firstName,lastName,customer_url", lines[0]);
+        assertEquals(customerRepository.count().block() + 1, lines.length);
+    }
+
+    @Test
+    void deleteUnknownIdIsNotFound() {
+        webTestClient.delete().uri(CustomerController.BASE_URL + customer.getId())
+                     .exchange()
+                     .expectStatus().isOk();
+
+        webTestClient.delete().uri(CustomerController.BASE_URL + customer.getId())
+                     .exchange()
+                     .expectStatus().isNotFound();
+    }
+
+    @Test
+    void tooManyIdsIsBadRequest() {
+        String ids = String.join(",", Collections.nCopies(1001, "1"));
+
+        webTestClient.get().uri(CustomerController.BASE_URL + "?ids=" + ids)
+                     .exchange()
+                     .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void queriesRunOffTheSubscribingThread() {
+        String thread = customerRepository.findById(customer.getId())
+                                          .map(found -> Thread.currentThread().getName())
+                                          .subscribeOn(Schedulers.single())
+                                          .block();
+
+        assertTrue(thread.startsWith("boundedElastic"), thread);
+    }
+}
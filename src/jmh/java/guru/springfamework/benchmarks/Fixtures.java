@@ -0,0 +1,82 @@
+package guru.springfamework.benchmarks;
+
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.VendorController;
+import guru.springfamework.domain.Category;
+import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.Vendor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic test data, so every run and every fork measures the same objects.
+ */
+final class Fixtures {
+
+    private static final long SEED = 42L;
+    private static final String[] FIRST_NAMES = {"Michale", "Sam", "Fiona", "Jesse", "Madeline", "Charles", "Virginia", "Ingrid"};
+    private static final String[] LAST_NAMES = {"Weston", "Axe", "Glenanne", "Porter", "Westen", "Finley", "Pierce", "Bergström"};
+    private static final String[] VENDOR_WORDS = {"Western", "Tasty", "Exotic", "Fruits", "Home", "Nuts", "Fresh", "Company"};
+
+    private Fixtures() {
+    }
+
+    static List<Customer> customers(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setId(i + 1L);
+            customer.setFirstName(pick(random, FIRST_NAMES));
+            customer.setLastName(pick(random, LAST_NAMES));
+            customer.setVersion((long) random.nextInt(5));
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    static List<Vendor> vendors(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Vendor> vendors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Vendor vendor = new Vendor();
+            vendor.setId(i + 1L);
+            vendor.setName(pick(random, VENDOR_WORDS) + " " + pick(random, VENDOR_WORDS) + " Ltd.");
+            vendor.setVersion((long) random.nextInt(5));
+            vendors.add(vendor);
+        }
+        return vendors;
+    }
+
+    static Category category() {
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Fruits");
+        return category;
+    }
+
+    static List<CustomerDTO> customerDTOs(int count) {
+        List<CustomerDTO> customerDTOs = new ArrayList<>(count);
+        for (Customer customer : customers(count)) {
+            customerDTOs.add(new CustomerDTO(customer.getFirstName(), customer.getLastName(),
+                    CustomerController.BASE_URL + customer.getId()));
+        }
+        return customerDTOs;
+    }
+
+    static List<VendorDTO> vendorDTOs(int count) {
+        List<VendorDTO> vendorDTOs = new ArrayList<>(count);
+        for (Vendor vendor : vendors(count)) {
+            vendorDTOs.add(new VendorDTO(vendor.getName(), VendorController.BASE_URL + vendor.getId()));
+        }
+        return vendorDTOs;
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
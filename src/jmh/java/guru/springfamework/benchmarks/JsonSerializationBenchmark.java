@@ -0,0 +1,59 @@
+package guru.springfamework.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.model.CustomerListDTO;
+import guru.springfamework.api.v1.model.VendorListListDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the list responses. The output is discarded, so only
+ * the serializer is measured and not the copying of a growing buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private CustomerListDTO customers;
+    private VendorListListDTO vendors;
+
+    @Setup
+    public void setUp() {
+        // the same defaults Spring MVC uses for its message converter
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        customers = new CustomerListDTO(Fixtures.customerDTOs(size));
+        vendors = new VendorListListDTO(Fixtures.vendorDTOs(size));
+    }
+
+    @Benchmark
+    public void customerList() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), customers);
+    }
+
+    @Benchmark
+    public void vendorList() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), vendors);
+    }
+}
@@ -0,0 +1,69 @@
+package guru.springfamework.benchmarks;
+
+import guru.springfamework.api.v1.mapper.CategoryMapper;
+import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.mapper.VendorMapper;
+import guru.springfamework.api.v1.model.CategoryDTO;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.domain.Category;
+import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.Vendor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping one entity to its DTO, with and without the resource URL the services add.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private Customer customer;
+    private Vendor vendor;
+    private Category category;
+
+    @Setup
+    public void setUp() {
+        customer = Fixtures.customers(1).get(0);
+        vendor = Fixtures.vendors(1).get(0);
+        category = Fixtures.category();
+    }
+
+    @Benchmark
+    public CustomerDTO customerToCustomerDTO() {
+        return CustomerMapper.INSTANCE.customerToCustomerDTO(customer);
+    }
+
+    @Benchmark
+    public CustomerDTO customerToCustomerDTOWithUrl() {
+        CustomerDTO customerDTO = CustomerMapper.INSTANCE.customerToCustomerDTO(customer);
+        customerDTO.setCustomerUrl(CustomerController.BASE_URL + customer.getId());
+        return customerDTO;
+    }
+
+    @Benchmark
+    public VendorDTO vendorToVendorDTO() {
+        return VendorMapper.INSTANCE.vendorToVendorDTO(vendor);
+    }
+
+    @Benchmark
+    public CategoryDTO categoryToCategoryDTO() {
+        return CategoryMapper.INSTANCE.categoryToCategoryDTO(category);
+    }
+}
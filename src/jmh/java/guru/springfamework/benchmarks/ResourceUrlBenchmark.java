@@ -0,0 +1,40 @@
+package guru.springfamework.benchmarks;
+
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.VendorController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The string concatenation done by getCustomerUri and getVendorUri for every DTO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ResourceUrlBenchmark {
+
+    // boxed and not final, so the JIT cannot fold the concatenation into a constant
+    private Long id = 123456L;
+
+    @Benchmark
+    public String customerUri() {
+        return CustomerController.BASE_URL + id;
+    }
+
+    @Benchmark
+    public String vendorUri() {
+        return VendorController.BASE_URL + id;
+    }
+}
@@ -0,0 +1,315 @@
+package guru.springfamework.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import guru.springfamework.Spring5MvcRestApplication;
+import guru.springfamework.controllers.v1.CategoryController;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.VendorController;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Open-model load test: boots the application on a random port, seeds it and sends requests at a constant
+ * arrival rate, whether or not earlier requests have completed. Latency is measured from the time a request
+ * was scheduled to be sent, so a stalled server shows up in the percentiles instead of lowering the load
+ * (no coordinated omission).
+ *
+ * <pre>mvn -Ploadtest compile exec:java -Dexec.args="--rate=500 --duration=60 --write-ratio=0.1"</pre>
+ *
+ * Options: customers, vendors, rate (requests/s), warmup and duration (seconds), write-ratio, max-in-flight, output.
+ * Percentile distributions (.hgrm), an HdrHistogram log of all routes (latency.hlog) and the printed table as
+ * summary.json go to the output directory.
+ * The client runs in the same JVM as the application, so use a machine with spare cores for it.
+ * <p>
+ * With base-url the test targets an already running server instead, e.g. the reactive variant in {@code reactive/}.
+ * idle-connections opens that many keep-alive connections which send one request and then stay open for the
+ * whole run, to compare how each stack copes with many mostly idle clients.
+ */
+public class LoadTest {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final long RANDOM_SEED = 42L;
+    private static final Duration IDLE_ANSWER_TIMEOUT = Duration.ofMinutes(2);
+
+    private final LoadTestOptions options;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Histogram allLatencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(10), 3);
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long measurementStartMillis;
+    private long measurementEndMillis;
+
+    LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.baseUrl != null) {
+            new LoadTest(options).run(options.baseUrl);
+            return;
+        }
+
+        // devtools would restart the context in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring5MvcRestApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            new LoadTest(options).run("http://localhost:" + port);
+        }
+    }
+
+    void run(String baseUrl) throws Exception {
+        System.out.println("Seeding " + options);
+        long[] customerIds = seed(baseUrl + CustomerController.BASE_URL + "batch", options.customers,
+                i -> "{\"firstName\":\"First" + i + "\",\"lastName\":\"Last" + i + "\"}", "customers", "customer_url");
+        long[] vendorIds = seed(baseUrl + VendorController.BASE_URL + "batch", options.vendors,
+                i -> "{\"name\":\"Vendor " + i + "\"}", "vendors", "vendor_url");
+        List<String> categoryNames = new ArrayList<>();
+        for (JsonNode category : getJson(baseUrl + CategoryController.BASE_URL).get("categories")) {
+            categoryNames.add(category.get("name").asText());
+        }
+
+        Workload workload = new Workload(baseUrl, customerIds, vendorIds, categoryNames, RANDOM_SEED);
+        List<Socket> idle = openIdleConnections(URI.create(baseUrl + CategoryController.BASE_URL));
+        try {
+            drive(workload);
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+        report(workload.routes());
+    }
+
+    /**
+     * Opens the idle connections. Each sends one keep-alive request and waits for the first byte of the response
+     * but never reads the rest, so the server has to keep the connection open without it costing a request slot on
+     * the client. The warmup only starts once every connection has been answered: a server that is slow to accept
+     * would otherwise be measured while most idle connections still wait in its accept queue.
+     */
+    private List<Socket> openIdleConnections(URI uri) throws IOException {
+        List<Socket> sockets = new ArrayList<>(options.idleConnections);
+        long start = System.nanoTime();
+        int port = uri.getPort() < 0 ? 80 : uri.getPort();
+        byte[] request = ("GET " + uri.getRawPath() + " HTTP/1.1\r\nHost: " + uri.getHost() + ":" + port
+                + "\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            for (int i = 0; i < options.idleConnections; i++) {
+                Socket socket = new Socket(uri.getHost(), port);
+                sockets.add(socket);
+                socket.getOutputStream().write(request);
+            }
+            for (Socket socket : sockets) {
+                socket.setSoTimeout((int) IDLE_ANSWER_TIMEOUT.toMillis());
+                if (socket.getInputStream().read() < 0) {
+                    throw new IOException("Idle connection closed before it was answered");
+                }
+            }
+        } catch (IOException e) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            throw new IOException("Could only open " + sockets.size() + " of " + options.idleConnections
+                    + " idle connections", e);
+        }
+        if (!sockets.isEmpty()) {
+            System.out.println("Holding " + sockets.size() + " idle connections, all answered after "
+                    + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s");
+        }
+        return sockets;
+    }
+
+    private void drive(Workload workload) throws InterruptedException {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long warmupNanos = options.warmup.toNanos();
+        long totalRequests = (long) ((options.warmup.getSeconds() + options.duration.getSeconds()) * options.rate);
+
+        System.out.println("Sending " + totalRequests + " requests at " + options.rate + "/s");
+        long start = System.nanoTime();
+        measurementStartMillis = System.currentTimeMillis() + options.warmup.toMillis();
+        for (long i = 0; i < totalRequests; i++) {
+            long intendedStart = start + (long) (i * intervalNanos);
+            long delay;
+            while ((delay = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            Workload.Request request = workload.next(options.writeRatio);
+            boolean measured = intendedStart - start >= warmupNanos;
+            if (inFlight.get() >= options.maxInFlight) {
+                // the client cannot keep up; count it instead of silently sending less than the planned rate
+                if (measured) {
+                    dropped.increment();
+                }
+                continue;
+            }
+
+            inFlight.incrementAndGet();
+            client.sendAsync(request.httpRequest, HttpResponse.BodyHandlers.ofString())
+                  .whenComplete((response, failure) -> {
+                      long latency = System.nanoTime() - intendedStart;
+                      inFlight.decrementAndGet();
+                      if (measured) {
+                          request.route.latencies.recordValue(latency);
+                          allLatencies.recordValue(latency);
+                          if (failure != null || response.statusCode() >= 400) {
+                              request.route.errors.increment();
+                          }
+                      }
+                      if (response != null) {
+                          request.route.completed(response);
+                      }
+                  });
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        measurementEndMillis = System.currentTimeMillis();
+    }
+
+    private void report(List<Workload.Route> routes) throws IOException {
+        File outputDirectory = new File(options.outputDirectory);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Could not create " + outputDirectory);
+        }
+
+        double seconds = options.duration.getSeconds();
+        System.out.printf("%n%-26s %9s %7s %9s %10s %10s %10s %10s%n",
+                "route", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        try (PrintStream log = new PrintStream(new File(outputDirectory, "latency.hlog"))) {
+            HistogramLogWriter logWriter = new HistogramLogWriter(log);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputLegend();
+
+            for (Workload.Route route : routes) {
+                printRow(route.name, route.latencies, route.errors.sum(), seconds);
+                writeDistribution(new File(outputDirectory, route.name + ".hgrm"), route.latencies);
+                logInterval(logWriter, route.name, route.latencies);
+            }
+            printRow("all", allLatencies, routes.stream().mapToLong(route -> route.errors.sum()).sum(), seconds);
+            writeDistribution(new File(outputDirectory, "all.hgrm"), allLatencies);
+            logInterval(logWriter, "all", allLatencies);
+        }
+        writeSummary(new File(outputDirectory, "summary.json"), routes);
+
+        if (dropped.sum() > 0) {
+            System.out.println("WARNING: " + dropped.sum() + " requests were not sent because "
+                    + options.maxInFlight + " were already in flight; the results understate the load");
+        }
+        System.out.println("Histograms written to " + outputDirectory.getAbsolutePath());
+    }
+
+    private void logInterval(HistogramLogWriter logWriter, String tag, Histogram latencies) {
+        latencies.setTag(tag);
+        latencies.setStartTimeStamp(measurementStartMillis);
+        latencies.setEndTimeStamp(measurementEndMillis);
+        logWriter.outputIntervalHistogram(latencies);
+    }
+
+    private static void printRow(String name, Histogram latencies, long errors, double seconds) {
+        System.out.printf("%-26s %9d %7d %9.1f %10.2f %10.2f %10.2f %10.2f%n", name, latencies.getTotalCount(), errors,
+                latencies.getTotalCount() / seconds, millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMaxValue()));
+    }
+
+    /**
+     * Writes the options and the table as JSON. Throughput is the completed requests over the time from the first
+     * request to the last response, so unlike the req/s column it drops below the rate when the server falls behind.
+     */
+    private void writeSummary(File file, List<Workload.Route> routes) throws IOException {
+        ObjectNode summary = objectMapper.createObjectNode();
+        summary.put("options", options.toString());
+        summary.put("dropped", dropped.sum());
+        double elapsedSeconds = (measurementEndMillis - measurementStartMillis) / 1000.0;
+        ObjectNode routeSummaries = summary.putObject("routes");
+        for (Workload.Route route : routes) {
+            summarize(routeSummaries.putObject(route.name), route.latencies, route.errors.sum(), elapsedSeconds);
+        }
+        summarize(summary.putObject("all"), allLatencies, routes.stream().mapToLong(route -> route.errors.sum()).sum(),
+                elapsedSeconds);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, summary);
+    }
+
+    private static void summarize(ObjectNode node, Histogram latencies, long errors, double elapsedSeconds) {
+        node.put("requests", latencies.getTotalCount());
+        node.put("errors", errors);
+        node.put("throughput", Math.round(latencies.getTotalCount() / elapsedSeconds * 10) / 10.0);
+        node.put("p50Ms", millis(latencies.getValueAtPercentile(50)));
+        node.put("p99Ms", millis(latencies.getValueAtPercentile(99)));
+        node.put("p999Ms", millis(latencies.getValueAtPercentile(99.9)));
+        node.put("maxMs", millis(latencies.getMaxValue()));
+    }
+
+    private static void writeDistribution(File file, Histogram latencies) throws IOException {
+        try (PrintStream out = new PrintStream(file)) {
+            // values are recorded in nanoseconds and reported in milliseconds
+            latencies.outputPercentileDistribution(out, 1_000_000.0);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private long[] seed(String url, int count, IntFunction<String> json,
+                        String listField, String urlField) throws IOException, InterruptedException {
+        List<Long> ids = new ArrayList<>(count);
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, count); i++) {
+                batch.append(i == from ? "" : ",").append(json.apply(i));
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                                             .header("Content-Type", "application/json")
+                                             .POST(HttpRequest.BodyPublishers.ofString(batch.append(']').toString()))
+                                             .build();
+            for (JsonNode created : objectMapper.readTree(send(request)).get(listField)) {
+                String resourceUrl = created.get(urlField).asText();
+                ids.add(Long.valueOf(resourceUrl.substring(resourceUrl.lastIndexOf('/') + 1)));
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private JsonNode getJson(String url) throws IOException, InterruptedException {
+        return objectMapper.readTree(send(HttpRequest.newBuilder(URI.create(url)).GET().build()));
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IOException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+}
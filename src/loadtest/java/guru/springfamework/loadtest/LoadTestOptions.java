@@ -0,0 +1,60 @@
+package guru.springfamework.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}.
+ */
+final class LoadTestOptions {
+
+    final int customers;
+    final int vendors;
+    final double rate;
+    final Duration warmup;
+    final Duration duration;
+    final double writeRatio;
+    final int maxInFlight;
+    final String outputDirectory;
+    final String baseUrl;
+    final int idleConnections;
+
+    private LoadTestOptions(Map<String, String> values) {
+        customers = Integer.parseInt(values.getOrDefault("customers", "10000"));
+        vendors = Integer.parseInt(values.getOrDefault("vendors", "1000"));
+        rate = Double.parseDouble(values.getOrDefault("rate", "500"));
+        warmup = Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "10")));
+        duration = Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60")));
+        writeRatio = Double.parseDouble(values.getOrDefault("write-ratio", "0.1"));
+        maxInFlight = Integer.parseInt(values.getOrDefault("max-in-flight", "10000"));
+        outputDirectory = values.getOrDefault("output", "target/loadtest");
+        baseUrl = values.get("base-url");
+        idleConnections = Integer.parseInt(values.getOrDefault("idle-connections", "0"));
+
+        if (customers < 1 || vendors < 1 || rate <= 0 || writeRatio < 0 || writeRatio > 1) {
+            throw new IllegalArgumentException("customers, vendors and rate must be positive and write-ratio between 0 and 1");
+        }
+        if (idleConnections < 0) {
+            throw new IllegalArgumentException("idle-connections must not be negative");
+        }
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    @Override
+    public String toString() {
+        return "customers=" + customers + " vendors=" + vendors + " rate=" + rate + "/s warmup=" + warmup.getSeconds()
+                + "s duration=" + duration.getSeconds() + "s write-ratio=" + writeRatio + " idle-connections=" + idleConnections;
+    }
+}
@@ -0,0 +1,238 @@
+package guru.springfamework.loadtest;
+
+import guru.springfamework.controllers.v1.ApiHeaders;
+import guru.springfamework.controllers.v1.CategoryController;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.VendorController;
+import guru.springfamework.services.PageCursor;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Every v1 route with its share of the read or write traffic. Reads and updates go to the seeded records,
+ * deletes only to records the run created itself, so the seeded data set stays the same for the whole run.
+ */
+final class Workload {
+
+    private static final Pattern RESOURCE_ID = Pattern.compile("/(\\d+)\"");
+    private static final int MULTI_GET_SIZE = 10;
+    private static final int BATCH_SIZE = 50;
+    private static final int PAGE_SIZE = 50;
+
+    private final String baseUrl;
+    private final Queue<Long> createdCustomerIds = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> createdVendorIds = new ConcurrentLinkedQueue<>();
+    private final List<Route> reads = new ArrayList<>();
+    private final List<Route> writes = new ArrayList<>();
+    private final SplittableRandom random;
+
+    Workload(String baseUrl, long[] customerIds, long[] vendorIds, List<String> categoryNames, long seed) {
+        this.baseUrl = baseUrl;
+        this.random = new SplittableRandom(seed);
+
+        read("customers.get-by-id", 40, () -> get(CustomerController.BASE_URL + pick(customerIds)));
+        read("customers.page", 10, () -> get(CustomerController.BASE_URL + "?limit=" + PAGE_SIZE
+                + "&cursor=" + PageCursor.encode(pick(customerIds) - 1)));
+        read("customers.multi-get", 5, () -> get(CustomerController.BASE_URL + "?ids=" + pickIds(customerIds)));
+        read("customers.list", 1, () -> get(CustomerController.BASE_URL));
+        read("customers.export", 1, () -> get(CustomerController.BASE_URL + "export"));
+        read("vendors.get-by-id", 20, () -> get(VendorController.BASE_URL + pick(vendorIds)));
+        read("vendors.page", 5, () -> get(VendorController.BASE_URL + "?limit=" + PAGE_SIZE
+                + "&cursor=" + PageCursor.encode(pick(vendorIds) - 1)));
+        read("vendors.multi-get", 3, () -> get(VendorController.BASE_URL + "?ids=" + pickIds(vendorIds)));
+        read("vendors.list", 1, () -> get(VendorController.BASE_URL));
+        read("vendors.export", 1, () -> get(VendorController.BASE_URL + "export?format=csv"));
+        read("categories.list", 5, () -> get(CategoryController.BASE_URL));
+        read("categories.by-name", 8, () -> get(CategoryController.BASE_URL + pick(categoryNames)));
+
+        write("customers.create", 10, () -> send("POST", CustomerController.BASE_URL, customerJson()),
+                response -> recordCreatedId(response, createdCustomerIds));
+        write("customers.batch", 1, () -> send("POST", CustomerController.BASE_URL + "batch", customerBatchJson()), null);
+        write("customers.put", 10, () -> send("PUT", CustomerController.BASE_URL + pick(customerIds), customerJson()), null);
+        write("customers.patch", 10, () -> send("PATCH", CustomerController.BASE_URL + pick(customerIds),
+                "{\"lastName\":\"" + name() + "\"}"), null);
+        write("customers.patch-minimal", 10, () -> send("PATCH", CustomerController.BASE_URL + pick(customerIds),
+                "{\"firstName\":\"" + name() + "\"}", ApiHeaders.PREFER, ApiHeaders.RETURN_MINIMAL), null);
+        write("customers.delete", 8, () -> deleteOne(CustomerController.BASE_URL, createdCustomerIds), null);
+        write("customers.bulk-delete", 1, () -> deleteMany(CustomerController.BASE_URL, createdCustomerIds), null);
+        write("vendors.create", 5, () -> send("POST", VendorController.BASE_URL, vendorJson()),
+                response -> recordCreatedId(response, createdVendorIds));
+        write("vendors.batch", 1, () -> send("POST", VendorController.BASE_URL + "batch", "[" + vendorJson() + "]"), null);
+        write("vendors.put", 5, () -> send("PUT", VendorController.BASE_URL + pick(vendorIds), vendorJson()), null);
+        write("vendors.patch", 5, () -> send("PATCH", VendorController.BASE_URL + pick(vendorIds), vendorJson()), null);
+        write("vendors.patch-minimal", 5, () -> send("PATCH", VendorController.BASE_URL + pick(vendorIds), vendorJson(),
+                ApiHeaders.PREFER, ApiHeaders.RETURN_MINIMAL), null);
+        write("vendors.delete", 4, () -> deleteOne(VendorController.BASE_URL, createdVendorIds), null);
+        write("vendors.bulk-delete", 1, () -> deleteMany(VendorController.BASE_URL, createdVendorIds), null);
+    }
+
+    List<Route> routes() {
+        List<Route> routes = new ArrayList<>(reads);
+        routes.addAll(writes);
+        return routes;
+    }
+
+    /**
+     * Picks the next route and builds its request. Only called from the dispatcher thread,
+     * so the same seed always produces the same request sequence.
+     */
+    Request next(double writeRatio) {
+        List<Route> routes = random.nextDouble() < writeRatio ? writes : reads;
+        while (true) {
+            Route route = pickWeighted(routes);
+            // a delete without anything left to delete returns null, another route is picked instead
+            HttpRequest request = route.requestFactory.get();
+            if (request != null) {
+                return new Request(route, request);
+            }
+        }
+    }
+
+    private void read(String name, int weight, Supplier<HttpRequest> requestFactory) {
+        reads.add(new Route(name, weight, requestFactory, null));
+    }
+
+    private void write(String name, int weight, Supplier<HttpRequest> requestFactory,
+                       Consumer<HttpResponse<String>> onResponse) {
+        writes.add(new Route(name, weight, requestFactory, onResponse));
+    }
+
+    private Route pickWeighted(List<Route> routes) {
+        int total = 0;
+        for (Route route : routes) {
+            total += route.weight;
+        }
+        int value = random.nextInt(total);
+        for (Route route : routes) {
+            value -= route.weight;
+            if (value < 0) {
+                return route;
+            }
+        }
+        throw new IllegalStateException("no route picked");
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest send(String method, String path, String json, String... headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                                                 .header("Content-Type", "application/json")
+                                                 .method(method, HttpRequest.BodyPublishers.ofString(json));
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest deleteOne(String basePath, Queue<Long> createdIds) {
+        Long id = createdIds.poll();
+        return id == null ? null : HttpRequest.newBuilder(URI.create(baseUrl + basePath + id)).DELETE().build();
+    }
+
+    private HttpRequest deleteMany(String basePath, Queue<Long> createdIds) {
+        StringJoiner ids = new StringJoiner(",");
+        for (int i = 0; i < MULTI_GET_SIZE; i++) {
+            Long id = createdIds.poll();
+            if (id == null) {
+                break;
+            }
+            ids.add(id.toString());
+        }
+        return ids.length() == 0 ? null
+                : HttpRequest.newBuilder(URI.create(baseUrl + basePath + "?ids=" + ids)).DELETE().build();
+    }
+
+    private void recordCreatedId(HttpResponse<String> response, Queue<Long> createdIds) {
+        Matcher matcher = RESOURCE_ID.matcher(response.body());
+        if (response.statusCode() < 300 && matcher.find()) {
+            createdIds.add(Long.valueOf(matcher.group(1)));
+        }
+    }
+
+    private String customerJson() {
+        return "{\"firstName\":\"" + name() + "\",\"lastName\":\"" + name() + "\"}";
+    }
+
+    private String customerBatchJson() {
+        StringJoiner batch = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(customerJson());
+        }
+        return batch.toString();
+    }
+
+    private String vendorJson() {
+        return "{\"name\":\"" + name() + " Ltd.\"}";
+    }
+
+    private String name() {
+        return "Name" + random.nextInt(1_000_000);
+    }
+
+    private long pick(long[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private String pickIds(long[] ids) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < MULTI_GET_SIZE; i++) {
+            joiner.add(Long.toString(pick(ids)));
+        }
+        return joiner.toString();
+    }
+
+    static final class Route {
+        final String name;
+        final int weight;
+        final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(10), 3);
+        final LongAdder errors = new LongAdder();
+        private final Supplier<HttpRequest> requestFactory;
+        private final Consumer<HttpResponse<String>> onResponse;
+
+        Route(String name, int weight, Supplier<HttpRequest> requestFactory,
+              Consumer<HttpResponse<String>> onResponse) {
+            this.name = name;
+            this.weight = weight;
+            this.requestFactory = requestFactory;
+            this.onResponse = onResponse;
+        }
+
+        void completed(HttpResponse<String> response) {
+            if (onResponse != null) {
+                onResponse.accept(response);
+            }
+        }
+    }
+
+    static final class Request {
+        final Route route;
+        final HttpRequest httpRequest;
+
+        Request(Route route, HttpRequest httpRequest) {
+            this.route = route;
+            this.httpRequest = httpRequest;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package guru.springfamework.api.v1.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes export rows one at a time to the response stream, so nothing but the current row is held in memory.
+ * Closing the writer flushes it but leaves the underlying stream open for the container.
+ */
+public abstract class ExportWriter<T> implements Consumer<T>, Closeable, Flushable {
+
+    public static <T> ExportWriter<T> ndjson(ObjectMapper objectMapper, Class<T> type, OutputStream out) throws IOException {
+        return new NdjsonExportWriter<>(objectMapper.writerFor(type), out);
+    }
+
+    /**
+     * Writes the rows as the array field of a JSON object, e.g. {@code {"customers":[...]}},
+     * for list endpoints whose response shape has to stay the same.
+     */
+    public static <T> ExportWriter<T> jsonList(ObjectMapper objectMapper, Class<T> type, String field,
+                                               OutputStream out) throws IOException {
+        return new JsonListExportWriter<>(objectMapper.writerFor(type), field, out);
+    }
+
+    public static <T> ExportWriter<T> csv(OutputStream out, List<String> header, Function<T, List<?>> columns) throws IOException {
+        return new CsvExportWriter<>(out, header, columns);
+    }
+
+    @Override
+    public void accept(T row) {
+        try {
+            write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected abstract void write(T row) throws IOException;
+
+    /**
+     * Ends the document after the last row. Not called when the export fails,
+     * so a truncated JSON list cannot be mistaken for a complete one.
+     */
+    public void finish() throws IOException {
+    }
+
+    private static class NdjsonExportWriter<T> extends ExportWriter<T> {
+        private final ObjectWriter objectWriter;
+        private final JsonGenerator generator;
+
+        NdjsonExportWriter(ObjectWriter objectWriter, OutputStream out) throws IOException {
+            // flushing is left to the generator's buffer instead of writing every row to the socket
+            this.objectWriter = objectWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.generator = objectWriter.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(new SerializedString(""));
+        }
+
+        @Override
+        protected void write(T row) throws IOException {
+            objectWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class JsonListExportWriter<T> extends ExportWriter<T> {
+        private final ObjectWriter objectWriter;
+        private final JsonGenerator generator;
+        private boolean started;
+
+        JsonListExportWriter(ObjectWriter objectWriter, String field, OutputStream out) throws IOException {
+            // flushing is left to the generator's buffer, apart from the first row
+            this.objectWriter = objectWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.generator = objectWriter.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.writeStartObject();
+            this.generator.writeArrayFieldStart(field);
+        }
+
+        @Override
+        protected void write(T row) throws IOException {
+            objectWriter.writeValue(generator, row);
+            if (!started) {
+                // the client gets the first bytes as soon as the query returns its first row
+                started = true;
+                generator.flush();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // closing the generator would end the open array and object, even after a failure
+            generator.flush();
+        }
+    }
+
+    private static class CsvExportWriter<T> extends ExportWriter<T> {
+        private final Writer writer;
+        private final Function<T, List<?>> columns;
+
+        CsvExportWriter(OutputStream out, List<String> header, Function<T, List<?>> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.columns = columns;
+            writeLine(header);
+        }
+
+        @Override
+        protected void write(T row) throws IOException {
+            writeLine(columns.apply(row));
+        }
+
+        private void writeLine(List<?> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(values.get(i));
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String field = value.toString();
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                writer.write(field);
+                return;
+            }
+            writer.write('"');
+            writer.write(field.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
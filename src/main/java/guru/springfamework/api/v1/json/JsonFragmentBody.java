@@ -0,0 +1,50 @@
+package guru.springfamework.api.v1.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JSON response made of byte fragments, written one after the other by {@link JsonFragmentBodyConverter}.
+ * The fragments are shared with the cache and must not be modified.
+ */
+public final class JsonFragmentBody {
+
+    static final byte[] OBJECT_START = {'{'};
+    static final byte[] OBJECT_END = {'}'};
+    static final byte[] ARRAY_START = {'['};
+    static final byte[] ARRAY_END = {']'};
+    static final byte[] COMMA = {','};
+    static final byte[] COLON = {':'};
+
+    private final List<byte[]> fragments;
+    private final long length;
+
+    private JsonFragmentBody(List<byte[]> fragments, long length) {
+        this.fragments = Collections.unmodifiableList(fragments);
+        this.length = length;
+    }
+
+    public List<byte[]> getFragments() {
+        return fragments;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    static final class Builder {
+        private final List<byte[]> fragments = new ArrayList<>();
+        private long length;
+
+        Builder append(byte[] fragment) {
+            fragments.add(fragment);
+            length += fragment.length;
+            return this;
+        }
+
+        JsonFragmentBody build() {
+            return new JsonFragmentBody(fragments, length);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package guru.springfamework.api.v1.json;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link JsonFragmentBody} by copying its fragments to the response stream. Write only.
+ * Spring Boot adds converter beans in front of the default converters.
+ */
+@Component
+public class JsonFragmentBodyConverter extends AbstractHttpMessageConverter<JsonFragmentBody> {
+
+    public JsonFragmentBodyConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return JsonFragmentBody.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected JsonFragmentBody readInternal(Class<? extends JsonFragmentBody> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("JSON fragments are write only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(JsonFragmentBody body, MediaType contentType) {
+        return body.getLength();
+    }
+
+    @Override
+    protected void writeInternal(JsonFragmentBody body, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        for (byte[] fragment : body.getFragments()) {
+            out.write(fragment);
+        }
+    }
+}
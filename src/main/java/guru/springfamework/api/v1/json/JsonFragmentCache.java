@@ -0,0 +1,190 @@
+package guru.springfamework.api.v1.json;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * UTF-8 JSON of single resources, keyed by resource URL and only valid for the version it was written for,
+ * so a response can be assembled by copying bytes instead of serializing every DTO again.
+ * A changed row has a new version and simply misses; the services evict on writes to free the space early.
+ * The cache is bounded by {@code app.json-fragments.max-size} bytes and monitored as {@code json-fragments}, with the
+ * tag keys Spring Boot uses for its caches, since Prometheus keeps only one set of tag keys per meter name;
+ * hits (serializations skipped) and misses are counted in {@code app.json.fragments} per resource type.
+ */
+@Component
+public class JsonFragmentCache {
+
+    static final String CACHE_NAME = "json-fragments";
+    static final String CACHE_MANAGER = "jsonFragmentCache";
+
+    // key, version and entry objects, roughly
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Fragment> fragments;
+
+    public JsonFragmentCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             @Value("${app.json-fragments.max-size:16MB}") DataSize maxSize) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.fragments = Caffeine.newBuilder()
+                                 .maximumWeight(maxSize.toBytes())
+                                 .weigher((String url, Fragment fragment) -> url.length() + fragment.json.length + ENTRY_OVERHEAD_BYTES)
+                                 .recordStats()
+                                 .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, fragments, CACHE_NAME, "name", CACHE_NAME, "cacheManager", CACHE_MANAGER);
+        meterRegistry.gauge("app.json.fragments.bytes", fragments,
+                cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+    }
+
+    /**
+     * Fragments for one resource type.
+     *
+     * @param name  the type, used as the metric tag
+     * @param url   the resource URL, which is the cache key; values without one are serialized every time
+     * @param version the version the representation belongs to; values without one are serialized every time
+     */
+    public <T> JsonFragments<T> forType(String name, Class<T> type, Function<T, String> url, Function<T, Long> version) {
+        return new JsonFragments<>(objectMapper.writerFor(type), url, version,
+                meterRegistry.counter("app.json.fragments", "type", name, "result", "hit"),
+                meterRegistry.counter("app.json.fragments", "type", name, "result", "miss"));
+    }
+
+    public void evict(String url) {
+        fragments.invalidate(url);
+    }
+
+    public void evictAll(Collection<String> urls) {
+        fragments.invalidateAll(urls);
+    }
+
+    /**
+     * Serializes a value that is not cached, such as a field next to a list of fragments.
+     */
+    byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value, e);
+        }
+    }
+
+    public final class JsonFragments<T> {
+        private final ObjectWriter objectWriter;
+        private final Function<T, String> url;
+        private final Function<T, Long> version;
+        private final Counter hits;
+        private final Counter misses;
+
+        JsonFragments(ObjectWriter objectWriter, Function<T, String> url, Function<T, Long> version,
+                      Counter hits, Counter misses) {
+            this.objectWriter = objectWriter;
+            this.url = url;
+            this.version = version;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        /**
+         * The JSON of the value, from the cache when it holds the value's version.
+         */
+        public byte[] get(T value) {
+            String key = url.apply(value);
+            Long currentVersion = version.apply(value);
+            if (key != null && currentVersion != null) {
+                Fragment fragment = fragments.getIfPresent(key);
+                if (fragment != null && fragment.version == currentVersion.longValue()) {
+                    hits.increment();
+                    return fragment.json;
+                }
+            }
+
+            misses.increment();
+            byte[] json;
+            try {
+                json = objectWriter.writeValueAsBytes(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialize " + key, e);
+            }
+            if (key != null && currentVersion != null) {
+                fragments.put(key, new Fragment(currentVersion, json));
+            }
+            return json;
+        }
+
+        public JsonFragmentBody single(T value) {
+            return new JsonFragmentBody.Builder().append(get(value)).build();
+        }
+
+        /**
+         * Starts an object, e.g. {@code object().array("customers", customers).field("next", next).build()}.
+         */
+        public ObjectBuilder object() {
+            return new ObjectBuilder();
+        }
+
+        public final class ObjectBuilder {
+            private final JsonFragmentBody.Builder body = new JsonFragmentBody.Builder();
+            private boolean first = true;
+
+            ObjectBuilder() {
+                body.append(JsonFragmentBody.OBJECT_START);
+            }
+
+            public ObjectBuilder array(String name, List<T> values) {
+                name(name);
+                body.append(JsonFragmentBody.ARRAY_START);
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0) {
+                        body.append(JsonFragmentBody.COMMA);
+                    }
+                    body.append(get(values.get(i)));
+                }
+                body.append(JsonFragmentBody.ARRAY_END);
+                return this;
+            }
+
+            public ObjectBuilder field(String name, Object value) {
+                name(name);
+                body.append(serialize(value));
+                return this;
+            }
+
+            public JsonFragmentBody build() {
+                return body.append(JsonFragmentBody.OBJECT_END).build();
+            }
+
+            private void name(String name) {
+                if (!first) {
+                    body.append(JsonFragmentBody.COMMA);
+                }
+                first = false;
+                body.append(serialize(name)).append(JsonFragmentBody.COLON);
+            }
+        }
+    }
+
+    private static final class Fragment {
+        private final long version;
+        private final byte[] json;
+
+        Fragment(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
@@ -4,7 +4,10 @@ import guru.springfamework.api.v1.model.CategoryDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
 import guru.springfamework.domain.Category;
 import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.CustomerView;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -13,5 +16,11 @@ public interface CustomerMapper {
 
     CustomerDTO customerToCustomerDTO(Customer customer);
 
+    CustomerDTO customerViewToCustomerDTO(CustomerView customerView);
+
     Customer customerDTOToCustomer(CustomerDTO customerDTO);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateCustomerFromDTO(CustomerDTO customerDTO, @MappingTarget Customer customer);
 }
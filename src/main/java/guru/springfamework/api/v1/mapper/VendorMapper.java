@@ -2,7 +2,10 @@ package guru.springfamework.api.v1.mapper;
 
 import guru.springfamework.api.v1.model.VendorDTO;
 import guru.springfamework.domain.Vendor;
+import guru.springfamework.domain.VendorView;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -11,5 +14,11 @@ public interface VendorMapper {
 
     VendorDTO vendorToVendorDTO(Vendor vendor);
 
+    VendorDTO vendorViewToVendorDTO(VendorView vendorView);
+
     Vendor vendorDTOToVendor(VendorDTO vendorDTO);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateVendorFromDTO(VendorDTO vendorDTO, @MappingTarget Vendor vendor);
 }
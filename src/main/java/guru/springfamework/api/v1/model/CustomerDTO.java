@@ -1,5 +1,6 @@
 package guru.springfamework.api.v1.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -18,6 +19,17 @@ public class CustomerDTO {
     @JsonProperty("customer_url")
     private String customerUrl;
 
+    /** Entity version, sent as the ETag header rather than in the body. */
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    private Long version;
+
+    public CustomerDTO(String firstName, String lastName, String customerUrl) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.customerUrl = customerUrl;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -41,4 +53,12 @@ public class CustomerDTO {
     public void setCustomerUrl(String customerUrl) {
         this.customerUrl = customerUrl;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
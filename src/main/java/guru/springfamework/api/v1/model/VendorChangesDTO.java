@@ -0,0 +1,16 @@
+package guru.springfamework.api.v1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VendorChangesDTO {
+    List<VendorDTO> vendors;
+    List<Long> deleted;
+    String token;
+}
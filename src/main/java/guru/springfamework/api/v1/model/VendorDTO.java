@@ -1,6 +1,8 @@
 package guru.springfamework.api.v1.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,6 +16,15 @@ public class VendorDTO {
     @JsonProperty("vendor_url")
     private String vendorUrl;
 
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    private Long version;
+
+    public VendorDTO(String name, String vendorUrl) {
+        this.name = name;
+        this.vendorUrl = vendorUrl;
+    }
+
     public String getName() {
         return name;
     }
@@ -29,4 +40,12 @@ public class VendorDTO {
     public void setVendorUrl(String vendorsURL) {
         this.vendorUrl = vendorsURL;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,15 @@
+package guru.springfamework.api.v1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VendorLookupDTO {
+    List<VendorDTO> vendors;
+    List<Long> missing;
+}
@@ -32,11 +32,9 @@ public class Bootstrap implements CommandLineRunner {
 
     private void loadVendor() {
         Vendor vendor1 = new Vendor();
-        vendor1.setId(1L);
         vendor1.setName("Western Tasty Fruits Ltd.");
 
         Vendor vendor2 = new Vendor();
-        vendor2.setId(2L);
         vendor2.setName("Exotic Fruits Company.");
 
         vendorRepository.save(vendor1);
@@ -47,12 +45,10 @@ public class Bootstrap implements CommandLineRunner {
 
     private void loadCustomers() {
         Customer customer1 = new Customer();
-        customer1.setId(1L);
         customer1.setFirstName("Michale");
         customer1.setLastName("Weston");
 
         Customer customer2 = new Customer();
-        customer2.setId(2L);
         customer2.setFirstName("Sam");
         customer2.setLastName("Axe");
 
@@ -0,0 +1,265 @@
+package guru.springfamework.changes;
+
+import guru.springfamework.services.ResourceNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams {@link ResourceChange}s to Server-Sent Events subscribers. Every change gets the next sequence number,
+ * and the last {@code app.changes.buffer-size} changes are kept in a ring buffer, so a client reconnecting with
+ * {@code Last-Event-ID} gets the changes it missed. The SSE event id is {@code <bootEpoch>-<sequence>}: sequences
+ * start over on every boot, and the epoch, the boot time, tells an id from before a restart apart from a current
+ * one. A client whose last id has already left the buffer, or is from another boot, gets a {@code reset} event
+ * instead and has to reload.
+ * <p>
+ * Every subscriber reads the buffer at its own pace on the {@code changes} sender pool, so a slow client
+ * neither blocks the writers nor the other subscribers. A subscriber whose next change has been overwritten
+ * is dropped; its client reconnects and gets a reset. Changes are counted in {@code app.changes.published},
+ * drops in {@code app.changes.dropped}, and {@code app.changes.subscribers} is the number of open streams.
+ */
+@Component
+public class ChangeFeed implements DisposableBean {
+
+    public static final String RESET_EVENT = "reset";
+    static final Set<String> DOMAINS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(ResourceChange.CUSTOMERS, ResourceChange.VENDORS, ResourceChange.CATEGORIES)));
+
+    private static final int SEND_BATCH_SIZE = 64;
+
+    private final String bootEpoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final MeterRegistry meterRegistry;
+    private final Entry[] ring;
+    private final long timeoutMillis;
+    private final ScheduledThreadPoolExecutor senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter dropped;
+    private long latest;
+
+    public ChangeFeed(MeterRegistry meterRegistry,
+                      @Value("${app.changes.buffer-size:1024}") int bufferSize,
+                      @Value("${app.changes.sender-threads:4}") int senderThreads,
+                      @Value("${app.changes.timeout:30m}") Duration timeout,
+                      @Value("${app.changes.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.meterRegistry = meterRegistry;
+        this.ring = new Entry[bufferSize];
+        this.timeoutMillis = timeout.toMillis();
+        this.senders = new ScheduledThreadPoolExecutor(senderThreads, new CustomizableThreadFactory("changes-"));
+        this.dropped = meterRegistry.counter("app.changes.dropped");
+        ExecutorServiceMetrics.monitor(meterRegistry, senders, "changes");
+        meterRegistry.gaugeCollectionSize("app.changes.subscribers", Tags.empty(), subscribers);
+
+        if (!heartbeatInterval.isZero()) {
+            // a comment line now and then keeps proxies from closing idle streams and finds clients that went away
+            senders.scheduleAtFixedRate(() -> subscribers.forEach(Subscriber::heartbeat),
+                    heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends the change to the buffer and wakes up the subscribers. Changes made in a transaction
+     * are only published after it commits.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void publish(ResourceChange change) {
+        synchronized (this) {
+            latest++;
+            ring[(int) (latest % ring.length)] = new Entry(latest, change);
+        }
+        meterRegistry.counter("app.changes.published", "domain", change.getDomain()).increment();
+        subscribers.forEach(Subscriber::wake);
+    }
+
+    /**
+     * Opens a stream of the changes after {@code lastEventId}, or of new changes only when there is none.
+     *
+     * @param domain the domain to stream, or null for all of them
+     * @throws ResourceNotFoundException for an unknown domain
+     */
+    public SseEmitter subscribe(String domain, String lastEventId) {
+        if (domain != null && !DOMAINS.contains(domain)) {
+            throw new ResourceNotFoundException("No change feed for " + domain);
+        }
+
+        Subscriber subscriber;
+        synchronized (this) {
+            long from = parseEventId(lastEventId);
+            boolean resumable = from >= 0 && from >= latest - ring.length && from <= latest;
+            subscriber = new Subscriber(new SseEmitter(timeoutMillis), domain, resumable ? from : latest,
+                    from >= 0 && !resumable);
+        }
+        subscribers.add(subscriber);
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+        subscriber.wake();
+        return subscriber.emitter;
+    }
+
+    /**
+     * The buffered changes after {@code cursor}, or null when the change right after it has been overwritten.
+     */
+    private synchronized List<Entry> entriesAfter(long cursor) {
+        if (latest - cursor > ring.length) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (long sequence = cursor + 1; sequence <= latest && entries.size() < SEND_BATCH_SIZE; sequence++) {
+            entries.add(ring[(int) (sequence % ring.length)]);
+        }
+        return entries;
+    }
+
+    private synchronized boolean hasChangesAfter(long cursor) {
+        return latest > cursor;
+    }
+
+    String eventId(long sequence) {
+        return bootEpoch + "-" + sequence;
+    }
+
+    /**
+     * @return the sequence of the event id, -1 for none, or {@link Long#MAX_VALUE} for one that cannot be resumed
+     */
+    private long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.trim().isEmpty()) {
+            return -1;
+        }
+        String prefix = bootEpoch + "-";
+        if (!lastEventId.trim().startsWith(prefix)) {
+            // from before a restart, or not one of ours; its sequence means nothing now
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Math.max(0, Long.parseLong(lastEventId.trim().substring(prefix.length())));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        senders.shutdownNow();
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final ResourceChange change;
+
+        Entry(long sequence, ResourceChange change) {
+            this.sequence = sequence;
+            this.change = change;
+        }
+    }
+
+    /**
+     * Sends on the sender pool, one task per subscriber at a time, so its events stay in order.
+     */
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final String domain;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile boolean reset;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, String domain, long cursor, boolean reset) {
+            this.emitter = emitter;
+            this.domain = domain;
+            this.cursor = cursor;
+            this.reset = reset;
+        }
+
+        void wake() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    close();
+                }
+            }
+        }
+
+        void heartbeat() {
+            heartbeatDue = true;
+            wake();
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                send();
+            } catch (IOException | IllegalStateException e) {
+                // the client went away or the stream timed out; the container completes the emitter
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed && (heartbeatDue || hasChangesAfter(cursor))) {
+                // published while this run was finishing
+                wake();
+            }
+        }
+
+        private void send() throws IOException {
+            if (reset) {
+                reset = false;
+                emitter.send(SseEmitter.event().id(eventId(cursor)).name(RESET_EVENT).data(""));
+            }
+
+            List<Entry> entries;
+            while (!closed && (entries = entriesAfter(cursor)) != null && !entries.isEmpty()) {
+                for (Entry entry : entries) {
+                    ResourceChange change = entry.change;
+                    if (domain == null || domain.equals(change.getDomain())) {
+                        emitter.send(SseEmitter.event()
+                                               .id(eventId(entry.sequence))
+                                               .name(change.getDomain() + "." + change.getType().name().toLowerCase())
+                                               .data(change, MediaType.APPLICATION_JSON));
+                    }
+                    cursor = entry.sequence;
+                }
+            }
+            if (!closed && entriesAfter(cursor) == null) {
+                dropped.increment();
+                close();
+                emitter.complete();
+                return;
+            }
+
+            if (heartbeatDue) {
+                heartbeatDue = false;
+                emitter.send(SseEmitter.event().comment(""));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package guru.springfamework.changes;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A customer, vendor or category that was created, updated or deleted. The services publish it as an
+ * application event; the {@link ChangeFeed} picks it up once the change is committed.
+ */
+public final class ResourceChange {
+
+    public static final String CUSTOMERS = "customers";
+    public static final String VENDORS = "vendors";
+    public static final String CATEGORIES = "categories";
+
+    public enum Type {
+        @JsonProperty("created") CREATED,
+        @JsonProperty("updated") UPDATED,
+        @JsonProperty("deleted") DELETED
+    }
+
+    private final String domain;
+    private final Type type;
+    private final Long id;
+    private final String url;
+    private final Long version;
+
+    /**
+     * @param version the version after the change, or null when it is not known without reading the row
+     */
+    public ResourceChange(String domain, Type type, Long id, String url, Long version) {
+        this.domain = domain;
+        this.type = type;
+        this.id = id;
+        this.url = url;
+        this.version = version;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return domain + " " + id + " " + type;
+    }
+}
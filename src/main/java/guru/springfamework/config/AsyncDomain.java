@@ -0,0 +1,23 @@
+package guru.springfamework.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a controller's handler methods on the named executor when {@code app.async.enabled} is set.
+ * Controllers sharing a domain share its threads and queue; controllers without the annotation
+ * keep running on the servlet thread.
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AsyncDomain {
+
+    /**
+     * The executor name, also used for its properties ({@code app.async.executors.<name>.*}) and metrics.
+     */
+    String value();
+}
@@ -0,0 +1,37 @@
+package guru.springfamework.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Opt-in async mode ({@code app.async.enabled=true}): {@link AsyncDomain} controllers run on bounded per-domain
+ * executors instead of the servlet threads, so a slow database cannot use up the servlet threads that
+ * in-memory endpoints like the categories need.
+ * The request metrics (allocations, SQL statements and Server-Timing) follow the request onto the executor threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.async.enabled", havingValue = "true")
+public class AsyncExecutionConfig {
+
+    @Bean
+    public DomainExecutors domainExecutors(Environment environment, MeterRegistry meterRegistry,
+                                           TaskDecorator taskDecorator) {
+        return new DomainExecutors(environment, meterRegistry, taskDecorator);
+    }
+
+    @Bean
+    public WebMvcRegistrations offloadingWebMvcRegistrations(DomainExecutors domainExecutors) {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new OffloadingHandlerAdapter(domainExecutors);
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package guru.springfamework.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+/**
+ * The caches are Caffeine caches set up from the {@code spring.cache.*} properties, like Spring Boot would, but as
+ * {@link GenerationalCaffeineCache}s so a load racing a write is not cached. Lookups have to be
+ * {@code @Cacheable(sync = true)} for that.
+ * The cache advice runs outside the transaction advice, so a cache hit does not begin a transaction and the
+ * evictions of a write happen after it commits.
+ */
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@EnableConfigurationProperties(CacheProperties.class)
+@Configuration
+public class CacheConfig {
+
+    public static final String CUSTOMERS_CACHE = "customers";
+    public static final String VENDORS_CACHE = "vendors";
+
+    @Bean
+    public CaffeineCacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new GenerationalCaffeineCache(name, cache, isAllowNullValues());
+            }
+        };
+        String spec = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(spec)) {
+            cacheManager.setCacheSpecification(spec);
+        }
+        cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,79 @@
+package guru.springfamework.config;
+
+import guru.springfamework.services.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bounded thread pool per {@link AsyncDomain}, so a slow table only ties up the threads of its own domain.
+ * When a pool's threads are busy and its queue is full, new work is rejected with a
+ * {@link ServiceUnavailableException} instead of waiting. Pools are monitored as {@code executor.*} metrics
+ * tagged {@code name=<domain>}; rejections are counted as {@code app.async.rejected}.
+ * Tasks are decorated like those of the MVC task executor, so the request metrics follow them.
+ */
+public class DomainExecutors implements DisposableBean {
+
+    static final String REJECTED_COUNTER = "app.async.rejected";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final TaskDecorator taskDecorator;
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    public DomainExecutors(Environment environment, MeterRegistry meterRegistry, TaskDecorator taskDecorator) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.taskDecorator = taskDecorator;
+    }
+
+    /**
+     * Runs the task on the domain's pool.
+     *
+     * @throws ServiceUnavailableException when the pool is saturated
+     */
+    public void execute(String domain, Runnable task) {
+        try {
+            executor(domain).execute(taskDecorator.decorate(task));
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter(REJECTED_COUNTER, "domain", domain).increment();
+            throw new ServiceUnavailableException("Too many pending " + domain + " requests", e);
+        }
+    }
+
+    Executor executor(String domain) {
+        return executors.computeIfAbsent(domain, this::createExecutor);
+    }
+
+    private ThreadPoolExecutor createExecutor(String domain) {
+        int threads = property(domain, "threads", 16);
+        int queueCapacity = property(domain, "queue-capacity", 100);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(domain + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, domain);
+        return executor;
+    }
+
+    private int property(String domain, String name, int defaultValue) {
+        Integer shared = environment.getProperty("app.async." + name, Integer.class, defaultValue);
+        return environment.getProperty("app.async.executors." + domain + "." + name, Integer.class, shared);
+    }
+
+    @Override
+    public void destroy() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+}
@@ -0,0 +1,86 @@
+package guru.springfamework.config;
+
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Caffeine cache that does not keep values loaded before a write. Every eviction bumps a generation for its key,
+ * and {@code @Cacheable(sync = true)} loads through {@link #get(Object, Callable)}, which takes the generation before
+ * loading and drops its own put when it changed meanwhile. A lookup that read the row before a concurrent write
+ * committed therefore cannot put the old value back after the write's eviction.
+ * <p>
+ * The put comes before the check and the writer's bump before its eviction, so either the loader sees the bump or
+ * the eviction comes after the put. Generations are striped by key hash, so a write can also make a load of another
+ * key skip the cache once; that costs a miss, never a stale value.
+ */
+public class GenerationalCaffeineCache extends CaffeineCache {
+
+    static final int STRIPES = 1024;
+
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicLong clears = new AtomicLong();
+
+    public GenerationalCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                     boolean allowNullValues) {
+        super(name, cache, allowNullValues);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        long generation = generation(key);
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        putIfAbsent(key, value);
+        if (generation(key) != generation) {
+            // written while loading, so the value may be from before the write
+            super.evict(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void evict(Object key) {
+        generations.incrementAndGet(stripe(key));
+        super.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        generations.incrementAndGet(stripe(key));
+        return super.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        clears.incrementAndGet();
+        super.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        clears.incrementAndGet();
+        return super.invalidate();
+    }
+
+    private long generation(Object key) {
+        // both only grow, so the sum changes whenever either does
+        return clears.get() + generations.get(stripe(key));
+    }
+
+    private static int stripe(Object key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+}
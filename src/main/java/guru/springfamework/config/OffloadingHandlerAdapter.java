@@ -0,0 +1,82 @@
+package guru.springfamework.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Invokes the handler methods of {@link AsyncDomain} controllers on their domain executor. The method's result
+ * is handed back to Spring MVC as a {@link CompletableFuture}, so the servlet thread is released while the method
+ * runs and the result is written in an async dispatch, like any controller returning a CompletableFuture.
+ * Arguments, including the request body, are still resolved on the servlet thread.
+ * Methods that are asynchronous already, like the streamed exports, are left as they are.
+ */
+class OffloadingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    private final DomainExecutors domainExecutors;
+    private final Map<Method, Optional<String>> domains = new ConcurrentHashMap<>();
+
+    OffloadingHandlerAdapter(DomainExecutors domainExecutors) {
+        this.domainExecutors = domainExecutors;
+    }
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        Optional<String> domain = domains.computeIfAbsent(handlerMethod.getMethod(), method ->
+                isAsync(handlerMethod.getReturnType()) ? Optional.empty()
+                        : Optional.ofNullable(AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(),
+                                AsyncDomain.class)).map(AsyncDomain::value));
+        return domain.isPresent()
+                ? new OffloadedHandlerMethod(handlerMethod, domain.get())
+                : super.createInvocableHandlerMethod(handlerMethod);
+    }
+
+    private static boolean isAsync(MethodParameter returnType) {
+        Class<?> type = returnType.getParameterType();
+        if (ResponseEntity.class.isAssignableFrom(type)) {
+            type = ResolvableType.forMethodParameter(returnType).getGeneric().resolve(Object.class);
+        }
+        return StreamingResponseBody.class.isAssignableFrom(type) || ResponseBodyEmitter.class.isAssignableFrom(type)
+                || CompletionStage.class.isAssignableFrom(type) || DeferredResult.class.isAssignableFrom(type)
+                || Callable.class.isAssignableFrom(type) || WebAsyncTask.class.isAssignableFrom(type);
+    }
+
+    private class OffloadedHandlerMethod extends ServletInvocableHandlerMethod {
+
+        private final String domain;
+
+        OffloadedHandlerMethod(HandlerMethod handlerMethod, String domain) {
+            super(handlerMethod);
+            this.domain = domain;
+        }
+
+        @Override
+        protected Object doInvoke(Object... args) {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            domainExecutors.execute(domain, () -> {
+                try {
+                    result.complete(OffloadedHandlerMethod.super.doInvoke(args));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package guru.springfamework.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Streamed bodies (the exports and the full customer and vendor lists) get their own async timeout,
+ * {@code app.streaming.timeout}, instead of the container's 30 seconds that the other async requests keep.
+ * A stream cut off by the timeout still answers 200, and the client has no way to tell it got only part of the
+ * rows, so by default streams have no timeout; a client that stops reading is cut off by the connector's
+ * write timeout instead.
+ */
+@Configuration
+public class StreamingConfig implements WebMvcConfigurer {
+
+    private final Duration timeout;
+
+    public StreamingConfig(@Value("${app.streaming.timeout:0}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // called before the async processing starts, while the timeout can still be changed
+                if (request instanceof AsyncWebRequest && isStreaming(request)) {
+                    ((AsyncWebRequest) request).setTimeout(timeout.isZero() ? -1 : timeout.toMillis());
+                }
+            }
+        });
+    }
+
+    private static boolean isStreaming(NativeWebRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(handler instanceof HandlerMethod)) {
+            return false;
+        }
+        ResolvableType returnType = ResolvableType.forMethodParameter(((HandlerMethod) handler).getReturnType());
+        if (ResponseEntity.class.isAssignableFrom(returnType.toClass())) {
+            returnType = returnType.getGeneric();
+        }
+        return StreamingResponseBody.class.isAssignableFrom(returnType.toClass());
+    }
+}
@@ -0,0 +1,26 @@
+package guru.springfamework.config;
+
+import guru.springfamework.metrics.AllocationTaskDecorator;
+import guru.springfamework.metrics.ServerTimingTaskDecorator;
+import guru.springfamework.metrics.SqlStatementTaskDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Spring Boot applies only one {@link TaskDecorator} to the task executor Spring MVC writes async bodies on, so the
+ * per-request metrics chain theirs. The {@link DomainExecutors} apply the same one.
+ */
+@Configuration
+public class TaskExecutionConfig {
+
+    @Bean
+    @Primary
+    public TaskDecorator requestMetricsTaskDecorator(AllocationTaskDecorator allocationTaskDecorator,
+                                                     SqlStatementTaskDecorator sqlStatementTaskDecorator,
+                                                     ServerTimingTaskDecorator serverTimingTaskDecorator) {
+        return runnable -> allocationTaskDecorator.decorate(
+                sqlStatementTaskDecorator.decorate(serverTimingTaskDecorator.decorate(runnable)));
+    }
+}
@@ -0,0 +1,33 @@
+package guru.springfamework.config;
+
+import guru.springfamework.services.SyncToken;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * The transaction manager Spring Boot would set up, but with read-write transactions limited to
+ * {@code app.sync.write-timeout}. Delta sync finds a row by the time it was stamped, which is before its
+ * transaction commits; a sync token is set back by {@link SyncToken#COMMIT_LAG}, so a write committing later
+ * than that after stamping its rows would be missed. The write timeout has to stay well below the lag.
+ */
+@Configuration
+public class TransactionConfig {
+
+    @Bean
+    public JpaTransactionManager transactionManager(@Value("${app.sync.write-timeout:2s}") Duration writeTimeout,
+                                                    ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        Assert.state(writeTimeout.compareTo(SyncToken.COMMIT_LAG) < 0,
+                "app.sync.write-timeout has to be shorter than the sync token lag of " + SyncToken.COMMIT_LAG);
+
+        JpaTransactionManager transactionManager = new WriteTimeoutTransactionManager(writeTimeout);
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
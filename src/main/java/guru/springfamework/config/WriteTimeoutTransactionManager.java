@@ -0,0 +1,48 @@
+package guru.springfamework.config;
+
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * A {@link JpaTransactionManager} that gives read-write transactions without a timeout of their own the write
+ * timeout, and enforces it at commit as well: a transaction still open after it is rolled back with a
+ * {@link org.springframework.transaction.TransactionTimedOutException} instead of committed. Before that, queries
+ * get the remaining time as their timeout. Read-only transactions, such as those of the streamed exports, are not
+ * limited.
+ * The timeout is kept on the {@link EntityManagerHolder} only, not handed to Hibernate, which counts the remaining
+ * time in whole seconds and fails every statement in the last one.
+ */
+public class WriteTimeoutTransactionManager extends JpaTransactionManager {
+
+    private final Duration writeTimeout;
+
+    public WriteTimeoutTransactionManager(Duration writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        if (determineTimeout(definition) == TransactionDefinition.TIMEOUT_DEFAULT && !definition.isReadOnly()) {
+            getEntityManagerHolder().setTimeoutInMillis(writeTimeout.toMillis());
+        }
+    }
+
+    @Override
+    protected void prepareForCommit(DefaultTransactionStatus status) {
+        EntityManagerHolder holder = getEntityManagerHolder();
+        if (status.isNewTransaction() && holder != null && holder.hasTimeout()) {
+            // throws once the deadline has passed, which rolls the transaction back
+            holder.getTimeToLiveInMillis();
+        }
+    }
+
+    private EntityManagerHolder getEntityManagerHolder() {
+        return (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+    }
+}
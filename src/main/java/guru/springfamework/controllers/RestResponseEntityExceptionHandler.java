@@ -1,9 +1,15 @@
 package guru.springfamework.controllers;
 
+import guru.springfamework.services.BadRequestException;
+import guru.springfamework.services.PreconditionFailedException;
 import guru.springfamework.services.ResourceNotFoundException;
+import guru.springfamework.services.ServiceUnavailableException;
+import guru.springfamework.services.SyncTokenExpiredException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
@@ -17,4 +23,31 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
         return new ResponseEntity<>("Resource Not Found", new HttpHeaders(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler({BadRequestException.class})
+    public ResponseEntity<Object> handleBadRequestException(Exception exception, WebRequest request) {
+        return new ResponseEntity<>(exception.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler({PreconditionFailedException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<Object> handlePreconditionFailedException(Exception exception, WebRequest request) {
+        return new ResponseEntity<>("Precondition Failed", new HttpHeaders(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler({ServiceUnavailableException.class})
+    public ResponseEntity<Object> handleServiceUnavailableException(Exception exception, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>("Service Unavailable", headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler({TransactionTimedOutException.class})
+    public ResponseEntity<Object> handleTransactionTimedOutException(Exception exception, WebRequest request) {
+        return new ResponseEntity<>("Transaction Timed Out", new HttpHeaders(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler({SyncTokenExpiredException.class})
+    public ResponseEntity<Object> handleSyncTokenExpiredException(Exception exception, WebRequest request) {
+        return new ResponseEntity<>("Sync Token Expired", new HttpHeaders(), HttpStatus.GONE);
+    }
+
 }
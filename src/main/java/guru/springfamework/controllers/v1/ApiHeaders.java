@@ -0,0 +1,39 @@
+package guru.springfamework.controllers.v1;
+
+/**
+ * Header names and values shared by the v1 controllers, and the parsing they need.
+ */
+public final class ApiHeaders {
+
+    public static final String PREFER = "Prefer";
+    public static final String PREFERENCE_APPLIED = "Preference-Applied";
+    public static final String RETURN_MINIMAL = "return=minimal";
+    public static final String SYNC_TOKEN = "Sync-Token";
+
+    private ApiHeaders() {
+    }
+
+    /**
+     * Whether a Prefer header asks for {@code return=minimal}, among other preferences or with parameters, e.g.
+     * {@code respond-async, return=minimal; foo}. Names and values are case-insensitive and values may be quoted.
+     * Several Prefer headers arrive joined with commas.
+     */
+    public static boolean prefersReturnMinimal(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String[] nameAndValue = preference.split(";", 2)[0].split("=", 2);
+            if (nameAndValue.length == 2 && nameAndValue[0].trim().equalsIgnoreCase("return")
+                    && unquote(nameAndValue[1].trim()).equalsIgnoreCase("minimal")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                ? value.substring(1, value.length() - 1) : value;
+    }
+}
@@ -1,33 +1,57 @@
 package guru.springfamework.controllers.v1;
 
-import guru.springfamework.api.v1.model.CategoryDTO;
-import guru.springfamework.api.v1.model.CategoryListDTO;
+import guru.springfamework.services.CategoryCatalog;
 import guru.springfamework.services.CategoryService;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Locale;
+
 @RestController
 @RequestMapping(CategoryController.BASE_URL)
 public class CategoryController {
 
     public static final String BASE_URL = "/api/v1/categories/";
-    private final CategoryService categoryServices;
+    private final CategoryService categoryService;
 
-    public CategoryController(CategoryService categoryServices) {
-        this.categoryServices = categoryServices;
+    public CategoryController(CategoryService categoryService) {
+        this.categoryService = categoryService;
     }
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public CategoryListDTO getAllCategories(){
-        return new CategoryListDTO(categoryServices.getAllCategories());
+    public ResponseEntity<byte[]> getAllCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        return toResponse(categoryService.getAllCategoriesBody(), acceptEncoding);
     }
 
     @GetMapping("{name}")
-    @ResponseStatus(HttpStatus.OK)
-    public CategoryDTO getCategory(@PathVariable String name){
-        return categoryServices.getCategoryByName(name);
+    public ResponseEntity<byte[]> getCategory(@PathVariable String name,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        return toResponse(categoryService.getCategoryBodyByName(name), acceptEncoding);
+    }
+
+    private ResponseEntity<byte[]> toResponse(CategoryCatalog.Body body, String acceptEncoding) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                                                           .contentType(MediaType.APPLICATION_JSON)
+                                                           .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzip());
+        }
+        return builder.body(body.getJson());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equals("gzip")) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,39 @@
+package guru.springfamework.controllers.v1;
+
+import guru.springfamework.changes.ChangeFeed;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping(ChangeController.BASE_URL)
+public class ChangeController {
+
+    public static final String BASE_URL = "/api/v1/changes";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+    private final ChangeFeed changeFeed;
+
+    public ChangeController(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    @ApiOperation(value = "This will stream customer, vendor and category changes as Server-Sent Events.",
+            notes = "Reconnect with Last-Event-ID to get the changes missed in between; "
+                    + "a reset event means they are no longer available and the data has to be reloaded.")
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        return changeFeed.subscribe(null, lastEventId);
+    }
+
+    @ApiOperation(value = "This will stream the changes of customers, vendors or categories as Server-Sent Events.")
+    @GetMapping(value = "{domain}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDomainChanges(@PathVariable String domain,
+                                          @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        return changeFeed.subscribe(domain, lastEventId);
+    }
+}
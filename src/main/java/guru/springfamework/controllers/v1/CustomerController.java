@@ -1,38 +1,155 @@
 package guru.springfamework.controllers.v1;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.export.ExportFormat;
+import guru.springfamework.api.v1.export.ExportWriter;
+import guru.springfamework.api.v1.json.JsonFragmentBody;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
 import guru.springfamework.api.v1.model.CustomerListDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.api.v1.model.DeletedDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.AsyncDomain;
 import guru.springfamework.config.SwaggerConfig;
+import guru.springfamework.imports.ImportJob;
+import guru.springfamework.imports.NdjsonImporter;
 import guru.springfamework.services.CustomerService;
+import guru.springfamework.services.SyncToken;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Api(tags = {SwaggerConfig.CUSTOMER_CONTROLLER_DESCRIPTION_TAG})
+@AsyncDomain("customers")
 @RestController
 @RequestMapping(CustomerController.BASE_URL)
 public class CustomerController {
 
     public static final String BASE_URL = "/api/v1/customers/";
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final NdjsonImporter ndjsonImporter;
+    private final JsonFragmentCache.JsonFragments<CustomerDTO> customerFragments;
 
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, ObjectMapper objectMapper, JsonFragmentCache jsonFragmentCache,
+                              NdjsonImporter ndjsonImporter) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.ndjsonImporter = ndjsonImporter;
+        this.customerFragments = jsonFragmentCache.forType("customers", CustomerDTO.class, CustomerDTO::getCustomerUrl, CustomerDTO::getVersion);
+    }
+
+    @ApiOperation(value = "This will get a list of customers.", notes = "Can be a empty list. Rows are streamed as they are read. "
+            + "The Sync-Token header can be passed as changedSince to get the changes after this list.",
+            response = CustomerListDTO.class)
+    // filters and sorting are only served a page at a time, so a request with them but without limit gets a 400
+    // instead of all rows; the other exclusions keep this mapping from tying with the more specific ones
+    @GetMapping(params = {"!limit", "!ids", "!changedSince", "!firstName", "!lastName", "!sort"})
+    public ResponseEntity<StreamingResponseBody> getListOfCustomers() {
+        // taken before the rows are read, so nothing written while they stream is missed by the next sync
+        String syncToken = SyncToken.next(null, Instant.now());
+        StreamingResponseBody body = out -> {
+            try (ExportWriter<CustomerDTO> writer = ExportWriter.jsonList(objectMapper, CustomerDTO.class, "customers", out)) {
+                customerService.exportCustomers(writer);
+                writer.finish();
+            }
+        };
+        return ResponseEntity.ok().header(ApiHeaders.SYNC_TOKEN, syncToken).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
-    @ApiOperation(value = "This will get a list of customers.", notes = "Can be a empty list.")
-    @GetMapping
+    @ApiOperation(value = "This will get the customers modified and the ids deleted after a sync token.",
+            notes = "Pass the returned token as changedSince next time; an empty token gets all customers. "
+                    + "Customers modified around the token time can come back twice. "
+                    + "An expired token gets 410 Gone and the list has to be loaded again.",
+            response = CustomerChangesDTO.class)
+    @GetMapping(params = {"changedSince", "!limit", "!ids"})
     @ResponseStatus(HttpStatus.OK)
-    public CustomerListDTO getListOfCustomers() {
-        return new CustomerListDTO(customerService.getAllCustomers());
+    public JsonFragmentBody getCustomersChangedSince(@RequestParam String changedSince) {
+        CustomerChangesDTO changes = customerService.getCustomersChangedSince(changedSince);
+        return customerFragments.object()
+                                .array("customers", changes.getCustomers())
+                                .field("deleted", changes.getDeleted())
+                                .field("token", changes.getToken())
+                                .build();
     }
 
-    @GetMapping("{id}")
+    @ApiOperation(value = "This will get a page of customers.",
+            notes = "Pass the returned next token as cursor to get the following page. firstName and lastName filter "
+                    + "by value, prefix:<value> or in:<a>,<b>; sort is firstName, lastName or id, with - for descending. "
+                    + "Only one field can be filtered, sorted by that field, or by id for an exact value.",
+            response = CustomerPageDTO.class)
+    @GetMapping(params = {"limit", "!ids"})
     @ResponseStatus(HttpStatus.OK)
-    public CustomerDTO getCustomers(@PathVariable Long id) {
-        return customerService.getCustomerById(id);
+    public JsonFragmentBody getPageOfCustomers(@RequestParam int limit,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) String firstName,
+                                              @RequestParam(required = false) String lastName,
+                                              @RequestParam(required = false) String sort) {
+        Map<String, String> filters = new HashMap<>();
+        filters.put("firstName", firstName);
+        filters.put("lastName", lastName);
+        CustomerPageDTO page = customerService.findCustomers(filters, sort, cursor, limit);
+        return customerFragments.object().array("customers", page.getCustomers()).field("next", page.getNext()).build();
+    }
+
+    @ApiOperation(value = "This will stream all customers.", notes = "Format is ndjson (default) or csv.")
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+
+        StreamingResponseBody body = out -> {
+            try (ExportWriter<CustomerDTO> writer = exportWriter(exportFormat, out)) {
+                customerService.exportCustomers(writer);
+            }
+        };
+        return ResponseEntity.ok().contentType(exportFormat.getMediaType()).body(body);
+    }
+
+    @ApiOperation(value = "This will get the customers with the given ids.",
+            notes = "Customers come back in request order, unknown ids are listed as missing.",
+            response = CustomerLookupDTO.class)
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public JsonFragmentBody getCustomersByIds(@RequestParam List<Long> ids) {
+        CustomerLookupDTO lookup = customerService.getCustomersByIds(ids);
+        return customerFragments.object().array("customers", lookup.getCustomers()).field("missing", lookup.getMissing()).build();
+    }
+
+    @ApiOperation(value = "This will get a customer.",
+            notes = "The ETag is the customer version; a matching If-None-Match gets 304 from the cached customer, or else a version-only query.",
+            response = CustomerDTO.class)
+    @GetMapping("{id}")
+    public ResponseEntity<JsonFragmentBody> getCustomers(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // answered with a ResponseEntity rather than WebRequest.checkNotModified, which writes to the response
+        // right away, while in async mode this method runs on the customers executor
+        if (ifNoneMatch != null) {
+            Long version = customerService.getCustomerVersion(id);
+            if (VersionETags.matchesIfNoneMatch(ifNoneMatch, version)) {
+                return VersionETags.withETag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version).build();
+            }
+        }
+        CustomerDTO customerDTO = customerService.getCustomerById(id);
+        return VersionETags.withETag(ResponseEntity.ok(), customerDTO.getVersion()).body(customerFragments.single(customerDTO));
     }
 
 
@@ -42,16 +159,57 @@ public class CustomerController {
         return customerService.createNewCustomer(customerDTO);
     }
 
+    @ApiOperation(value = "This will create a list of customers.",
+            notes = "All customers are inserted in one transaction: if any of them fails, none is created. The "
+                    + "transaction is rolled back with 503 when it runs longer than app.sync.write-timeout. Use the "
+                    + "NDJSON import for files too large to send or roll back as a whole.")
+    @PostMapping("batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CustomerListDTO createNewCustomers(@RequestBody List<CustomerDTO> customerDTOs){
+        return new CustomerListDTO(customerService.createNewCustomers(customerDTOs));
+    }
+
+    @ApiOperation(value = "This will import customers from an NDJSON body, one customer per line.",
+            notes = "Rows are saved in batches, each in its own transaction, while the body is still being read. "
+                    + "The response is 202 with the import's URL, and streams the import as one NDJSON line at the "
+                    + "start, after every batch and at the end. Rows the database rejects are reported with their line.")
+    @PostMapping(value = "import", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> importCustomers(InputStream body) {
+        ImportJob job = ndjsonImporter.start(ResourceChange.CUSTOMERS);
+        // the body is read while the progress is streamed, so the client gets the job id before the first row
+        StreamingResponseBody progress = out -> ndjsonImporter.importRows(job, body, CustomerDTO.class,
+                customerService::importCustomers, out);
+        return ResponseEntity.accepted()
+                             .location(URI.create(ImportController.BASE_URL + job.getId()))
+                             .contentType(ExportFormat.NDJSON.getMediaType())
+                             .body(progress);
+    }
+
     @PutMapping("{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public CustomerDTO updateCustomer(@PathVariable Long id,@RequestBody CustomerDTO customerDTO){
-        return customerService.saveCustomerByDTO(id,customerDTO);
+    public ResponseEntity<CustomerDTO> updateCustomer(@PathVariable Long id, @RequestBody CustomerDTO customerDTO,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        customerDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        CustomerDTO savedDTO = customerService.saveCustomerByDTO(id, customerDTO);
+        return VersionETags.withETag(ResponseEntity.ok(), savedDTO.getVersion()).body(savedDTO);
     }
 
+    @ApiOperation(value = "This will patch a customer.",
+            notes = "With 'Prefer: return=minimal' the customer is patched with a single UPDATE statement and the "
+                    + "response is 204 without a body. Its ETag carries the new version when If-Match was sent.")
     @PatchMapping("{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public CustomerDTO patchCustomer(@PathVariable Long id,@RequestBody CustomerDTO customerDTO){
-        return customerService.patchCustomer(id,customerDTO);
+    public ResponseEntity<CustomerDTO> patchCustomer(@PathVariable Long id, @RequestBody CustomerDTO customerDTO,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestHeader(value = ApiHeaders.PREFER, required = false) String prefer){
+        customerDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        if (ApiHeaders.prefersReturnMinimal(prefer)) {
+            // nothing is read back: no body, and an ETag only when If-Match gave the version the UPDATE started from
+            Long version = customerService.patchCustomerInPlace(id, customerDTO);
+            return VersionETags.withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), version)
+                               .header(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                               .build();
+        }
+        CustomerDTO patchedDTO = customerService.patchCustomer(id, customerDTO);
+        return VersionETags.withETag(ResponseEntity.ok(), patchedDTO.getVersion()).body(patchedDTO);
     }
 
     @DeleteMapping("{id}")
@@ -59,4 +217,21 @@ public class CustomerController {
     public void deleteCustomer(@PathVariable Long id){
         customerService.deleteCustomerByID(id);
     }
+
+    @ApiOperation(value = "This will delete a list of customers.",
+            notes = "All rows go in one DELETE statement; the response counts the ones that existed.",
+            response = DeletedDTO.class)
+    @DeleteMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public DeletedDTO deleteCustomers(@RequestParam List<Long> ids){
+        return new DeletedDTO(customerService.deleteCustomersByIDs(ids));
+    }
+
+    private ExportWriter<CustomerDTO> exportWriter(ExportFormat format, OutputStream out) throws IOException {
+        if (format == ExportFormat.CSV) {
+            return ExportWriter.csv(out, Arrays.asList("firstName", "lastName", "customer_url"),
+                    customer -> Arrays.asList(customer.getFirstName(), customer.getLastName(), customer.getCustomerUrl()));
+        }
+        return ExportWriter.ndjson(objectMapper, CustomerDTO.class, out);
+    }
 }
@@ -0,0 +1,35 @@
+package guru.springfamework.controllers.v1;
+
+import guru.springfamework.imports.ImportJob;
+import guru.springfamework.imports.NdjsonImporter;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(ImportController.BASE_URL)
+public class ImportController {
+
+    public static final String BASE_URL = "/api/v1/imports/";
+    private final NdjsonImporter ndjsonImporter;
+
+    public ImportController(NdjsonImporter ndjsonImporter) {
+        this.ndjsonImporter = ndjsonImporter;
+    }
+
+    @ApiOperation(value = "This will list the running and the recently finished imports with their progress.")
+    @GetMapping
+    public List<ImportJob> getImports() {
+        return ndjsonImporter.getJobs();
+    }
+
+    @ApiOperation(value = "This will get an import with its progress and rejected rows.")
+    @GetMapping("{id}")
+    public ImportJob getImport(@PathVariable String id) {
+        return ndjsonImporter.getJob(id);
+    }
+}
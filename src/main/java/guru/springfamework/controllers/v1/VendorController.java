@@ -1,31 +1,123 @@
 package guru.springfamework.controllers.v1;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.export.ExportFormat;
+import guru.springfamework.api.v1.export.ExportWriter;
+import guru.springfamework.api.v1.json.JsonFragmentBody;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.model.DeletedDTO;
+import guru.springfamework.api.v1.model.VendorChangesDTO;
 import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
 import guru.springfamework.api.v1.model.VendorListListDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.AsyncDomain;
+import guru.springfamework.imports.ImportJob;
+import guru.springfamework.imports.NdjsonImporter;
+import guru.springfamework.services.SyncToken;
 import guru.springfamework.services.VendorService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@AsyncDomain("vendors")
 @RestController
 @RequestMapping(VendorController.BASE_URL)
 public class VendorController {
     public static final String BASE_URL = "/api/v1/vendors/";
     private final VendorService vendorService;
+    private final ObjectMapper objectMapper;
+    private final NdjsonImporter ndjsonImporter;
+    private final JsonFragmentCache.JsonFragments<VendorDTO> vendorFragments;
 
-    public VendorController(VendorService vendorService) {
+    public VendorController(VendorService vendorService, ObjectMapper objectMapper, JsonFragmentCache jsonFragmentCache,
+                            NdjsonImporter ndjsonImporter) {
         this.vendorService = vendorService;
+        this.objectMapper = objectMapper;
+        this.ndjsonImporter = ndjsonImporter;
+        this.vendorFragments = jsonFragmentCache.forType("vendors", VendorDTO.class, VendorDTO::getVendorUrl, VendorDTO::getVersion);
+    }
+
+    // filters and sorting are only served a page at a time, so a request with them but without limit gets a 400
+    // instead of all rows; the other exclusions keep this mapping from tying with the more specific ones
+    @GetMapping(params = {"!limit", "!ids", "!changedSince", "!name", "!sort"})
+    public ResponseEntity<StreamingResponseBody> getListOfVendors() {
+        String syncToken = SyncToken.next(null, Instant.now());
+        StreamingResponseBody body = out -> {
+            try (ExportWriter<VendorDTO> writer = ExportWriter.jsonList(objectMapper, VendorDTO.class, "vendors", out)) {
+                vendorService.exportVendors(writer);
+                writer.finish();
+            }
+        };
+        return ResponseEntity.ok().header(ApiHeaders.SYNC_TOKEN, syncToken).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
-    @GetMapping
+    @GetMapping(params = {"changedSince", "!limit", "!ids"})
     @ResponseStatus(HttpStatus.OK)
-    public VendorListListDTO getListOfVendors() {
-        return new VendorListListDTO(vendorService.getAllVendors());
+    public JsonFragmentBody getVendorsChangedSince(@RequestParam String changedSince) {
+        VendorChangesDTO changes = vendorService.getVendorsChangedSince(changedSince);
+        return vendorFragments.object()
+                              .array("vendors", changes.getVendors())
+                              .field("deleted", changes.getDeleted())
+                              .field("token", changes.getToken())
+                              .build();
     }
 
-    @GetMapping("{id}")
+    @GetMapping(params = {"limit", "!ids"})
     @ResponseStatus(HttpStatus.OK)
-    public VendorDTO getVendor(@PathVariable Long id) {
-        return vendorService.getVendorById(id);
+    public JsonFragmentBody getPageOfVendors(@RequestParam int limit,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) String name,
+                                          @RequestParam(required = false) String sort) {
+        VendorPageDTO page = vendorService.findVendors(Collections.singletonMap("name", name), sort, cursor, limit);
+        return vendorFragments.object().array("vendors", page.getVendors()).field("next", page.getNext()).build();
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportVendors(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+
+        StreamingResponseBody body = out -> {
+            try (ExportWriter<VendorDTO> writer = exportWriter(exportFormat, out)) {
+                vendorService.exportVendors(writer);
+            }
+        };
+        return ResponseEntity.ok().contentType(exportFormat.getMediaType()).body(body);
+    }
+
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public JsonFragmentBody getVendorsByIds(@RequestParam List<Long> ids) {
+        VendorLookupDTO lookup = vendorService.getVendorsByIds(ids);
+        return vendorFragments.object().array("vendors", lookup.getVendors()).field("missing", lookup.getMissing()).build();
+    }
+
+    @GetMapping("{id}")
+    public ResponseEntity<JsonFragmentBody> getVendor(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // answered with a ResponseEntity rather than WebRequest.checkNotModified, which writes to the response
+        // right away, while in async mode this method runs on the vendors executor
+        if (ifNoneMatch != null) {
+            Long version = vendorService.getVendorVersion(id);
+            if (VersionETags.matchesIfNoneMatch(ifNoneMatch, version)) {
+                return VersionETags.withETag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version).build();
+            }
+        }
+        VendorDTO vendorDTO = vendorService.getVendorById(id);
+        return VersionETags.withETag(ResponseEntity.ok(), vendorDTO.getVersion()).body(vendorFragments.single(vendorDTO));
     }
 
 
@@ -35,16 +127,46 @@ public class VendorController {
         return vendorService.createNewVendor(customerDTO);
     }
 
+    @PostMapping("batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public VendorListListDTO createNewVendors(@RequestBody List<VendorDTO> vendorDTOs){
+        return new VendorListListDTO(vendorService.createNewVendors(vendorDTOs));
+    }
+
+    @PostMapping(value = "import", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> importVendors(InputStream body) {
+        ImportJob job = ndjsonImporter.start(ResourceChange.VENDORS);
+        // the body is read while the progress is streamed, so the client gets the job id before the first row
+        StreamingResponseBody progress = out -> ndjsonImporter.importRows(job, body, VendorDTO.class,
+                vendorService::importVendors, out);
+        return ResponseEntity.accepted()
+                             .location(URI.create(ImportController.BASE_URL + job.getId()))
+                             .contentType(ExportFormat.NDJSON.getMediaType())
+                             .body(progress);
+    }
+
     @PutMapping("{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public VendorDTO updateVendor(@PathVariable Long id,@RequestBody VendorDTO customerDTO){
-        return vendorService.saveVendorByDTO(id,customerDTO);
+    public ResponseEntity<VendorDTO> updateVendor(@PathVariable Long id, @RequestBody VendorDTO vendorDTO,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        vendorDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        VendorDTO savedDTO = vendorService.saveVendorByDTO(id, vendorDTO);
+        return VersionETags.withETag(ResponseEntity.ok(), savedDTO.getVersion()).body(savedDTO);
     }
 
     @PatchMapping("{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public VendorDTO patchVendor(@PathVariable Long id,@RequestBody VendorDTO customerDTO){
-        return vendorService.patchVendor(id,customerDTO);
+    public ResponseEntity<VendorDTO> patchVendor(@PathVariable Long id, @RequestBody VendorDTO vendorDTO,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestHeader(value = ApiHeaders.PREFER, required = false) String prefer){
+        vendorDTO.setVersion(VersionETags.parseIfMatch(ifMatch));
+        if (ApiHeaders.prefersReturnMinimal(prefer)) {
+            // nothing is read back: no body, and an ETag only when If-Match gave the version the UPDATE started from
+            Long version = vendorService.patchVendorInPlace(id, vendorDTO);
+            return VersionETags.withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), version)
+                               .header(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL)
+                               .build();
+        }
+        VendorDTO patchedDTO = vendorService.patchVendor(id, vendorDTO);
+        return VersionETags.withETag(ResponseEntity.ok(), patchedDTO.getVersion()).body(patchedDTO);
     }
 
     @DeleteMapping("{id}")
@@ -52,4 +174,18 @@ public class VendorController {
     public void deleteVendor(@PathVariable Long id){
         vendorService.deleteVendorByID(id);
     }
+
+    @DeleteMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public DeletedDTO deleteVendors(@RequestParam List<Long> ids){
+        return new DeletedDTO(vendorService.deleteVendorsByIDs(ids));
+    }
+
+    private ExportWriter<VendorDTO> exportWriter(ExportFormat format, OutputStream out) throws IOException {
+        if (format == ExportFormat.CSV) {
+            return ExportWriter.csv(out, Arrays.asList("name", "vendor_url"),
+                    vendor -> Arrays.asList(vendor.getName(), vendor.getVendorUrl()));
+        }
+        return ExportWriter.ndjson(objectMapper, VendorDTO.class, out);
+    }
 }
@@ -0,0 +1,64 @@
+package guru.springfamework.controllers.v1;
+
+import guru.springfamework.services.PreconditionFailedException;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Maps entity versions to strong ETags and back.
+ */
+public final class VersionETags {
+
+    private VersionETags() {
+    }
+
+    public static String toETag(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * Adds the ETag for the given version, if there is one.
+     */
+    public static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Long version) {
+        return version == null ? builder : builder.eTag(toETag(version));
+    }
+
+    /**
+     * Whether an If-None-Match header lists the ETag of the version. If-None-Match uses weak comparison, so a
+     * {@code W/} prefix is ignored, and {@code *} matches any version.
+     */
+    public static boolean matchesIfNoneMatch(String ifNoneMatch, Long version) {
+        if (ifNoneMatch == null || version == null) {
+            return false;
+        }
+        String etag = toETag(version);
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the version an If-Match header asks for, or null when any version will do.
+     * If-Match uses strong comparison, so weak or unparseable tags can never match.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+    }
+}
@@ -6,14 +6,34 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import java.time.Instant;
 
 @Data
 @Entity
+// delta sync reads rows modified after a point in time; list queries filter and sort by name, with id breaking ties
+@Table(indexes = {
+        @Index(name = "customer_modified_at_idx", columnList = "modifiedAt"),
+        @Index(name = "customer_first_name_idx", columnList = "firstName, id"),
+        @Index(name = "customer_last_name_idx", columnList = "lastName, id")
+})
 public class Customer {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // a pooled sequence instead of IDENTITY lets Hibernate batch the inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     private Long id;
 
+    @Version
+    private Long version;
+
+    private Instant modifiedAt;
+
     private String firstName;
     private String lastName;
     private String customerURL;
@@ -26,6 +46,28 @@ public class Customer {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public void setModifiedAt(Instant modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        modifiedAt = Instant.now();
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -0,0 +1,35 @@
+package guru.springfamework.domain;
+
+/**
+ * Read-only projection of a customer, selected with a JPQL constructor expression. It is not an entity,
+ * so reads through it leave nothing in the persistence context and take no dirty-checking snapshot.
+ */
+public final class CustomerView {
+    private final Long id;
+    private final Long version;
+    private final String firstName;
+    private final String lastName;
+
+    public CustomerView(Long id, Long version, String firstName, String lastName) {
+        this.id = id;
+        this.version = version;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+}
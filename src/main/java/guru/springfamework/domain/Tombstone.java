@@ -0,0 +1,38 @@
+package guru.springfamework.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Marks a deleted customer or vendor, so delta sync can tell clients to drop it. Tombstones are kept
+ * for {@code app.sync.tombstone-retention}; sync tokens older than that are rejected.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(name = "tombstone_resource_deleted_at_idx", columnList = "resource, deletedAt"))
+public class Tombstone {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tombstone_seq")
+    @SequenceGenerator(name = "tombstone_seq", sequenceName = "tombstone_seq", allocationSize = 50)
+    private Long id;
+
+    private String resource;
+    private Long resourceId;
+    private Instant deletedAt;
+
+    public Tombstone(String resource, Long resourceId, Instant deletedAt) {
+        this.resource = resource;
+        this.resourceId = resourceId;
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package guru.springfamework.domain;
+
+/**
+ * Read-only projection of a vendor, see {@link CustomerView}.
+ */
+public final class VendorView {
+    private final Long id;
+    private final Long version;
+    private final String name;
+
+    public VendorView(Long id, Long version, String name) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
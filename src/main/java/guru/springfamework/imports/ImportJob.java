@@ -0,0 +1,134 @@
+package guru.springfamework.imports;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of one NDJSON import. The parser and the writer update it while the import runs, so it can
+ * be polled from other requests. Only the first {@value #MAX_REPORTED_ERRORS} rejected rows are kept; the rest are
+ * just counted, so a file full of bad rows does not fill the heap.
+ */
+@JsonPropertyOrder({"id", "domain", "state", "startedAt", "finishedAt", "rowsRead", "rowsImported", "rowsFailed",
+        "errors", "failure"})
+public final class ImportJob {
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    public enum State {
+        @JsonProperty("running") RUNNING,
+        @JsonProperty("completed") COMPLETED,
+        @JsonProperty("failed") FAILED
+    }
+
+    private final String id;
+    private final String domain;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final List<RowError> errors = new ArrayList<>();
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+
+    ImportJob(String id, String domain) {
+        this.id = id;
+        this.domain = domain;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    public List<RowError> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    /**
+     * Why the import stopped before the end of the body, or null.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void rowFailed(long line, String message) {
+        rowsFailed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    void rowsImported(int count) {
+        rowsImported.addAndGet(count);
+    }
+
+    void fail(String failure) {
+        if (this.failure == null) {
+            this.failure = failure;
+        }
+    }
+
+    void finish() {
+        finishedAt = Instant.now();
+        state = failure == null ? State.COMPLETED : State.FAILED;
+    }
+
+    public static final class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package guru.springfamework.imports;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.services.ResourceNotFoundException;
+import guru.springfamework.services.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Imports NDJSON bodies, one JSON object per line, in two stages joined by a bounded queue. The request thread
+ * parses the body with Jackson's streaming parser and hands the rows over in batches of
+ * {@code app.imports.batch-size}; a writer on the {@code imports} pool saves every batch in its own transaction.
+ * When the writer falls behind, the queue fills up and the parser stops reading the body, so an import holds at most
+ * {@code app.imports.queue-capacity} + 2 batches no matter how large the file is.
+ * <p>
+ * Rows that do not map are counted and reported with their line number, and the import goes on. So are rows the
+ * database rejects: a batch that fails with a {@link DataIntegrityViolationException} is written again row by row,
+ * which keeps the good rows and finds the bad ones. A body that is not JSON, or a batch that cannot be written for
+ * any other reason, stops the import; the batches written before stay. At most {@code app.imports.max-concurrent}
+ * imports run at a time, and the last {@value #MAX_FINISHED_JOBS} finished jobs can still be looked up. Rows are
+ * counted in {@code app.imports.rows}.
+ * <p>
+ * An import is {@link #start started} before anything is read, so the job id can be sent to the client first, and
+ * {@link #importRows run} with a stream that gets the job as an NDJSON line at the start, after every batch and at
+ * the end.
+ */
+@Component
+public class NdjsonImporter implements DisposableBean {
+
+    static final int MAX_FINISHED_JOBS = 100;
+    private static final long HAND_OVER_POLL_MILLIS = 100;
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor writers;
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    public NdjsonImporter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                          @Value("${app.imports.batch-size:1000}") int batchSize,
+                          @Value("${app.imports.queue-capacity:4}") int queueCapacity,
+                          @Value("${app.imports.max-concurrent:2}") int maxConcurrent) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        // an import that finds no free permit is rejected instead of holding its body open; with a permit, its
+        // writer at most waits for the thread of an import that is just finishing
+        this.permits = new Semaphore(maxConcurrent);
+        this.writers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("imports-"));
+        ExecutorServiceMetrics.monitor(meterRegistry, writers, "imports");
+    }
+
+    /**
+     * Registers a new import, which holds one of the {@code app.imports.max-concurrent} slots until
+     * {@link #importRows} has finished it.
+     *
+     * @throws ServiceUnavailableException when {@code app.imports.max-concurrent} imports are running already
+     */
+    public ImportJob start(String domain) {
+        if (!permits.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many imports running");
+        }
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), domain);
+        register(job);
+        return job;
+    }
+
+    /**
+     * Reads the body to the end and finishes the job.
+     *
+     * @param job         a job from {@link #start} that has not been run yet
+     * @param batchWriter saves one batch in one transaction
+     * @param progress    gets the job as an NDJSON line at the start, after every batch and when it is finished
+     */
+    public <T> void importRows(ImportJob job, InputStream body, Class<T> type, Consumer<List<T>> batchWriter,
+                               OutputStream progress) {
+        try {
+            report(job, progress);
+            BlockingQueue<List<Row<T>>> queue = new ArrayBlockingQueue<>(queueCapacity);
+            Future<?> writer = writers.submit(() -> write(job, queue, batchWriter));
+            try {
+                parse(job, body, type, queue, writer, progress);
+                // an empty batch tells the writer that nothing follows
+                handOver(queue, Collections.emptyList(), writer);
+                writer.get();
+            } catch (ExecutionException e) {
+                job.fail("Writing failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writer.cancel(true);
+                job.fail("Interrupted");
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            job.fail("Import stopped");
+        } finally {
+            job.finish();
+            permits.release();
+        }
+        report(job, progress);
+    }
+
+    /**
+     * @throws ResourceNotFoundException when there is no such job, or it finished too long ago
+     */
+    public ImportJob getJob(String id) {
+        synchronized (jobs) {
+            ImportJob job = jobs.get(id);
+            if (job == null) {
+                throw new ResourceNotFoundException("Import " + id + " not found");
+            }
+            return job;
+        }
+    }
+
+    /**
+     * The running and the recently finished jobs, oldest first.
+     */
+    public List<ImportJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    private <T> void parse(ImportJob job, InputStream body, Class<T> type, BlockingQueue<List<Row<T>>> queue,
+                           Future<?> writer, OutputStream progress) throws InterruptedException, ExecutionException {
+        List<Row<T>> batch = new ArrayList<>(batchSize);
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            while (parser.nextToken() != null) {
+                long line = parser.getTokenLocation().getLineNr();
+                // reading the row as a tree first leaves the parser at the next row even when this one does not map
+                JsonNode row = objectMapper.readTree(parser);
+                job.rowRead();
+
+                T value;
+                try {
+                    value = objectMapper.treeToValue(row, type);
+                } catch (JsonProcessingException e) {
+                    rejected(job, line, e.getOriginalMessage());
+                    continue;
+                }
+                if (value == null) {
+                    rejected(job, line, "Row is null");
+                    continue;
+                }
+
+                batch.add(new Row<>(line, value));
+                if (batch.size() == batchSize) {
+                    handOver(queue, batch, writer);
+                    batch = new ArrayList<>(batchSize);
+                    report(job, progress);
+                }
+            }
+        } catch (JsonParseException e) {
+            job.fail("Line " + e.getLocation().getLineNr() + " is not JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            job.fail("Reading the body failed: " + e.getMessage());
+        }
+        // the rows read before a failure are still written
+        if (!batch.isEmpty()) {
+            handOver(queue, batch, writer);
+        }
+    }
+
+    /**
+     * Waits for room in the queue, but gives up as soon as the writer has failed.
+     */
+    private <T> void handOver(BlockingQueue<List<Row<T>>> queue, List<Row<T>> batch, Future<?> writer)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, HAND_OVER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                writer.get();
+                throw new IllegalStateException("Writer stopped before the end of the import");
+            }
+        }
+    }
+
+    private <T> Void write(ImportJob job, BlockingQueue<List<Row<T>>> queue, Consumer<List<T>> batchWriter)
+            throws InterruptedException {
+        List<Row<T>> batch;
+        while (!(batch = queue.take()).isEmpty()) {
+            try {
+                batchWriter.accept(batch.stream().map(row -> row.value).collect(Collectors.toList()));
+                imported(job, batch.size());
+            } catch (DataIntegrityViolationException e) {
+                // the whole batch was rolled back for some row the database rejects; only that row has to go
+                for (Row<T> row : batch) {
+                    try {
+                        batchWriter.accept(Collections.singletonList(row.value));
+                        imported(job, 1);
+                    } catch (DataIntegrityViolationException rowException) {
+                        rejected(job, row.line, rowException.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void imported(ImportJob job, int rows) {
+        job.rowsImported(rows);
+        meterRegistry.counter("app.imports.rows", "domain", job.getDomain(), "result", "imported").increment(rows);
+    }
+
+    private void rejected(ImportJob job, long line, String message) {
+        job.rowFailed(line, message);
+        meterRegistry.counter("app.imports.rows", "domain", job.getDomain(), "result", "failed").increment();
+    }
+
+    private void report(ImportJob job, OutputStream progress) {
+        try {
+            progress.write(objectMapper.writeValueAsBytes(job));
+            progress.write('\n');
+            progress.flush();
+        } catch (IOException e) {
+            // the client stopped reading; the import goes on, and can still be looked up
+        }
+    }
+
+    private void register(ImportJob job) {
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            // running jobs are never dropped; there are at most app.imports.max-concurrent of them
+            long finished = jobs.values().stream().filter(j -> j.getState() != ImportJob.State.RUNNING).count();
+            for (Iterator<ImportJob> it = jobs.values().iterator(); it.hasNext() && finished > MAX_FINISHED_JOBS; ) {
+                if (it.next().getState() != ImportJob.State.RUNNING) {
+                    it.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writers.shutdownNow();
+    }
+
+    private static final class Row<T> {
+        private final long line;
+        private final T value;
+
+        Row(long line, T value) {
+            this.line = line;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package guru.springfamework.metrics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Measures the allocations of every request on the container thread. A body written later on the task executor,
+ * like the streamed exports, is measured by the {@link AllocationTaskDecorator} and recorded separately.
+ */
+@Component
+public class AllocationFilter extends OncePerRequestFilter {
+
+    private final AllocationRecorder allocationRecorder;
+
+    public AllocationFilter(AllocationRecorder allocationRecorder) {
+        this.allocationRecorder = allocationRecorder;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !allocationRecorder.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long before = allocationRecorder.allocatedBytes();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            allocationRecorder.record(AllocationRecorder.handlerName(request), false, allocationRecorder.allocatedBytes() - before);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package guru.springfamework.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the bytes allocated while handling a request as {@code app.http.allocated}, tagged with the controller
+ * method, e.g. {@code CustomerController.getListOfCustomers}. Allocations are read from the JVM's per-thread
+ * counters, which are cheap enough to read on every request; they count TLAB allocations, so small objects that
+ * escape analysis removed are not included. The summary of each handler is looked up once and kept, so a request
+ * only records.
+ */
+@Slf4j
+@Component
+public class AllocationRecorder {
+
+    static final String ALLOCATED_SUMMARY = "app.http.allocated";
+
+    private final MeterRegistry meterRegistry;
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> asyncSummaries = new ConcurrentHashMap<>();
+
+    public AllocationRecorder(MeterRegistry meterRegistry,
+                              @Value("${app.allocation-tracking.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.threadMXBean = enabled ? allocationCountingThreadMXBean() : null;
+    }
+
+    public boolean isEnabled() {
+        return threadMXBean != null;
+    }
+
+    /**
+     * Bytes allocated by the current thread since it started; only differences between two readings are meaningful.
+     */
+    public long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void record(String handler, boolean async, long bytes) {
+        (async ? asyncSummaries : summaries).computeIfAbsent(handler, h -> summary(h, async)).record(bytes);
+    }
+
+    private DistributionSummary summary(String handler, boolean async) {
+        return DistributionSummary.builder(ALLOCATED_SUMMARY)
+                                  .baseUnit("bytes")
+                                  .tag("handler", handler)
+                                  .tag("async", Boolean.toString(async))
+                                  .publishPercentiles(0.5, 0.95, 0.99)
+                                  .register(meterRegistry);
+    }
+
+    /**
+     * The controller method that handled the request, as {@code CustomerController.getListOfCustomers}.
+     */
+    public static String handlerName(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            return handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        }
+        return "UNKNOWN";
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCountingThreadMXBean() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            log.warn("Allocation tracking is not supported by this JVM");
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationCounting = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationCounting.isThreadAllocatedMemorySupported()) {
+            log.warn("Allocation tracking is not supported by this JVM");
+            return null;
+        }
+        if (!allocationCounting.isThreadAllocatedMemoryEnabled()) {
+            allocationCounting.setThreadAllocatedMemoryEnabled(true);
+        }
+        return allocationCounting;
+    }
+}
@@ -0,0 +1,39 @@
+package guru.springfamework.metrics;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Measures the allocations of async request processing, e.g. a StreamingResponseBody, and records them under the
+ * handler that started it. Spring Boot applies the decorator to the application task executor used by Spring MVC.
+ */
+@Component
+public class AllocationTaskDecorator implements TaskDecorator {
+
+    private final AllocationRecorder allocationRecorder;
+
+    public AllocationTaskDecorator(AllocationRecorder allocationRecorder) {
+        this.allocationRecorder = allocationRecorder;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!allocationRecorder.isEnabled() || !(attributes instanceof ServletRequestAttributes)) {
+            return runnable;
+        }
+        // the request may already be recycled when the task ends
+        String handler = AllocationRecorder.handlerName(((ServletRequestAttributes) attributes).getRequest());
+        return () -> {
+            long before = allocationRecorder.allocatedBytes();
+            try {
+                runnable.run();
+            } finally {
+                allocationRecorder.record(handler, true, allocationRecorder.allocatedBytes() - before);
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package guru.springfamework.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/allocations}: bytes allocated per request for every controller method, sorted by handler.
+ * Count and mean cover the whole run, percentiles and max only the last few minutes.
+ */
+@Component
+@Endpoint(id = "allocations")
+public class AllocationsEndpoint {
+
+    private final MeterRegistry meterRegistry;
+
+    public AllocationsEndpoint(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> allocations() {
+        Map<String, Map<String, Object>> allocations = new TreeMap<>();
+        for (DistributionSummary summary : meterRegistry.find(AllocationRecorder.ALLOCATED_SUMMARY).summaries()) {
+            String handler = summary.getId().getTag("handler");
+            if (Boolean.parseBoolean(summary.getId().getTag("async"))) {
+                handler += " (async)";
+            }
+            allocations.put(handler, stats(summary.takeSnapshot()));
+        }
+        return allocations;
+    }
+
+    private static Map<String, Object> stats(HistogramSnapshot snapshot) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", snapshot.count());
+        stats.put("meanBytes", (long) snapshot.mean());
+        stats.put("maxBytes", (long) snapshot.max());
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            stats.put("p" + Math.round(percentile.percentile() * 100) + "Bytes", (long) percentile.value());
+        }
+        stats.put("totalBytes", (long) snapshot.total());
+        return stats;
+    }
+}
@@ -0,0 +1,181 @@
+package guru.springfamework.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every service and repository call as {@code app.service} and {@code app.repository},
+ * tagged with the interface, the method and the exception thrown, if any. The SQL statements of each
+ * service call are recorded as {@code app.service.statements}.
+ * Controller methods are already timed by Spring Boot as {@code http.server.requests}.
+ * For requests timed by the {@link ServerTimingFilter} the service, repository and mapper calls
+ * are also added to the request's {@link RequestTimings}.
+ * The aspect runs outside the caching and transaction proxies, so cache hits and commits are timed too.
+ * The meters of each method are looked up once and kept, so a call only records.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Component
+public class HotPathTimingAspect {
+
+    static final String SERVICE_TIMER = "app.service";
+    static final String REPOSITORY_TIMER = "app.repository";
+    static final String SERVICE_STATEMENTS = "app.service.statements";
+
+    private static final String APPLICATION_PACKAGE = "guru.springfamework.";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MethodKey, MethodMeters> methodMeters = new ConcurrentHashMap<>();
+
+    public HotPathTimingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * guru.springfamework.services.*Service.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodMeters meters = meters(SERVICE_TIMER, joinPoint);
+        long statementsBefore = SqlStatementCounter.statements();
+        try {
+            return time(meters, RequestTimings.Phase.SERVICE, joinPoint);
+        } finally {
+            meters.statements.record(SqlStatementCounter.statements() - statementsBefore);
+        }
+    }
+
+    @Around("execution(public * guru.springfamework.repositories.*Repository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(meters(REPOSITORY_TIMER, joinPoint), RequestTimings.Phase.REPOSITORY, joinPoint);
+    }
+
+    /**
+     * Mappings are too fine-grained for a timer of their own; they are only timed for timed requests.
+     */
+    @Around("execution(public * guru.springfamework.api.v1.mapper.*Mapper+.*(..))")
+    public Object timeMapping(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestTimings timings = RequestTimings.current();
+        if (timings == null) {
+            return joinPoint.proceed();
+        }
+        timings.start(RequestTimings.Phase.MAPPING);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timings.stop(RequestTimings.Phase.MAPPING);
+        }
+    }
+
+    private Object time(MethodMeters meters, RequestTimings.Phase phase, ProceedingJoinPoint joinPoint)
+            throws Throwable {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.start(phase);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Class<?> exception = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass();
+            throw e;
+        } finally {
+            if (timings != null) {
+                timings.stop(phase);
+            }
+            sample.stop(meters.timer(exception));
+        }
+    }
+
+    private MethodMeters meters(String name, ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return methodMeters.computeIfAbsent(new MethodKey(joinPoint.getThis().getClass(), method),
+                key -> new MethodMeters(name, typeName(key.proxyClass, method), method.getName()));
+    }
+
+    /**
+     * Names the application interface the proxy implements, e.g. CustomerRepository rather than
+     * the CrudRepository that declares the method or the proxy class itself.
+     */
+    private static String typeName(Class<?> proxyClass, Method method) {
+        for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(proxyClass)) {
+            if (type.getName().startsWith(APPLICATION_PACKAGE)) {
+                return type.getSimpleName();
+            }
+        }
+        return method.getDeclaringClass().getSimpleName();
+    }
+
+    /**
+     * The proxy class as well as the method, since repositories share the methods CrudRepository declares.
+     */
+    private static final class MethodKey {
+        private final Class<?> proxyClass;
+        private final Method method;
+
+        MethodKey(Class<?> proxyClass, Method method) {
+            this.proxyClass = proxyClass;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return proxyClass == other.proxyClass && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(proxyClass, method);
+        }
+    }
+
+    private final class MethodMeters {
+        private final String name;
+        private final String type;
+        private final String method;
+        private final Timer succeeded;
+        private final Map<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+        private final DistributionSummary statements;
+
+        MethodMeters(String name, String type, String method) {
+            this.name = name;
+            this.type = type;
+            this.method = method;
+            this.succeeded = register("none");
+            this.statements = SERVICE_TIMER.equals(name)
+                    ? DistributionSummary.builder(SERVICE_STATEMENTS)
+                                         .tag("class", type)
+                                         .tag("method", method)
+                                         .register(meterRegistry)
+                    : null;
+        }
+
+        Timer timer(Class<?> exception) {
+            return exception == null ? succeeded : failed.computeIfAbsent(exception, e -> register(e.getSimpleName()));
+        }
+
+        private Timer register(String exception) {
+            return Timer.builder(name)
+                        .tag("class", type)
+                        .tag("method", method)
+                        .tag("exception", exception)
+                        .register(meterRegistry);
+        }
+    }
+}
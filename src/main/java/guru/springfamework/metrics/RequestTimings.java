@@ -0,0 +1,174 @@
+package guru.springfamework.metrics;
+
+import java.util.Locale;
+
+/**
+ * Phase times of one timed request, collected on the thread working for the request: the servlet thread, or an
+ * executor thread the request handed its work to. Only one thread works for it at a time, and the hand-offs
+ * order their writes, so the timings are not synchronized. Nested calls of the same phase
+ * (a service calling a service) are only counted once, so each phase's time is wall-clock time.
+ * Phases overlap: service time includes the repository and mapping calls the service made.
+ */
+public final class RequestTimings {
+
+    public enum Phase {
+        PARSE("parse"), SERVICE("service"), REPOSITORY("repo"), MAPPING("map"), WRITE("write");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final boolean serverTimingHeader;
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[PHASES.length];
+    private final long[] started = new long[PHASES.length];
+    private final int[] depth = new int[PHASES.length];
+    private final int[] calls = new int[PHASES.length];
+    private int statements;
+    private long statementNanos;
+
+    RequestTimings(boolean serverTimingHeader) {
+        this.serverTimingHeader = serverTimingHeader;
+    }
+
+    /**
+     * The timings of the request being handled on this thread, or null when it is not timed.
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    static RequestTimings begin() {
+        RequestTimings timings = new RequestTimings(true);
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Makes the timings current on this thread until the previous ones are bound again.
+     *
+     * @return the timings bound before
+     */
+    static RequestTimings bind(RequestTimings timings) {
+        RequestTimings previous = CURRENT.get();
+        if (timings == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timings);
+        }
+        return previous;
+    }
+
+    public void start(Phase phase) {
+        int i = phase.ordinal();
+        if (depth[i]++ == 0) {
+            started[i] = System.nanoTime();
+            calls[i]++;
+        }
+    }
+
+    public void stop(Phase phase) {
+        int i = phase.ordinal();
+        if (depth[i] > 0 && --depth[i] == 0) {
+            nanos[i] += System.nanoTime() - started[i];
+        }
+    }
+
+    /**
+     * Stops the phase if it is still running, e.g. a response write that ended with the request.
+     */
+    void finish(Phase phase) {
+        int i = phase.ordinal();
+        if (depth[i] > 0) {
+            depth[i] = 1;
+            stop(phase);
+        }
+    }
+
+    void statementExecuted(long nanos) {
+        statements++;
+        statementNanos += nanos;
+    }
+
+    /**
+     * Whether the response gets a Server-Timing header.
+     */
+    boolean isServerTimingHeader() {
+        return serverTimingHeader;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public int getCalls(Phase phase) {
+        return calls[phase.ordinal()];
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * The phases so far as a Server-Timing header value, e.g.
+     * {@code parse;dur=0.21, service;dur=3.05, repo;dur=2.40;desc="calls=2", sql;dur=1.10;desc="statements=3",
+     * map;dur=0.02}. Phases that did not run are left out. SQL is listed whenever statements ran, also those
+     * outside repository calls like the flush on commit.
+     */
+    String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : PHASES) {
+            if (calls[phase.ordinal()] > 0 && phase != Phase.WRITE) {
+                separate(header).append(phase.metricName).append(";dur=").append(millis(nanos[phase.ordinal()]));
+                if (phase == Phase.REPOSITORY) {
+                    header.append(";desc=\"calls=").append(calls[phase.ordinal()]).append('"');
+                }
+            }
+            if (phase == Phase.REPOSITORY && statements > 0) {
+                separate(header).append("sql;dur=").append(millis(statementNanos))
+                                .append(";desc=\"statements=").append(statements).append('"');
+            }
+        }
+        return header.toString();
+    }
+
+    private static StringBuilder separate(StringBuilder header) {
+        return header.length() > 0 ? header.append(", ") : header;
+    }
+
+    /**
+     * All phases as {@code key=value} pairs for the log, including the response write and the total.
+     */
+    String toLogFields() {
+        StringBuilder fields = new StringBuilder("total_ms=").append(millis(elapsedNanos()));
+        for (Phase phase : PHASES) {
+            fields.append(' ').append(phase.metricName).append("_ms=").append(millis(nanos[phase.ordinal()]));
+        }
+        return fields.append(" repo_calls=").append(calls[Phase.REPOSITORY.ordinal()])
+                     .append(" sql_ms=").append(millis(statementNanos))
+                     .append(" sql_statements=").append(statements)
+                     .toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
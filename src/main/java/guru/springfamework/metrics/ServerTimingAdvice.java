@@ -0,0 +1,69 @@
+package guru.springfamework.metrics;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.lang.reflect.Type;
+
+/**
+ * Times request body parsing and response writing for timed requests, and adds the Server-Timing header
+ * just before the body is written if the request asked for it. The write itself is still running then, so it only shows up in the log.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice extends RequestBodyAdviceAdapter implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.start(RequestTimings.Phase.PARSE);
+        }
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.stop(RequestTimings.Phase.PARSE);
+        }
+        return body;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            // a parse that failed never reached afterBodyRead
+            timings.finish(RequestTimings.Phase.PARSE);
+            String serverTiming = timings.isServerTimingHeader() ? timings.toServerTiming() : "";
+            if (!serverTiming.isEmpty()) {
+                response.getHeaders().add(ServerTimingFilter.SERVER_TIMING, serverTiming);
+            }
+            timings.start(RequestTimings.Phase.WRITE);
+        }
+        return body;
+    }
+}
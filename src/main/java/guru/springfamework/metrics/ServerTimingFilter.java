@@ -0,0 +1,129 @@
+package guru.springfamework.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Times requests by phase: the parse, service, repository, mapping and write times collected in
+ * {@link RequestTimings}. A request that asks for them with an {@code X-Server-Timing} header, or every request
+ * with {@code app.server-timing.always}, gets them back in a {@code Server-Timing} response header if it has a
+ * body. Independently, a sample of requests ({@code app.server-timing.sample-rate}) is logged as one
+ * {@code key=value} line. Other requests only pay for the sampling decision.
+ * <p>
+ * An async request keeps its timings through the {@link ServerTimingTaskDecorator} and its async dispatch, and is
+ * logged once it completes.
+ */
+@Slf4j
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String SERVER_TIMING = "Server-Timing";
+    static final String REQUEST_HEADER = "X-Server-Timing";
+    static final String TIMINGS_ATTRIBUTE = ServerTimingFilter.class.getName() + ".timings";
+
+    private final boolean enabled;
+    private final boolean always;
+    private final double sampleRate;
+
+    public ServerTimingFilter(@Value("${app.server-timing.enabled:true}") boolean enabled,
+                              @Value("${app.server-timing.always:false}") boolean always,
+                              @Value("${app.server-timing.sample-rate:0.01}") double sampleRate) {
+        this.enabled = enabled;
+        this.always = always;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (isAsyncDispatch(request)) {
+            // the async dispatch continues the timings of a timed request
+            return request.getAttribute(TIMINGS_ATTRIBUTE) == null;
+        }
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RequestTimings timings = (RequestTimings) request.getAttribute(TIMINGS_ATTRIBUTE);
+        boolean logged = false;
+        if (timings == null) {
+            boolean header = always || request.getHeader(REQUEST_HEADER) != null;
+            logged = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+            if (!header && !logged) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            timings = new RequestTimings(header);
+            request.setAttribute(TIMINGS_ATTRIBUTE, timings);
+        }
+        RequestTimings previous = RequestTimings.bind(timings);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTimings.bind(previous);
+            // only the first dispatch decides to log, the async dispatch just adds to the timings
+            if (logged) {
+                logWhenComplete(request, response, timings);
+            }
+        }
+    }
+
+    private void logWhenComplete(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        if (!request.isAsyncStarted()) {
+            log(request, response, timings);
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                log(request, response, timings);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    private static void log(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        timings.finish(RequestTimings.Phase.WRITE);
+        if (log.isInfoEnabled()) {
+            log.info("server-timing method={} path={} status={} {}", request.getMethod(), path(request),
+                    response.getStatus(), timings.toLogFields());
+        }
+    }
+
+    /**
+     * The matched handler pattern rather than the raw URI, so ids do not end up in the log as separate paths.
+     */
+    private static String path(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : request.getRequestURI();
+    }
+}
@@ -0,0 +1,28 @@
+package guru.springfamework.metrics;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the phases of a task handed off by a timed request, e.g. a handler running on a domain executor, to that
+ * request's {@link RequestTimings}.
+ */
+@Component
+public class ServerTimingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings == null) {
+            return runnable;
+        }
+        return () -> {
+            RequestTimings previous = RequestTimings.bind(timings);
+            try {
+                runnable.run();
+            } finally {
+                RequestTimings.bind(previous);
+            }
+        };
+    }
+}
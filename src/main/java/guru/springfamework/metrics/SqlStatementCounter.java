@@ -0,0 +1,71 @@
+package guru.springfamework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running count of the SQL statements the current thread has sent to the database, maintained by the
+ * {@link StatementCountingListener} on the proxied data source. Callers take the difference between two readings,
+ * so counts nest: a request, the service methods it calls and a test can all count the same statements.
+ * A JDBC batch is one statement, since it is one round trip.
+ * <p>
+ * The statements of a request are also added to the request's own counter, which the {@link StatementBudgetFilter}
+ * binds on the servlet thread and the {@link SqlStatementTaskDecorator} on the threads the request hands work to.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+    private static final ThreadLocal<AtomicLong> REQUEST_STATEMENTS = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * Statements executed on this thread so far.
+     */
+    public static long statements() {
+        return STATEMENTS.get()[0];
+    }
+
+    /**
+     * Runs the action and returns the number of statements it executed on this thread.
+     */
+    public static long count(Runnable action) {
+        long before = statements();
+        action.run();
+        return statements() - before;
+    }
+
+    /**
+     * The counter of the request this thread is working for, or null.
+     */
+    static AtomicLong requestStatements() {
+        return REQUEST_STATEMENTS.get();
+    }
+
+    /**
+     * Adds the statements of this thread to the request counter until the previous one is bound again.
+     *
+     * @return the counter bound before
+     */
+    static AtomicLong bind(AtomicLong requestStatements) {
+        AtomicLong previous = REQUEST_STATEMENTS.get();
+        if (requestStatements == null) {
+            REQUEST_STATEMENTS.remove();
+        } else {
+            REQUEST_STATEMENTS.set(requestStatements);
+        }
+        return previous;
+    }
+
+    static void executed(long nanos) {
+        STATEMENTS.get()[0]++;
+        AtomicLong requestStatements = REQUEST_STATEMENTS.get();
+        if (requestStatements != null) {
+            requestStatements.incrementAndGet();
+        }
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.statementExecuted(nanos);
+        }
+    }
+}
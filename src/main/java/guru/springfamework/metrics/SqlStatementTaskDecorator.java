@@ -0,0 +1,30 @@
+package guru.springfamework.metrics;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements of a task handed off by a request, e.g. a StreamingResponseBody or a handler running on
+ * a domain executor, as statements of that request, so the {@link StatementBudgetFilter} sees all of them.
+ */
+@Component
+public class SqlStatementTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        AtomicLong requestStatements = SqlStatementCounter.requestStatements();
+        if (requestStatements == null) {
+            return runnable;
+        }
+        return () -> {
+            AtomicLong previous = SqlStatementCounter.bind(requestStatements);
+            try {
+                runnable.run();
+            } finally {
+                SqlStatementCounter.bind(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package guru.springfamework.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements of every request as {@code app.http.statements}. Requests over the budget
+ * ({@code app.sql.statement-budget}) are logged and counted as {@code app.sql.budget.exceeded}; an N+1 query
+ * shows up there as soon as a list grows past the budget.
+ * <p>
+ * Statements run for the request on other threads, like a streamed body written on the task executor or a handler
+ * on a domain executor, are counted through the {@link SqlStatementTaskDecorator}. An async request is recorded
+ * once it completes.
+ */
+@Slf4j
+@Component
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    static final String STATEMENTS_SUMMARY = "app.http.statements";
+    static final String BUDGET_EXCEEDED_COUNTER = "app.sql.budget.exceeded";
+
+    static final String STATEMENTS_ATTRIBUTE = StatementBudgetFilter.class.getName() + ".statements";
+
+    private final MeterRegistry meterRegistry;
+    private final int budget;
+
+    public StatementBudgetFilter(MeterRegistry meterRegistry, @Value("${app.sql.statement-budget:20}") int budget) {
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+    }
+
+    /**
+     * The async dispatch writing the result of an async handler is counted too.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AtomicLong statements = (AtomicLong) request.getAttribute(STATEMENTS_ATTRIBUTE);
+        if (statements == null) {
+            statements = new AtomicLong();
+            request.setAttribute(STATEMENTS_ATTRIBUTE, statements);
+        }
+        AtomicLong previous = SqlStatementCounter.bind(statements);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatementCounter.bind(previous);
+            // the first dispatch records the request, the async dispatch only adds to its count
+            if (!isAsyncDispatch(request)) {
+                recordWhenComplete(request, statements);
+            }
+        }
+    }
+
+    private void recordWhenComplete(HttpServletRequest request, AtomicLong statements) {
+        if (!request.isAsyncStarted()) {
+            record(request, statements.get());
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                record(request, statements.get());
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    private void record(HttpServletRequest request, long statements) {
+        String path = path(request);
+        DistributionSummary.builder(STATEMENTS_SUMMARY)
+                           .tag("method", request.getMethod())
+                           .tag("uri", path)
+                           .register(meterRegistry)
+                           .record(statements);
+        if (statements > budget) {
+            meterRegistry.counter(BUDGET_EXCEEDED_COUNTER, "method", request.getMethod(), "uri", path).increment();
+            log.warn("SQL statement budget exceeded: {} {} executed {} statements, the budget is {}",
+                    request.getMethod(), request.getRequestURI(), statements, budget);
+        }
+    }
+
+    /**
+     * The matched handler pattern, so the metrics get one series per endpoint rather than one per id.
+     */
+    private static String path(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
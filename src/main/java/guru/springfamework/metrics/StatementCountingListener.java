@@ -0,0 +1,26 @@
+package guru.springfamework.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+/**
+ * Reports every statement execution on the proxied data source to the {@link SqlStatementCounter}.
+ */
+class StatementCountingListener implements QueryExecutionListener {
+
+    // the elapsed time datasource-proxy reports is in milliseconds, too coarse for single statements
+    private static final ThreadLocal<long[]> STARTED = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        STARTED.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        SqlStatementCounter.executed(System.nanoTime() - STARTED.get()[0]);
+    }
+}
@@ -1,7 +1,112 @@
 package guru.springfamework.repositories;
 
 import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.CustomerView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long>, PersistenceContextOperations<Customer>,
+        ViewQueries<Customer> {
+
+    /**
+     * Selects customers straight into CustomerView; the read methods below use it instead of loading entities.
+     */
+    String SELECT_VIEW = "select new guru.springfamework.domain.CustomerView(c.id, c.version, c.firstName, c.lastName) from Customer c";
+    List<String> VIEW_ATTRIBUTES = Arrays.asList("id", "version", "firstName", "lastName");
+
+    @Query(SELECT_VIEW + " order by c.id")
+    List<CustomerView> findAllViews();
+
+    @Query(SELECT_VIEW + " where c.id > :id order by c.id")
+    List<CustomerView> findViewsAfter(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Read-only transaction of its own, so the service's lookup can wait for a coalesced load outside one.
+     */
+    @Transactional(readOnly = true)
+    @Query(SELECT_VIEW + " where c.id = :id")
+    Optional<CustomerView> findViewById(@Param("id") Long id);
+
+    @Query(SELECT_VIEW + " where c.id in :ids")
+    List<CustomerView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_VIEW + " where c.modifiedAt > :since order by c.id")
+    List<CustomerView> findViewsModifiedAfter(@Param("since") Instant since);
+
+    default List<CustomerView> findViews(Specification<Customer> specification, Sort sort, int limit) {
+        return selectViews(Customer.class, CustomerView.class, VIEW_ATTRIBUTES, specification, sort, limit);
+    }
+
+    /**
+     * The ids that exist, locked until the transaction ends so a bulk delete reports exactly the rows it deletes.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Customer c where c.id in :ids")
+    List<Long> lockExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Read-only transaction of its own, so a version the service finds in the cache costs no transaction.
+     */
+    @Transactional(readOnly = true)
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW + " order by c.id")
+    Stream<CustomerView> streamAllViews();
+
+    /**
+     * Writes the non-null arguments in one UPDATE statement, without loading the entity first.
+     * The version is bumped so cached ETags stop matching, and modifiedAt is set for delta sync.
+     *
+     * @return the number of updated rows, 0 when there is no customer with this id
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Customer c set c.firstName = coalesce(:firstName, c.firstName), "
+            + "c.lastName = coalesce(:lastName, c.lastName), c.version = c.version + 1, "
+            + "c.modifiedAt = :modifiedAt where c.id = :id")
+    int patchById(@Param("id") Long id, @Param("firstName") String firstName, @Param("lastName") String lastName,
+                  @Param("modifiedAt") Instant modifiedAt);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Customer c set c.firstName = coalesce(:firstName, c.firstName), "
+            + "c.lastName = coalesce(:lastName, c.lastName), c.version = c.version + 1, "
+            + "c.modifiedAt = :modifiedAt where c.id = :id and c.version = :version")
+    int patchByIdAndVersion(@Param("id") Long id, @Param("version") Long version,
+                            @Param("firstName") String firstName, @Param("lastName") String lastName,
+                            @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * Deletes with one DELETE statement; unlike deleteById nothing is loaded first.
+     *
+     * @return the number of deleted rows
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Customer c where c.id = :id")
+    int purgeById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Customer c where c.id in :ids")
+    int purgeAllByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,9 @@
+package guru.springfamework.repositories;
+
+/**
+ * Repository fragment giving services control over the persistence context for long running writes.
+ */
+public interface PersistenceContextOperations<T> {
+
+    void flushAndClear();
+}
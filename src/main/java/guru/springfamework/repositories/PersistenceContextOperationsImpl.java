@@ -0,0 +1,22 @@
+package guru.springfamework.repositories;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+public class PersistenceContextOperationsImpl<T> implements PersistenceContextOperations<T> {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void flushAndClear() {
+        // not entityManager.isJoinedToTransaction(): with open-in-view the EntityManager is opened before the
+        // transaction and reports false, so the pending inserts would be cleared without ever being flushed
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+        }
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package guru.springfamework.repositories;
+
+import guru.springfamework.domain.Tombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+
+    @Query("select distinct t.resourceId from Tombstone t where t.resource = :resource and t.deletedAt > :since")
+    List<Long> findResourceIdsDeletedAfter(@Param("resource") String resource, @Param("since") Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Tombstone t where t.deletedAt < :before")
+    int purgeDeletedBefore(@Param("before") Instant before);
+}
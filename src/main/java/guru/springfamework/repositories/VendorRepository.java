@@ -1,7 +1,97 @@
 package guru.springfamework.repositories;
 
 import guru.springfamework.domain.Vendor;
+import guru.springfamework.domain.VendorView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface VendorRepository extends JpaRepository<Vendor, Long> {
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface VendorRepository extends JpaRepository<Vendor, Long>, PersistenceContextOperations<Vendor>,
+        ViewQueries<Vendor> {
+
+    /**
+     * Selects vendors straight into VendorView; the read methods below use it instead of loading entities.
+     */
+    String SELECT_VIEW = "select new guru.springfamework.domain.VendorView(v.id, v.version, v.name) from Vendor v";
+    List<String> VIEW_ATTRIBUTES = Arrays.asList("id", "version", "name");
+
+    @Query(SELECT_VIEW + " order by v.id")
+    List<VendorView> findAllViews();
+
+    @Query(SELECT_VIEW + " where v.id > :id order by v.id")
+    List<VendorView> findViewsAfter(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Read-only transaction of its own, so the service's lookup can wait for a coalesced load outside one.
+     */
+    @Transactional(readOnly = true)
+    @Query(SELECT_VIEW + " where v.id = :id")
+    Optional<VendorView> findViewById(@Param("id") Long id);
+
+    @Query(SELECT_VIEW + " where v.id in :ids")
+    List<VendorView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_VIEW + " where v.modifiedAt > :since order by v.id")
+    List<VendorView> findViewsModifiedAfter(@Param("since") Instant since);
+
+    default List<VendorView> findViews(Specification<Vendor> specification, Sort sort, int limit) {
+        return selectViews(Vendor.class, VendorView.class, VIEW_ATTRIBUTES, specification, sort, limit);
+    }
+
+    /**
+     * The ids that exist, locked until the transaction ends so a bulk delete reports exactly the rows it deletes.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select v.id from Vendor v where v.id in :ids")
+    List<Long> lockExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Read-only transaction of its own, so a version the service finds in the cache costs no transaction.
+     */
+    @Transactional(readOnly = true)
+    @Query("select v.version from Vendor v where v.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW + " order by v.id")
+    Stream<VendorView> streamAllViews();
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Vendor v set v.name = coalesce(:name, v.name), v.version = v.version + 1, "
+            + "v.modifiedAt = :modifiedAt where v.id = :id")
+    int patchById(@Param("id") Long id, @Param("name") String name, @Param("modifiedAt") Instant modifiedAt);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Vendor v set v.name = coalesce(:name, v.name), v.version = v.version + 1, "
+            + "v.modifiedAt = :modifiedAt where v.id = :id and v.version = :version")
+    int patchByIdAndVersion(@Param("id") Long id, @Param("version") Long version, @Param("name") String name,
+                            @Param("modifiedAt") Instant modifiedAt);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Vendor v where v.id = :id")
+    int purgeById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Vendor v where v.id in :ids")
+    int purgeAllByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,19 @@
+package guru.springfamework.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Repository fragment running specifications as projections. JpaSpecificationExecutor always loads entities;
+ * this selects only the view's attributes, like the SELECT_VIEW queries do.
+ */
+public interface ViewQueries<T> {
+
+    /**
+     * @param attributes the entity attributes passed to the view's constructor, in order
+     */
+    <V> List<V> selectViews(Class<T> domainType, Class<V> viewType, List<String> attributes,
+                            Specification<T> specification, Sort sort, int limit);
+}
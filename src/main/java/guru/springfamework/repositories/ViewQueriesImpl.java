@@ -0,0 +1,31 @@
+package guru.springfamework.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.List;
+
+public class ViewQueriesImpl<T> implements ViewQueries<T> {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public <V> List<V> selectViews(Class<T> domainType, Class<V> viewType, List<String> attributes,
+                                   Specification<T> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<V> query = cb.createQuery(viewType);
+        Root<T> root = query.from(domainType);
+        query.select(cb.construct(viewType, attributes.stream().map(root::get).toArray(Selection[]::new)))
+             .where(specification.toPredicate(root, query, cb))
+             .orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
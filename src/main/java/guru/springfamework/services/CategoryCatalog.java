@@ -0,0 +1,194 @@
+package guru.springfamework.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.mapper.CategoryMapper;
+import guru.springfamework.api.v1.model.CategoryDTO;
+import guru.springfamework.api.v1.model.CategoryListDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.controllers.v1.CategoryController;
+import guru.springfamework.repositories.CategoryRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read model for the categories: an immutable snapshot of the table with a name index and the
+ * JSON (plain and gzipped) of every response, so reads touch neither the database nor Jackson.
+ * The snapshot is built when the application is ready; call {@link #reload()} after categories change. Readers keep the old snapshot until the new one is swapped in,
+ * and the differences between the two are published as {@link ResourceChange}s.
+ * The DTOs handed out are shared by all readers and must be treated as read-only.
+ */
+@Component
+public class CategoryCatalog {
+
+    static final String LOOKUP_GROUP = "categories";
+
+    private final CategoryMapper categoryMapper;
+    private final CategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final RequestCoalescer requestCoalescer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public CategoryCatalog(CategoryMapper categoryMapper, CategoryRepository categoryRepository, ObjectMapper objectMapper,
+                           RequestCoalescer requestCoalescer, ApplicationEventPublisher eventPublisher) {
+        this.categoryMapper = categoryMapper;
+        this.categoryRepository = categoryRepository;
+        this.objectMapper = objectMapper;
+        this.requestCoalescer = requestCoalescer;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public List<CategoryDTO> getAllCategories() {
+        return snapshot().categories;
+    }
+
+    public CategoryDTO getCategoryByName(String name) {
+        Entry entry = snapshot().byName.get(name);
+        if (entry == null) {
+            throw new ResourceNotFoundException("Category " + name + " not found");
+        }
+        return entry.category;
+    }
+
+    public Body getAllCategoriesBody() {
+        return snapshot().listBody;
+    }
+
+    public Body getCategoryBodyByName(String name) {
+        Entry entry = snapshot().byName.get(name);
+        if (entry == null) {
+            throw new ResourceNotFoundException("Category " + name + " not found");
+        }
+        return entry.body;
+    }
+
+    /**
+     * Builds a new snapshot from the database and swaps it in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        Snapshot next = load();
+        Snapshot previous = snapshot.getAndSet(next);
+        if (previous != null) {
+            publishChanges(previous.categories, next.categories);
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            // first reads before the application is ready share one load
+            current = requestCoalescer.execute(LOOKUP_GROUP, LOOKUP_GROUP, this::load);
+            snapshot.compareAndSet(null, current);
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        List<CategoryDTO> categories = categoryRepository.findAll()
+                                                         .stream()
+                                                         .map(categoryMapper::categoryToCategoryDTO)
+                                                         .collect(Collectors.toList());
+
+        Map<String, Entry> byName = new HashMap<>();
+        for (CategoryDTO category : categories) {
+            if (category.getName() != null) {
+                byName.putIfAbsent(category.getName(), new Entry(category, serialize(category)));
+            }
+        }
+        return new Snapshot(Collections.unmodifiableList(categories), Collections.unmodifiableMap(byName),
+                serialize(new CategoryListDTO(categories)));
+    }
+
+    private void publishChanges(List<CategoryDTO> previous, List<CategoryDTO> next) {
+        Map<Long, CategoryDTO> removed = new HashMap<>();
+        previous.forEach(category -> removed.put(category.getId(), category));
+        for (CategoryDTO category : next) {
+            CategoryDTO old = removed.remove(category.getId());
+            if (old == null) {
+                publishChange(ResourceChange.Type.CREATED, category);
+            } else if (!old.equals(category)) {
+                publishChange(ResourceChange.Type.UPDATED, category);
+            }
+        }
+        removed.values().forEach(category -> publishChange(ResourceChange.Type.DELETED, category));
+    }
+
+    private void publishChange(ResourceChange.Type type, CategoryDTO category) {
+        eventPublisher.publishEvent(new ResourceChange(ResourceChange.CATEGORIES, type, category.getId(),
+                CategoryController.BASE_URL + category.getName(), null));
+    }
+
+    private Body serialize(Object value) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length);
+            try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+                out.write(json);
+            }
+            return new Body(json, gzip.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize categories", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A pre-serialized JSON response. The arrays are shared and must not be modified.
+     */
+    public static final class Body {
+        private final byte[] json;
+        private final byte[] gzip;
+
+        Body(byte[] json, byte[] gzip) {
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+
+    private static final class Entry {
+        private final CategoryDTO category;
+        private final Body body;
+
+        Entry(CategoryDTO category, Body body) {
+            this.category = category;
+            this.body = body;
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<CategoryDTO> categories;
+        private final Map<String, Entry> byName;
+        private final Body listBody;
+
+        Snapshot(List<CategoryDTO> categories, Map<String, Entry> byName, Body listBody) {
+            this.categories = categories;
+            this.byName = byName;
+            this.listBody = listBody;
+        }
+    }
+}
@@ -4,9 +4,24 @@ import guru.springfamework.api.v1.model.CategoryDTO;
 
 import java.util.List;
 
+/**
+ * Categories are loaded once, when the application is ready, and served from the {@link CategoryCatalog} in memory.
+ * The API has no category writes, so nothing reloads them; code that changes the table has to call
+ * {@link CategoryCatalog#reload()}.
+ */
 public interface CategoryService {
 
     List<CategoryDTO> getAllCategories();
 
     CategoryDTO getCategoryByName(String name);
+
+    /**
+     * The serialized list response.
+     */
+    CategoryCatalog.Body getAllCategoriesBody();
+
+    /**
+     * The serialized response for one category.
+     */
+    CategoryCatalog.Body getCategoryBodyByName(String name);
 }
@@ -1,30 +1,35 @@
 package guru.springfamework.services;
 
-import guru.springfamework.api.v1.mapper.CategoryMapper;
 import guru.springfamework.api.v1.model.CategoryDTO;
-import guru.springfamework.repositories.CategoryRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
-    private final CategoryMapper categoryMapper;
-    private final CategoryRepository categoryRepository;
+    private final CategoryCatalog categoryCatalog;
 
-    public CategoryServiceImpl(CategoryMapper categoryMapper, CategoryRepository categoryRepository) {
-        this.categoryMapper = categoryMapper;
-        this.categoryRepository = categoryRepository;
+    public CategoryServiceImpl(CategoryCatalog categoryCatalog) {
+        this.categoryCatalog = categoryCatalog;
     }
 
     @Override
     public List<CategoryDTO> getAllCategories() {
-        return categoryRepository.findAll().stream().map(categoryMapper::categoryToCategoryDTO).collect(Collectors.toList());
+        return categoryCatalog.getAllCategories();
     }
 
     @Override
     public CategoryDTO getCategoryByName(String name) {
-        return categoryMapper.categoryToCategoryDTO(categoryRepository.findByName(name));
+        return categoryCatalog.getCategoryByName(name);
+    }
+
+    @Override
+    public CategoryCatalog.Body getAllCategoriesBody() {
+        return categoryCatalog.getAllCategoriesBody();
+    }
+
+    @Override
+    public CategoryCatalog.Body getCategoryBodyByName(String name) {
+        return categoryCatalog.getCategoryBodyByName(name);
     }
 }
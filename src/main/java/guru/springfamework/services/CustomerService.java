@@ -1,20 +1,55 @@
 package guru.springfamework.services;
 
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface CustomerService {
 
     List<CustomerDTO> getAllCustomers();
 
+    CustomerPageDTO getCustomersPage(String cursor, int limit);
+
+    /**
+     * A page of the customers matching the filters on firstName and lastName, in the order of sort.
+     *
+     * @see ListQuery
+     */
+    CustomerPageDTO findCustomers(Map<String, String> filters, String sort, String cursor, int limit);
+
+    void exportCustomers(Consumer<CustomerDTO> consumer);
+
+    CustomerChangesDTO getCustomersChangedSince(String token);
+
     CustomerDTO getCustomerById(Long id);
 
+    Long getCustomerVersion(Long id);
+
+    CustomerLookupDTO getCustomersByIds(List<Long> ids);
+
     CustomerDTO createNewCustomer(CustomerDTO customerDTO);
 
+    List<CustomerDTO> createNewCustomers(List<CustomerDTO> customerDTOs);
+
+    void importCustomers(List<CustomerDTO> customerDTOs);
+
     CustomerDTO saveCustomerByDTO(Long id, CustomerDTO customerDTO);
 
     CustomerDTO patchCustomer(Long id, CustomerDTO customerDTO);
 
+    /**
+     * Writes the non-null fields with one UPDATE statement, without reading the customer.
+     *
+     * @return the new version, or null when customerDTO carries no version to check
+     */
+    Long patchCustomerInPlace(Long id, CustomerDTO customerDTO);
+
     void deleteCustomerByID(Long id);
+
+    int deleteCustomersByIDs(List<Long> ids);
 }
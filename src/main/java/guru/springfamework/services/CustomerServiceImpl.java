@@ -1,62 +1,261 @@
 package guru.springfamework.services;
 
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.CacheConfig;
 import guru.springfamework.controllers.v1.CustomerController;
 import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.CustomerView;
 import guru.springfamework.repositories.CustomerRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
+    static final int BATCH_CHUNK_SIZE = 1000;
+    static final int MAX_IDS_PER_REQUEST = 1000;
+    static final String LOOKUP_GROUP = "customers";
+    /**
+     * The fields list queries can filter and sort on; each has an index on (field, id) in {@link Customer}.
+     */
+    static final Map<String, Function<CustomerView, String>> QUERY_FIELDS = Map.of(
+            "firstName", CustomerView::getFirstName,
+            "lastName", CustomerView::getLastName);
+
     private final CustomerMapper customerMapper;
     private final CustomerRepository customerRepository;
+    private final RequestCoalescer requestCoalescer;
+    private final JsonFragmentCache jsonFragmentCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Tombstones tombstones;
+    private final Cache customersCache;
 
-    public CustomerServiceImpl(CustomerMapper customerMapper, CustomerRepository customerRepository) {
+    public CustomerServiceImpl(CustomerMapper customerMapper, CustomerRepository customerRepository, RequestCoalescer requestCoalescer,
+                            JsonFragmentCache jsonFragmentCache, ApplicationEventPublisher eventPublisher,
+                            Tombstones tombstones, CacheManager cacheManager) {
         this.customerMapper = customerMapper;
         this.customerRepository = customerRepository;
+        this.requestCoalescer = requestCoalescer;
+        this.jsonFragmentCache = jsonFragmentCache;
+        this.eventPublisher = eventPublisher;
+        this.tombstones = tombstones;
+        this.customersCache = cacheManager.getCache(CacheConfig.CUSTOMERS_CACHE);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<CustomerDTO> getAllCustomers() {
         return customerRepository
-                .findAll()
+                .findAllViews()
                 .stream()
-                .map(customer -> {
-                   CustomerDTO customerDTO = customerMapper.customerToCustomerDTO(customer);
-                   customerDTO.setCustomerUrl(getCustomerUri(customer.getId()));
-                   return customerDTO;
-                })
+                .map(this::customerToDTOWithUrl)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public CustomerPageDTO getCustomersPage(String cursor, int limit) {
+        PageCursor.checkLimit(limit);
+
+        // fetch one extra row to find out whether there is a next page without a count query
+        List<CustomerView> customers = customerRepository
+                .findViewsAfter(PageCursor.decode(cursor), PageRequest.of(0, limit + 1));
+
+        String next = null;
+        if (customers.size() > limit) {
+            customers = customers.subList(0, limit);
+            next = PageCursor.encode(customers.get(limit - 1).getId());
+        }
+
+        return new CustomerPageDTO(customers.stream()
+                                            .map(this::customerToDTOWithUrl)
+                                            .collect(Collectors.toList()), next);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerPageDTO findCustomers(Map<String, String> filters, String sort, String cursor, int limit) {
+        ListQuery query = ListQuery.parse(filters, sort, QUERY_FIELDS.keySet());
+        if (query.isEmpty()) {
+            return getCustomersPage(cursor, limit);
+        }
+        PageCursor.checkLimit(limit);
+
+        List<CustomerView> customers = customerRepository.findViews(query.toSpecification(cursor), query.toSort(), limit + 1);
+
+        String next = null;
+        if (customers.size() > limit) {
+            customers = customers.subList(0, limit);
+            CustomerView last = customers.get(limit - 1);
+            next = query.cursorAfter(last.getId(), QUERY_FIELDS.getOrDefault(query.getSortKey(), view -> null).apply(last));
+        }
+
+        return new CustomerPageDTO(customers.stream()
+                                            .map(this::customerToDTOWithUrl)
+                                            .collect(Collectors.toList()), next);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportCustomers(Consumer<CustomerDTO> consumer) {
+        try (Stream<CustomerView> customers = customerRepository.streamAllViews()) {
+            customers.forEach(customer -> consumer.accept(customerToDTOWithUrl(customer)));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerChangesDTO getCustomersChangedSince(String token) {
+        Instant since = SyncToken.decode(token);
+        Instant queryStart = Instant.now();
+
+        List<Long> deleted = tombstones.deletedAfter(ResourceChange.CUSTOMERS, since);
+        List<CustomerView> customers = since == null
+                ? customerRepository.findAllViews()
+                : customerRepository.findViewsModifiedAfter(since);
+
+        return new CustomerChangesDTO(customers.stream()
+                                         .map(this::customerToDTOWithUrl)
+                                         .collect(Collectors.toList()), deleted, SyncToken.next(since, queryStart));
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.CUSTOMERS_CACHE, key = "#id", sync = true)
     public CustomerDTO getCustomerById(Long id) {
+        // runs on cache misses only; concurrent misses for the same id share one query. Not transactional, only the
+        // query is, so the misses waiting for it do not each hold a connection
+        return requestCoalescer.execute(LOOKUP_GROUP, id, () -> customerRepository.findViewById(id)
+                .map(this::customerToDTOWithUrl)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " not found")));
+    }
 
-        return customerRepository.findById(id)
-                .map(customerMapper::customerToCustomerDTO)
-                .orElseThrow(RuntimeException::new);
+    @Override
+    public Long getCustomerVersion(Long id) {
+        // revalidations mostly follow a read that cached the customer, and its DTO carries the version; writes evict it
+        CustomerDTO cached = customersCache.get(id, CustomerDTO.class);
+        if (cached != null && cached.getVersion() != null) {
+            return cached.getVersion();
+        }
+        return customerRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " not found"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerLookupDTO getCustomersByIds(List<Long> ids) {
+        checkIdCount(ids);
+
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        Map<Long, CustomerView> found = new HashMap<>();
+        if (!requestedIds.isEmpty()) {
+            for (CustomerView customer : customerRepository.findViewsByIdIn(requestedIds)) {
+                found.put(customer.getId(), customer);
+            }
+        }
+
+        List<CustomerDTO> customerDTOs = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requestedIds) {
+            CustomerView customer = found.get(id);
+            if (customer == null) {
+                missing.add(id);
+            } else {
+                customerDTOs.add(customerToDTOWithUrl(customer));
+            }
+        }
+        return new CustomerLookupDTO(customerDTOs, missing);
     }
 
     @Override
     public CustomerDTO createNewCustomer(CustomerDTO customerDTO) {
         Customer customer = customerMapper.customerDTOToCustomer(customerDTO);
-        return saveAndReturnDTO(customer);
+        return saveAndReturnDTO(customer, ResourceChange.Type.CREATED);
     }
 
     @Override
+    @Transactional
+    public List<CustomerDTO> createNewCustomers(List<CustomerDTO> customerDTOs) {
+        List<CustomerDTO> created = new ArrayList<>(customerDTOs.size());
+
+        // all or nothing: one transaction for the whole list, but every chunk is flushed and then dropped from the
+        // persistence context, so it does not grow with the list
+        for (int from = 0; from < customerDTOs.size(); from += BATCH_CHUNK_SIZE) {
+            List<Customer> chunk = customerDTOs.subList(from, Math.min(from + BATCH_CHUNK_SIZE, customerDTOs.size()))
+                    .stream()
+                    .map(customerMapper::customerDTOToCustomer)
+                    .collect(Collectors.toList());
+
+            for (Customer savedCustomer : customerRepository.saveAll(chunk)) {
+                created.add(customerToDTOWithUrl(savedCustomer));
+                publishChange(ResourceChange.Type.CREATED, savedCustomer.getId(), savedCustomer.getVersion());
+            }
+            customerRepository.flushAndClear();
+        }
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public void importCustomers(List<CustomerDTO> customerDTOs) {
+        // one transaction per import batch; unlike createNewCustomers nothing is mapped back, the import only reports counts
+        List<Customer> customers = customerDTOs.stream()
+                .map(customerMapper::customerDTOToCustomer)
+                .collect(Collectors.toList());
+        for (Customer savedCustomer : customerRepository.saveAll(customers)) {
+            publishChange(ResourceChange.Type.CREATED, savedCustomer.getId(), savedCustomer.getVersion());
+        }
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CUSTOMERS_CACHE, key = "#id")
     public CustomerDTO saveCustomerByDTO(Long id, CustomerDTO customerDTO) {
-        Customer customer = customerMapper.customerDTOToCustomer(customerDTO);
-        customer.setId(id);
-        return saveAndReturnDTO(customer);
+        jsonFragmentCache.evict(getCustomerUri(id));
+        Optional<Customer> existing = customerRepository.findById(id);
+        if (existing.isEmpty()) {
+            if (customerDTO.getVersion() != null) {
+                throw new ResourceNotFoundException("Customer " + id + " not found");
+            }
+            return saveAndReturnDTO(customerMapper.customerDTOToCustomer(customerDTO), ResourceChange.Type.CREATED);
+        }
+
+        Customer customer = existing.get();
+        checkVersion(customer, customerDTO.getVersion());
+        customerMapper.updateCustomerFromDTO(customerDTO, customer);
+        return saveAndReturnDTO(customer, ResourceChange.Type.UPDATED);
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.CUSTOMERS_CACHE, key = "#id")
     public CustomerDTO patchCustomer(Long id, CustomerDTO customerDTO) {
+        jsonFragmentCache.evict(getCustomerUri(id));
         return customerRepository.findById(id).map(customer -> {
+            checkVersion(customer, customerDTO.getVersion());
 
             if(customerDTO.getFirstName() != null){
                 customer.setFirstName(customerDTO.getFirstName());
@@ -65,17 +264,81 @@ public class CustomerServiceImpl implements CustomerService {
             if(customerDTO.getLastName() != null){
                 customer.setLastName(customerDTO.getLastName());
             }
-            return saveAndReturnDTO(customer);
-        }).orElseThrow(RuntimeException::new);
+            return saveAndReturnDTO(customer, ResourceChange.Type.UPDATED);
+        }).orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " not found"));
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.CUSTOMERS_CACHE, key = "#id")
+    @Transactional
+    public Long patchCustomerInPlace(Long id, CustomerDTO customerDTO) {
+        jsonFragmentCache.evict(getCustomerUri(id));
+        Long version = customerDTO.getVersion();
+        if (version == null) {
+            if (customerRepository.patchById(id, customerDTO.getFirstName(), customerDTO.getLastName(), Instant.now()) == 0) {
+                throw new ResourceNotFoundException("Customer " + id + " not found");
+            }
+        } else if (customerRepository.patchByIdAndVersion(id, version,
+                customerDTO.getFirstName(), customerDTO.getLastName(), Instant.now()) == 0) {
+            if (customerRepository.existsById(id)) {
+                throw new PreconditionFailedException("Customer " + id + " was modified");
+            }
+            throw new ResourceNotFoundException("Customer " + id + " not found");
+        }
+        // the row is not read back, so the new version is only known when the old one was given
+        Long patchedVersion = version == null ? null : version + 1;
+        publishChange(ResourceChange.Type.UPDATED, id, patchedVersion);
+        return patchedVersion;
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CUSTOMERS_CACHE, key = "#id")
+    @Transactional
     public void deleteCustomerByID(Long id) {
-        customerRepository.deleteById(id);
+        jsonFragmentCache.evict(getCustomerUri(id));
+        if (customerRepository.purgeById(id) == 0) {
+            throw new ResourceNotFoundException("Customer " + id + " not found");
+        }
+        tombstones.record(ResourceChange.CUSTOMERS, Collections.singletonList(id));
+        publishChange(ResourceChange.Type.DELETED, id, null);
+    }
+
+    @Override
+    // evicting key by key is not possible with the annotation; bulk deletes are rare enough to drop the whole cache
+    @CacheEvict(cacheNames = CacheConfig.CUSTOMERS_CACHE, allEntries = true)
+    @Transactional
+    public int deleteCustomersByIDs(List<Long> ids) {
+        checkIdCount(ids);
+        jsonFragmentCache.evictAll(ids.stream().map(this::getCustomerUri).collect(Collectors.toList()));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // only the ids that existed get a tombstone and a change event
+        List<Long> existing = customerRepository.lockExistingIds(ids);
+        if (existing.isEmpty()) {
+            return 0;
+        }
+        int deleted = customerRepository.purgeAllByIdIn(existing);
+        tombstones.record(ResourceChange.CUSTOMERS, existing);
+        existing.forEach(id -> publishChange(ResourceChange.Type.DELETED, id, null));
+        return deleted;
+    }
+
+    private void checkVersion(Customer customer, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+            throw new PreconditionFailedException("Customer " + customer.getId() + " was modified");
+        }
     }
 
-    private CustomerDTO saveAndReturnDTO(Customer customer){
+    private void checkIdCount(List<Long> ids) {
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new BadRequestException("At most " + MAX_IDS_PER_REQUEST + " ids per request");
+        }
+    }
+
+    private CustomerDTO saveAndReturnDTO(Customer customer, ResourceChange.Type type){
         Customer savedCustomer = customerRepository.save(customer);
+        publishChange(type, savedCustomer.getId(), savedCustomer.getVersion());
 
         CustomerDTO returnDto = customerMapper.customerToCustomerDTO(savedCustomer);
 
@@ -84,6 +347,24 @@ public class CustomerServiceImpl implements CustomerService {
         return returnDto;
     }
 
+    private CustomerDTO customerToDTOWithUrl(Customer customer) {
+        CustomerDTO customerDTO = customerMapper.customerToCustomerDTO(customer);
+        customerDTO.setCustomerUrl(getCustomerUri(customer.getId()));
+        return customerDTO;
+    }
+
+    private CustomerDTO customerToDTOWithUrl(CustomerView customer) {
+        CustomerDTO customerDTO = customerMapper.customerViewToCustomerDTO(customer);
+        customerDTO.setCustomerUrl(getCustomerUri(customer.getId()));
+        return customerDTO;
+    }
+
+    private void publishChange(ResourceChange.Type type, Long id, Long version) {
+        // lookups of the id already running may have read it before this change
+        requestCoalescer.invalidate(LOOKUP_GROUP, id);
+        eventPublisher.publishEvent(new ResourceChange(ResourceChange.CUSTOMERS, type, id, getCustomerUri(id), version));
+    }
+
     private String getCustomerUri(Long Id){
         return CustomerController.BASE_URL + Id;
     }
@@ -0,0 +1,230 @@
+package guru.springfamework.services;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filters and sort order of a paged list request. Every filter value is an exact match, {@code prefix:<text>} or
+ * {@code in:<a>,<b>}; {@code eq:<text>} spells out the exact match. The sort is a single key, descending when it
+ * starts with {@code -}, and id breaks ties. Only the fields a domain passes in can be filtered and sorted on, each
+ * backed by an index on (field, id), and only in combinations that index returns in sort order: one field at most is
+ * filtered, and the sort is on that field, or on id when the filter is an exact match. A prefix is one range of the
+ * index and an in-list a few, but neither comes out in id order, and a filter on one field sorted by another would
+ * read every match to sort it. So an accepted query reads the index in order and stops after the page.
+ * <p>
+ * Pages are keyset pages like {@link PageCursor}: the cursor holds the sort key, the sort value and the id of the
+ * last row, and the next page seeks past them. Nulls are taken to sort lowest, as they do in H2.
+ */
+public final class ListQuery {
+
+    public static final String ID = "id";
+    static final int MAX_IN_VALUES = 100;
+
+    private static final String EQ = "eq:";
+    private static final String PREFIX = "prefix:";
+    private static final String IN = "in:";
+
+    private final Map<String, Filter> filters;
+    private final String sortKey;
+    private final boolean descending;
+
+    private ListQuery(Map<String, Filter> filters, String sortKey, boolean descending) {
+        this.filters = filters;
+        this.sortKey = sortKey;
+        this.descending = descending;
+    }
+
+    /**
+     * @param filters field to filter value; null values are left out
+     * @param sort    the sort key, or null to sort by id
+     * @param fields  the fields that can be filtered and sorted on besides id
+     * @throws BadRequestException for other fields and malformed values
+     */
+    public static ListQuery parse(Map<String, String> filters, String sort, Set<String> fields) {
+        Map<String, Filter> parsed = new LinkedHashMap<>();
+        filters.forEach((field, value) -> {
+            if (value == null) {
+                return;
+            }
+            if (!fields.contains(field)) {
+                throw new BadRequestException("Unsupported filter: " + field + "; supported are " + fields);
+            }
+            parsed.put(field, Filter.parse(field, value));
+        });
+
+        String sortKey = ID;
+        boolean descending = false;
+        if (sort != null && !sort.isEmpty()) {
+            descending = sort.startsWith("-");
+            sortKey = descending ? sort.substring(1) : sort;
+            if (!sortKey.equals(ID) && !fields.contains(sortKey)) {
+                // an unindexed sort would have to read and sort the whole table for every page
+                throw new BadRequestException("Unsupported sort key: " + sortKey + "; supported are " + ID + " and " + fields);
+            }
+        }
+        if (parsed.size() > 1) {
+            throw new BadRequestException("Filters on " + parsed.keySet() + " at once; only one field can be filtered");
+        }
+        for (Map.Entry<String, Filter> filter : parsed.entrySet()) {
+            String field = filter.getKey();
+            boolean exact = filter.getValue().exact != null;
+            if (!sortKey.equals(field) && !(exact && sortKey.equals(ID))) {
+                throw new BadRequestException("A filter on " + field + " can only be sorted by " + field
+                        + (exact ? " or " + ID : ""));
+            }
+        }
+        return new ListQuery(parsed, sortKey, descending);
+    }
+
+    public boolean isEmpty() {
+        return filters.isEmpty() && sortKey.equals(ID) && !descending;
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public Sort toSort() {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return sortKey.equals(ID) ? Sort.by(direction, ID) : Sort.by(direction, sortKey, ID);
+    }
+
+    /**
+     * The filters, and when there is a cursor the seek past the last row of the previous page.
+     *
+     * @throws BadRequestException for a cursor that is malformed or belongs to another sort order
+     */
+    public <T> Specification<T> toSpecification(String cursor) {
+        Cursor after = Cursor.decode(cursor);
+        if (after != null && !after.sort.equals(sortParameter())) {
+            throw new BadRequestException("Cursor does not belong to sort " + sortParameter());
+        }
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            filters.forEach((field, filter) -> predicates.add(filter.toPredicate(root.get(field), cb)));
+            if (after != null) {
+                predicates.add(seek(root.get(sortKey), root.get(ID), after, cb));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * The cursor of the page after the row with this id and sort value; the value is ignored when sorting by id.
+     */
+    public String cursorAfter(Long id, String sortValue) {
+        return new Cursor(sortParameter(), id, sortKey.equals(ID) ? null : sortValue).encode();
+    }
+
+    private String sortParameter() {
+        return descending ? "-" + sortKey : sortKey;
+    }
+
+    private Predicate seek(Path<String> key, Path<Long> id, Cursor after, CriteriaBuilder cb) {
+        if (sortKey.equals(ID)) {
+            return descending ? cb.lessThan(id, after.id) : cb.greaterThan(id, after.id);
+        }
+        if (after.value == null) {
+            // nulls come first ascending and last descending
+            Predicate sameNullAfterId = cb.and(cb.isNull(key), descending ? cb.lessThan(id, after.id) : cb.greaterThan(id, after.id));
+            return descending ? sameNullAfterId : cb.or(sameNullAfterId, cb.isNotNull(key));
+        }
+        Predicate sameValueAfterId = cb.and(cb.equal(key, after.value),
+                descending ? cb.lessThan(id, after.id) : cb.greaterThan(id, after.id));
+        if (descending) {
+            return cb.or(cb.lessThan(key, after.value), sameValueAfterId, cb.isNull(key));
+        }
+        return cb.or(cb.greaterThan(key, after.value), sameValueAfterId);
+    }
+
+    private static final class Filter {
+        private final String exact;
+        private final String prefix;
+        private final List<String> in;
+
+        private Filter(String exact, String prefix, List<String> in) {
+            this.exact = exact;
+            this.prefix = prefix;
+            this.in = in;
+        }
+
+        static Filter parse(String field, String value) {
+            if (value.startsWith(PREFIX)) {
+                String prefix = value.substring(PREFIX.length());
+                if (prefix.isEmpty()) {
+                    throw new BadRequestException("Empty prefix for " + field);
+                }
+                return new Filter(null, prefix, null);
+            }
+            if (value.startsWith(IN)) {
+                List<String> in = Arrays.asList(value.substring(IN.length()).split(",", -1));
+                if (in.size() > MAX_IN_VALUES) {
+                    throw new BadRequestException("At most " + MAX_IN_VALUES + " values for " + field);
+                }
+                return new Filter(null, null, in);
+            }
+            return new Filter(value.startsWith(EQ) ? value.substring(EQ.length()) : value, null, null);
+        }
+
+        Predicate toPredicate(Path<String> path, CriteriaBuilder cb) {
+            if (prefix != null) {
+                // a range instead of LIKE, so the index is used whatever the database makes of a bound LIKE pattern
+                return cb.and(cb.greaterThanOrEqualTo(path, prefix),
+                        cb.lessThan(path, prefix + Character.MAX_VALUE));
+            }
+            if (in != null) {
+                return path.in(in);
+            }
+            return cb.equal(path, exact);
+        }
+    }
+
+    private static final class Cursor {
+        private final String sort;
+        private final Long id;
+        private final String value;
+
+        Cursor(String sort, Long id, String value) {
+            this.sort = sort;
+            this.id = id;
+            this.value = value;
+        }
+
+        String encode() {
+            String cursor = sort + "\n" + id + (value == null ? "" : "\n" + value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException("Missing id");
+                }
+                return new Cursor(parts[0], Long.parseLong(parts[1]), parts.length == 3 ? parts[2] : null);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor: " + cursor, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return filters.keySet() + " sorted by " + sortParameter();
+    }
+}
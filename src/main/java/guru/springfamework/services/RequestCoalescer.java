@@ -0,0 +1,153 @@
+package guru.springfamework.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share one in-flight load instead of each running it.
+ * The first caller runs the loader, the others wait for its result for at most the timeout, the configured one
+ * unless the call passes its own, and then get a {@link ServiceUnavailableException} rather than starting a load
+ * of their own. Loads, collapsed calls and timeouts are counted per group as {@code app.coalescing.*}.
+ * <p>
+ * A write to a key {@link #invalidate invalidates} it: a load already running may have read the row before the
+ * write, so calls made after it start a new load instead of joining that one. Flights are keyed by a generation
+ * per key, striped by hash like {@link guru.springfamework.config.GenerationalCaffeineCache}.
+ */
+@Component
+public class RequestCoalescer {
+
+    static final int STRIPES = 1024;
+
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(@Value("${app.coalescing.timeout:5s}") Duration timeout, MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <V> V execute(String group, Object key, Supplier<V> loader) {
+        return execute(group, key, timeout, loader);
+    }
+
+    /**
+     * @param timeout how long to wait for a load another caller is running
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String group, Object key, Duration timeout, Supplier<V> loader) {
+        Counters groupCounters = counters(group);
+        List<Object> flightKey = Arrays.asList(group, key, generations.get(stripe(group, key)));
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing == null) {
+            groupCounters.loads.increment();
+            try {
+                V value = loader.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(flightKey, flight);
+            }
+        }
+
+        groupCounters.collapsed.increment();
+        try {
+            return (V) existing.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            groupCounters.timeouts.increment();
+            throw new ServiceUnavailableException("Timed out waiting for " + group + " " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for " + group + " " + key);
+        } catch (ExecutionException e) {
+            // the waiters see the same exception as the caller that ran the load
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Makes later calls for the key start a new load. Within a transaction this happens once it commits,
+     * since a load started before the commit still reads the old row.
+     */
+    public void invalidate(String group, Object key) {
+        int stripe = stripe(group, key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generations.incrementAndGet(stripe);
+                }
+            });
+        } else {
+            generations.incrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * Number of loads that actually ran for the group.
+     */
+    public long getLoads(String group) {
+        return (long) counters(group).loads.count();
+    }
+
+    /**
+     * Number of calls for the group that were served by another caller's load.
+     */
+    public long getCollapsed(String group) {
+        return (long) counters(group).collapsed.count();
+    }
+
+    /**
+     * Number of collapsed calls for the group that gave up waiting.
+     */
+    public long getTimeouts(String group) {
+        return (long) counters(group).timeouts.count();
+    }
+
+    private static int stripe(String group, Object key) {
+        return Math.floorMod(Objects.hash(group, key), STRIPES);
+    }
+
+    private Counters counters(String group) {
+        return counters.computeIfAbsent(group, g -> new Counters(meterRegistry, g));
+    }
+
+    private static final class Counters {
+        private final Counter loads;
+        private final Counter collapsed;
+        private final Counter timeouts;
+
+        Counters(MeterRegistry meterRegistry, String group) {
+            this.loads = meterRegistry.counter("app.coalescing.loads", "group", group);
+            this.collapsed = meterRegistry.counter("app.coalescing.collapsed", "group", group);
+            this.timeouts = meterRegistry.counter("app.coalescing.timeouts", "group", group);
+        }
+    }
+}
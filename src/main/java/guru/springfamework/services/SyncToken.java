@@ -0,0 +1,53 @@
+package guru.springfamework.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque token of the delta sync endpoints. It wraps a modification time, and the next sync returns the rows
+ * modified and the ids deleted after it.
+ */
+public final class SyncToken {
+
+    /**
+     * How far a new token is set back from the start of the query. A row is stamped when it is written but only
+     * visible once its transaction commits, so a write that is still in flight while the query runs has a time
+     * before the query start; the next sync picks it up as long as it commits within the lag. Rows in the overlap
+     * are sent twice, which clients have to tolerate. Read-write transactions are rolled back when they run longer
+     * than {@code app.sync.write-timeout}, which is kept below the lag.
+     */
+    public static final Duration COMMIT_LAG = Duration.ofSeconds(5);
+
+    private SyncToken() {
+    }
+
+    /**
+     * The token for a sync whose query started at {@code queryStart}, or at {@code since} if that is later.
+     */
+    public static String next(Instant since, Instant queryStart) {
+        Instant next = queryStart.minus(COMMIT_LAG);
+        if (since != null && since.isAfter(next)) {
+            next = since;
+        }
+        return Base64.getUrlEncoder()
+                     .withoutPadding()
+                     .encodeToString(Long.toString(next.toEpochMilli()).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the time wrapped in the token, or null for an empty token, which syncs everything
+     */
+    public static Instant decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(
+                    new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid sync token: " + token, e);
+        }
+    }
+}
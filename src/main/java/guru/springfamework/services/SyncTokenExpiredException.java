@@ -0,0 +1,22 @@
+package guru.springfamework.services;
+
+public class SyncTokenExpiredException extends RuntimeException{
+    public SyncTokenExpiredException() {
+    }
+
+    public SyncTokenExpiredException(String message) {
+        super(message);
+    }
+
+    public SyncTokenExpiredException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public SyncTokenExpiredException(Throwable cause) {
+        super(cause);
+    }
+
+    public SyncTokenExpiredException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,62 @@
+package guru.springfamework.services;
+
+import guru.springfamework.domain.Tombstone;
+import guru.springfamework.repositories.TombstoneRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Records deletes for delta sync. Tombstones are purged once they are older than
+ * {@code app.sync.tombstone-retention}, so a sync token older than that could miss deletes and is rejected.
+ */
+@Component
+public class Tombstones {
+
+    private final TombstoneRepository tombstoneRepository;
+    private final Duration retention;
+
+    public Tombstones(TombstoneRepository tombstoneRepository,
+                      @Value("${app.sync.tombstone-retention:30d}") Duration retention) {
+        this.tombstoneRepository = tombstoneRepository;
+        this.retention = retention;
+    }
+
+    /**
+     * Saves a tombstone for every distinct id; call it in the transaction that deletes the rows.
+     */
+    public void record(String resource, Collection<Long> ids) {
+        Instant deletedAt = Instant.now();
+        tombstoneRepository.saveAll(ids.stream()
+                                       .distinct()
+                                       .map(id -> new Tombstone(resource, id, deletedAt))
+                                       .collect(Collectors.toList()));
+    }
+
+    /**
+     * The ids deleted after {@code since}; none for a full sync, when {@code since} is null.
+     *
+     * @throws SyncTokenExpiredException when the tombstones after {@code since} may already be purged
+     */
+    public List<Long> deletedAfter(String resource, Instant since) {
+        if (since == null) {
+            return Collections.emptyList();
+        }
+        if (since.isBefore(Instant.now().minus(retention))) {
+            throw new SyncTokenExpiredException("Sync token from " + since + " is older than " + retention);
+        }
+        return tombstoneRepository.findResourceIdsDeletedAfter(resource, since);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sync.tombstone-purge-interval:1h}")
+    public void purgeExpired() {
+        tombstoneRepository.purgeDeletedBefore(Instant.now().minus(retention));
+    }
+}
@@ -1,20 +1,55 @@
 package guru.springfamework.services;
 
+import guru.springfamework.api.v1.model.VendorChangesDTO;
 import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface VendorService {
 
     List<VendorDTO> getAllVendors();
 
+    VendorPageDTO getVendorsPage(String cursor, int limit);
+
+    /**
+     * A page of the vendors matching the filter on name, in the order of sort.
+     *
+     * @see ListQuery
+     */
+    VendorPageDTO findVendors(Map<String, String> filters, String sort, String cursor, int limit);
+
+    void exportVendors(Consumer<VendorDTO> consumer);
+
+    VendorChangesDTO getVendorsChangedSince(String token);
+
     VendorDTO getVendorById(Long id);
 
+    Long getVendorVersion(Long id);
+
+    VendorLookupDTO getVendorsByIds(List<Long> ids);
+
     VendorDTO createNewVendor(VendorDTO vendorDTO);
 
+    List<VendorDTO> createNewVendors(List<VendorDTO> vendorDTOs);
+
+    void importVendors(List<VendorDTO> vendorDTOs);
+
     VendorDTO saveVendorByDTO(Long id, VendorDTO vendorDTO);
 
     VendorDTO patchVendor(Long id, VendorDTO vendorDTO);
 
+    /**
+     * Writes the non-null fields with one UPDATE statement, without reading the vendor.
+     *
+     * @return the new version, or null when vendorDTO carries no version to check
+     */
+    Long patchVendorInPlace(Long id, VendorDTO vendorDTO);
+
     void deleteVendorByID(Long id);
+
+    int deleteVendorsByIDs(List<Long> ids);
 }
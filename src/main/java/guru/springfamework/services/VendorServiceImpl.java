@@ -1,75 +1,332 @@
 package guru.springfamework.services;
 
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.mapper.VendorMapper;
+import guru.springfamework.api.v1.model.VendorChangesDTO;
 import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.CacheConfig;
 import guru.springfamework.controllers.v1.VendorController;
 import guru.springfamework.domain.Vendor;
+import guru.springfamework.domain.VendorView;
 import guru.springfamework.repositories.VendorRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class VendorServiceImpl implements VendorService {
+
+    static final int BATCH_CHUNK_SIZE = 1000;
+    static final int MAX_IDS_PER_REQUEST = 1000;
+    static final String LOOKUP_GROUP = "vendors";
+    /**
+     * The fields list queries can filter and sort on; each has an index on (field, id) in {@link Vendor}.
+     */
+    static final Map<String, Function<VendorView, String>> QUERY_FIELDS = Map.of("name", VendorView::getName);
+
     private final VendorMapper vendorMapper;
     private final VendorRepository vendorRepository;
+    private final RequestCoalescer requestCoalescer;
+    private final JsonFragmentCache jsonFragmentCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Tombstones tombstones;
+    private final Cache vendorsCache;
 
-    public VendorServiceImpl(VendorMapper vendorMapper, VendorRepository vendorRepository) {
+    public VendorServiceImpl(VendorMapper vendorMapper, VendorRepository vendorRepository, RequestCoalescer requestCoalescer,
+                            JsonFragmentCache jsonFragmentCache, ApplicationEventPublisher eventPublisher,
+                            Tombstones tombstones, CacheManager cacheManager) {
         this.vendorMapper = vendorMapper;
         this.vendorRepository = vendorRepository;
+        this.requestCoalescer = requestCoalescer;
+        this.jsonFragmentCache = jsonFragmentCache;
+        this.eventPublisher = eventPublisher;
+        this.tombstones = tombstones;
+        this.vendorsCache = cacheManager.getCache(CacheConfig.VENDORS_CACHE);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<VendorDTO> getAllVendors() {
         return vendorRepository
-                .findAll()
+                .findAllViews()
                 .stream()
-                .map(vendor -> {
-                    VendorDTO vendorDTO = vendorMapper.vendorToVendorDTO(vendor);
-                    vendorDTO.setVendorUrl(getVendorUri(vendor.getId()));
-                    return vendorDTO;
-                })
+                .map(this::vendorToDTOWithUrl)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public VendorPageDTO getVendorsPage(String cursor, int limit) {
+        PageCursor.checkLimit(limit);
+
+        // fetch one extra row to find out whether there is a next page without a count query
+        List<VendorView> vendors = vendorRepository
+                .findViewsAfter(PageCursor.decode(cursor), PageRequest.of(0, limit + 1));
+
+        String next = null;
+        if (vendors.size() > limit) {
+            vendors = vendors.subList(0, limit);
+            next = PageCursor.encode(vendors.get(limit - 1).getId());
+        }
+
+        return new VendorPageDTO(vendors.stream()
+                                        .map(this::vendorToDTOWithUrl)
+                                        .collect(Collectors.toList()), next);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VendorPageDTO findVendors(Map<String, String> filters, String sort, String cursor, int limit) {
+        ListQuery query = ListQuery.parse(filters, sort, QUERY_FIELDS.keySet());
+        if (query.isEmpty()) {
+            return getVendorsPage(cursor, limit);
+        }
+        PageCursor.checkLimit(limit);
+
+        List<VendorView> vendors = vendorRepository.findViews(query.toSpecification(cursor), query.toSort(), limit + 1);
+
+        String next = null;
+        if (vendors.size() > limit) {
+            vendors = vendors.subList(0, limit);
+            VendorView last = vendors.get(limit - 1);
+            next = query.cursorAfter(last.getId(), QUERY_FIELDS.getOrDefault(query.getSortKey(), view -> null).apply(last));
+        }
+
+        return new VendorPageDTO(vendors.stream()
+                                        .map(this::vendorToDTOWithUrl)
+                                        .collect(Collectors.toList()), next);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportVendors(Consumer<VendorDTO> consumer) {
+        try (Stream<VendorView> vendors = vendorRepository.streamAllViews()) {
+            vendors.forEach(vendor -> consumer.accept(vendorToDTOWithUrl(vendor)));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VendorChangesDTO getVendorsChangedSince(String token) {
+        Instant since = SyncToken.decode(token);
+        Instant queryStart = Instant.now();
+
+        List<Long> deleted = tombstones.deletedAfter(ResourceChange.VENDORS, since);
+        List<VendorView> vendors = since == null
+                ? vendorRepository.findAllViews()
+                : vendorRepository.findViewsModifiedAfter(since);
+
+        return new VendorChangesDTO(vendors.stream()
+                                         .map(this::vendorToDTOWithUrl)
+                                         .collect(Collectors.toList()), deleted, SyncToken.next(since, queryStart));
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.VENDORS_CACHE, key = "#id", sync = true)
     public VendorDTO getVendorById(Long id) {
-        return vendorRepository.findById(id)
-                               .map(vendorMapper::vendorToVendorDTO)
-                               .orElseThrow(RuntimeException::new);
+        // like getCustomerById, only the query runs in a transaction, not the wait for another caller's query
+        return requestCoalescer.execute(LOOKUP_GROUP, id, () -> vendorRepository.findViewById(id)
+                               .map(this::vendorToDTOWithUrl)
+                               .orElseThrow(() -> new ResourceNotFoundException("Vendor " + id + " not found")));
+    }
+
+    @Override
+    public Long getVendorVersion(Long id) {
+        // revalidations mostly follow a read that cached the vendor, and its DTO carries the version; writes evict it
+        VendorDTO cached = vendorsCache.get(id, VendorDTO.class);
+        if (cached != null && cached.getVersion() != null) {
+            return cached.getVersion();
+        }
+        return vendorRepository.findVersionById(id)
+                               .orElseThrow(() -> new ResourceNotFoundException("Vendor " + id + " not found"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VendorLookupDTO getVendorsByIds(List<Long> ids) {
+        checkIdCount(ids);
+
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        Map<Long, VendorView> found = new HashMap<>();
+        if (!requestedIds.isEmpty()) {
+            for (VendorView vendor : vendorRepository.findViewsByIdIn(requestedIds)) {
+                found.put(vendor.getId(), vendor);
+            }
+        }
+
+        List<VendorDTO> vendorDTOs = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requestedIds) {
+            VendorView vendor = found.get(id);
+            if (vendor == null) {
+                missing.add(id);
+            } else {
+                vendorDTOs.add(vendorToDTOWithUrl(vendor));
+            }
+        }
+        return new VendorLookupDTO(vendorDTOs, missing);
     }
 
     @Override
     public VendorDTO createNewVendor(VendorDTO vendorDTO) {
         Vendor vendor = vendorMapper.vendorDTOToVendor(vendorDTO);
-        return saveAndReturnDTO(vendor);
+        return saveAndReturnDTO(vendor, ResourceChange.Type.CREATED);
     }
 
     @Override
+    @Transactional
+    public List<VendorDTO> createNewVendors(List<VendorDTO> vendorDTOs) {
+        List<VendorDTO> created = new ArrayList<>(vendorDTOs.size());
+
+        // like createNewCustomers, one transaction for the whole list, flushed and cleared per chunk
+        for (int from = 0; from < vendorDTOs.size(); from += BATCH_CHUNK_SIZE) {
+            List<Vendor> chunk = vendorDTOs.subList(from, Math.min(from + BATCH_CHUNK_SIZE, vendorDTOs.size()))
+                    .stream()
+                    .map(vendorMapper::vendorDTOToVendor)
+                    .collect(Collectors.toList());
+
+            for (Vendor savedVendor : vendorRepository.saveAll(chunk)) {
+                created.add(vendorToDTOWithUrl(savedVendor));
+                publishChange(ResourceChange.Type.CREATED, savedVendor.getId(), savedVendor.getVersion());
+            }
+            vendorRepository.flushAndClear();
+        }
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public void importVendors(List<VendorDTO> vendorDTOs) {
+        // one transaction per batch; unlike createNewVendors nothing is mapped back, the import only reports counts
+        List<Vendor> vendors = vendorDTOs.stream()
+                .map(vendorMapper::vendorDTOToVendor)
+                .collect(Collectors.toList());
+        for (Vendor savedVendor : vendorRepository.saveAll(vendors)) {
+            publishChange(ResourceChange.Type.CREATED, savedVendor.getId(), savedVendor.getVersion());
+        }
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.VENDORS_CACHE, key = "#id")
     public VendorDTO saveVendorByDTO(Long id, VendorDTO vendorDTO) {
-        Vendor vendor = vendorMapper.vendorDTOToVendor(vendorDTO);
-        vendor.setId(id);
-        return saveAndReturnDTO(vendor);
+        jsonFragmentCache.evict(getVendorUri(id));
+        Optional<Vendor> existing = vendorRepository.findById(id);
+        if (existing.isEmpty()) {
+            if (vendorDTO.getVersion() != null) {
+                throw new ResourceNotFoundException("Vendor " + id + " not found");
+            }
+            return saveAndReturnDTO(vendorMapper.vendorDTOToVendor(vendorDTO), ResourceChange.Type.CREATED);
+        }
+
+        Vendor vendor = existing.get();
+        checkVersion(vendor, vendorDTO.getVersion());
+        vendorMapper.updateVendorFromDTO(vendorDTO, vendor);
+        return saveAndReturnDTO(vendor, ResourceChange.Type.UPDATED);
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.VENDORS_CACHE, key = "#id")
     public VendorDTO patchVendor(Long id, VendorDTO vendorDTO) {
+        jsonFragmentCache.evict(getVendorUri(id));
         return vendorRepository.findById(id).map(vendor -> {
+            checkVersion(vendor, vendorDTO.getVersion());
             if(vendorDTO.getName() != null){
                 vendor.setName(vendorDTO.getName());
             }
-            return saveAndReturnDTO(vendor);
-        }).orElseThrow(RuntimeException::new);
+            return saveAndReturnDTO(vendor, ResourceChange.Type.UPDATED);
+        }).orElseThrow(() -> new ResourceNotFoundException("Vendor " + id + " not found"));
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.VENDORS_CACHE, key = "#id")
+    @Transactional
+    public Long patchVendorInPlace(Long id, VendorDTO vendorDTO) {
+        jsonFragmentCache.evict(getVendorUri(id));
+        Long version = vendorDTO.getVersion();
+        if (version == null) {
+            if (vendorRepository.patchById(id, vendorDTO.getName(), Instant.now()) == 0) {
+                throw new ResourceNotFoundException("Vendor " + id + " not found");
+            }
+        } else if (vendorRepository.patchByIdAndVersion(id, version, vendorDTO.getName(), Instant.now()) == 0) {
+            if (vendorRepository.existsById(id)) {
+                throw new PreconditionFailedException("Vendor " + id + " was modified");
+            }
+            throw new ResourceNotFoundException("Vendor " + id + " not found");
+        }
+        Long patchedVersion = version == null ? null : version + 1;
+        publishChange(ResourceChange.Type.UPDATED, id, patchedVersion);
+        return patchedVersion;
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.VENDORS_CACHE, key = "#id")
+    @Transactional
     public void deleteVendorByID(Long id) {
-        vendorRepository.deleteById(id);
+        jsonFragmentCache.evict(getVendorUri(id));
+        if (vendorRepository.purgeById(id) == 0) {
+            throw new ResourceNotFoundException("Vendor " + id + " not found");
+        }
+        tombstones.record(ResourceChange.VENDORS, Collections.singletonList(id));
+        publishChange(ResourceChange.Type.DELETED, id, null);
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.VENDORS_CACHE, allEntries = true)
+    @Transactional
+    public int deleteVendorsByIDs(List<Long> ids) {
+        checkIdCount(ids);
+        jsonFragmentCache.evictAll(ids.stream().map(this::getVendorUri).collect(Collectors.toList()));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // only the ids that existed get a tombstone and a change event
+        List<Long> existing = vendorRepository.lockExistingIds(ids);
+        if (existing.isEmpty()) {
+            return 0;
+        }
+        int deleted = vendorRepository.purgeAllByIdIn(existing);
+        tombstones.record(ResourceChange.VENDORS, existing);
+        existing.forEach(id -> publishChange(ResourceChange.Type.DELETED, id, null));
+        return deleted;
+    }
+
+    private void checkVersion(Vendor vendor, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(vendor.getVersion())) {
+            throw new PreconditionFailedException("Vendor " + vendor.getId() + " was modified");
+        }
     }
 
-    private VendorDTO saveAndReturnDTO(Vendor vendor) {
+    private void checkIdCount(List<Long> ids) {
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new BadRequestException("At most " + MAX_IDS_PER_REQUEST + " ids per request");
+        }
+    }
+
+    private VendorDTO saveAndReturnDTO(Vendor vendor, ResourceChange.Type type) {
         Vendor savedVendor = vendorRepository.save(vendor);
+        publishChange(type, savedVendor.getId(), savedVendor.getVersion());
 
         VendorDTO returnDto = vendorMapper.vendorToVendorDTO(savedVendor);
 
@@ -78,6 +335,24 @@ public class VendorServiceImpl implements VendorService {
         return returnDto;
     }
 
+    private VendorDTO vendorToDTOWithUrl(Vendor vendor) {
+        VendorDTO vendorDTO = vendorMapper.vendorToVendorDTO(vendor);
+        vendorDTO.setVendorUrl(getVendorUri(vendor.getId()));
+        return vendorDTO;
+    }
+
+    private VendorDTO vendorToDTOWithUrl(VendorView vendor) {
+        VendorDTO vendorDTO = vendorMapper.vendorViewToVendorDTO(vendor);
+        vendorDTO.setVendorUrl(getVendorUri(vendor.getId()));
+        return vendorDTO;
+    }
+
+    private void publishChange(ResourceChange.Type type, Long id, Long version) {
+        // lookups of the id already running may have read it before this change
+        requestCoalescer.invalidate(LOOKUP_GROUP, id);
+        eventPublisher.publishEvent(new ResourceChange(ResourceChange.VENDORS, type, id, getVendorUri(id), version));
+    }
+
     private String getVendorUri(Long id) {
         return VendorController.BASE_URL + id;
     }
@@ -0,0 +1,145 @@
+package guru.springfamework.api.v1.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonFragmentCacheTest {
+
+    private static final String URL = "/api/v1/customers/1";
+
+    MeterRegistry meterRegistry;
+    JsonFragmentCache jsonFragmentCache;
+    JsonFragmentCache.JsonFragments<CustomerDTO> customers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jsonFragmentCache = new JsonFragmentCache(new ObjectMapper(), meterRegistry, DataSize.ofMegabytes(1));
+        customers = jsonFragmentCache.forType("customers", CustomerDTO.class,
+                CustomerDTO::getCustomerUrl, CustomerDTO::getVersion);
+    }
+
+    @Test
+    void sameVersionIsServedFromTheCache() throws Exception {
+        //when
+        byte[] first = customers.get(customer("Michale", URL, 0L));
+        byte[] second = customers.get(customer("Michale", URL, 0L));
+
+        //then
+        assertSame(first, second);
+        assertEquals(1, hits());
+        assertEquals(1, misses());
+    }
+
+    @Test
+    void newVersionIsSerializedAgain() throws Exception {
+        //given
+        customers.get(customer("Michale", URL, 0L));
+
+        //when
+        byte[] json = customers.get(customer("Fred", URL, 1L));
+
+        //then
+        assertEquals("{\"firstName\":\"Fred\",\"lastName\":\"Weston\",\"customer_url\":\"" + URL + "\"}",
+                new String(json, StandardCharsets.UTF_8));
+        assertEquals(0, hits());
+        assertEquals(2, misses());
+    }
+
+    @Test
+    void valuesWithoutVersionAreNotCached() throws Exception {
+        //when
+        byte[] first = customers.get(customer("Michale", URL, null));
+        byte[] second = customers.get(customer("Michale", URL, null));
+
+        //then
+        assertNotSame(first, second);
+        assertEquals(2, misses());
+    }
+
+    @Test
+    void evictedUrlMisses() throws Exception {
+        //given
+        customers.get(customer("Michale", URL, 0L));
+
+        //when
+        jsonFragmentCache.evictAll(Collections.singletonList(URL));
+        customers.get(customer("Michale", URL, 0L));
+
+        //then
+        assertEquals(0, hits());
+        assertEquals(2, misses());
+    }
+
+    @Test
+    void objectIsAssembledFromFragments() throws Exception {
+        //when
+        JsonFragmentBody body = customers.object()
+                                         .array("customers", Arrays.asList(customer("Michale", URL, 0L),
+                                                 customer("Sam", "/api/v1/customers/2", 0L)))
+                                         .field("next", null)
+                                         .build();
+
+        //then
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] fragment : body.getFragments()) {
+            out.write(fragment);
+        }
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertEquals("{\"customers\":["
+                + "{\"firstName\":\"Michale\",\"lastName\":\"Weston\",\"customer_url\":\"" + URL + "\"},"
+                + "{\"firstName\":\"Sam\",\"lastName\":\"Weston\",\"customer_url\":\"/api/v1/customers/2\"}"
+                + "],\"next\":null}", json);
+        assertEquals(json.length(), body.getLength());
+    }
+
+    @Test
+    void cacheMetricsSitNextToTheSpringCachesInPrometheus() throws Exception {
+        //given
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        // tagged the way Spring Boot binds the customers and vendors caches
+        CaffeineCacheMetrics.monitor(prometheus, Caffeine.newBuilder().recordStats().build(), "customers",
+                "name", "customers", "cacheManager", "cacheManager");
+
+        //when
+        new JsonFragmentCache(new ObjectMapper(), prometheus, DataSize.ofMegabytes(1));
+
+        //then
+        String scrape = prometheus.scrape();
+        assertTrue(scrape.contains("cache_gets_total{cache=\"customers\""), scrape);
+        assertTrue(scrape.contains("cache_gets_total{cache=\"" + JsonFragmentCache.CACHE_NAME + "\""), scrape);
+    }
+
+    private double hits() {
+        return meterRegistry.counter("app.json.fragments", "type", "customers", "result", "hit").count();
+    }
+
+    private double misses() {
+        return meterRegistry.counter("app.json.fragments", "type", "customers", "result", "miss").count();
+    }
+
+    private static CustomerDTO customer(String firstName, String url, Long version) {
+        CustomerDTO customer = new CustomerDTO(firstName, "Weston", url);
+        customer.setVersion(version);
+        return customer;
+    }
+}
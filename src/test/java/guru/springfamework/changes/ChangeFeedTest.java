@@ -0,0 +1,172 @@
+package guru.springfamework.changes;
+
+import guru.springfamework.controllers.RestResponseEntityExceptionHandler;
+import guru.springfamework.controllers.v1.ChangeController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ChangeFeedTest {
+
+    ChangeFeed changeFeed;
+    MockMvc mockMvc;
+
+    @AfterEach
+    void tearDown() {
+        changeFeed.destroy();
+    }
+
+    @Test
+    void streamsPublishedChanges() throws Exception {
+        //given
+        setUp(16, Duration.ZERO);
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL));
+
+        //when
+        changeFeed.publish(customerChange(1L, ResourceChange.Type.UPDATED));
+
+        //then
+        awaitContent(response, "id:" + changeFeed.eventId(1) + "\nevent:customers.updated\n"
+                + "data:{\"domain\":\"customers\",\"type\":\"updated\",\"id\":1,\"url\":\"/api/v1/customers/1\",\"version\":3}\n\n");
+    }
+
+    @Test
+    void resumesAfterLastEventId() throws Exception {
+        //given
+        setUp(16, Duration.ZERO);
+        changeFeed.publish(customerChange(1L, ResourceChange.Type.CREATED));
+        changeFeed.publish(customerChange(2L, ResourceChange.Type.CREATED));
+        changeFeed.publish(customerChange(3L, ResourceChange.Type.CREATED));
+
+        //when
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL)
+                .header(ChangeController.LAST_EVENT_ID, changeFeed.eventId(1)));
+
+        //then
+        awaitContent(response, "id:" + changeFeed.eventId(3) + "\n");
+        assertTrue(response.getContentAsString().contains("id:" + changeFeed.eventId(2) + "\n"));
+        assertFalse(response.getContentAsString().contains("id:" + changeFeed.eventId(1) + "\n"));
+    }
+
+    @Test
+    void lastEventIdOutsideTheBufferGetsReset() throws Exception {
+        //given
+        setUp(2, Duration.ZERO);
+        for (long id = 1; id <= 4; id++) {
+            changeFeed.publish(customerChange(id, ResourceChange.Type.CREATED));
+        }
+
+        //when
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL)
+                .header(ChangeController.LAST_EVENT_ID, changeFeed.eventId(1)));
+        changeFeed.publish(customerChange(5L, ResourceChange.Type.CREATED));
+
+        //then
+        awaitContent(response, "id:" + changeFeed.eventId(5) + "\n");
+        assertTrue(response.getContentAsString().startsWith("id:" + changeFeed.eventId(4) + "\nevent:" + ChangeFeed.RESET_EVENT + "\n"));
+        assertFalse(response.getContentAsString().contains("id:" + changeFeed.eventId(3) + "\n"));
+    }
+
+    @Test
+    void lastEventIdFromBeforeARestartGetsReset() throws Exception {
+        //given
+        ChangeFeed previousBoot = new ChangeFeed(new SimpleMeterRegistry(), 16, 1, Duration.ofMinutes(1), Duration.ZERO);
+        String lastEventId = previousBoot.eventId(1);
+        previousBoot.destroy();
+        // boots are told apart by their start time
+        Thread.sleep(2);
+
+        setUp(16, Duration.ZERO);
+        for (long id = 1; id <= 3; id++) {
+            changeFeed.publish(customerChange(id, ResourceChange.Type.CREATED));
+        }
+
+        //when
+        // the sequence is still in the buffer, but it was counted by the previous boot
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL)
+                .header(ChangeController.LAST_EVENT_ID, lastEventId));
+        changeFeed.publish(customerChange(4L, ResourceChange.Type.CREATED));
+
+        //then
+        awaitContent(response, "id:" + changeFeed.eventId(4) + "\n");
+        assertTrue(response.getContentAsString().startsWith("id:" + changeFeed.eventId(3) + "\nevent:" + ChangeFeed.RESET_EVENT + "\n"));
+        assertFalse(response.getContentAsString().contains("id:" + changeFeed.eventId(2) + "\n"));
+    }
+
+    @Test
+    void domainFeedOnlyStreamsItsDomain() throws Exception {
+        //given
+        setUp(16, Duration.ZERO);
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL + "/" + ResourceChange.VENDORS));
+
+        //when
+        changeFeed.publish(customerChange(1L, ResourceChange.Type.DELETED));
+        changeFeed.publish(new ResourceChange(ResourceChange.VENDORS, ResourceChange.Type.DELETED, 1L,
+                "/api/v1/vendors/1", null));
+
+        //then
+        awaitContent(response, "id:" + changeFeed.eventId(2) + "\nevent:vendors.deleted\n");
+        assertFalse(response.getContentAsString().contains("customers"));
+    }
+
+    @Test
+    void unknownDomainIsNotFound() throws Exception {
+        setUp(16, Duration.ZERO);
+
+        mockMvc.perform(get(ChangeController.BASE_URL + "/orders"))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void idleStreamsGetHeartbeats() throws Exception {
+        //given
+        setUp(16, Duration.ofMillis(20));
+
+        //when
+        MockHttpServletResponse response = subscribe(get(ChangeController.BASE_URL));
+
+        //then
+        awaitContent(response, ":\n\n");
+    }
+
+    private void setUp(int bufferSize, Duration heartbeatInterval) {
+        changeFeed = new ChangeFeed(new SimpleMeterRegistry(), bufferSize, 1, Duration.ofMinutes(1), heartbeatInterval);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ChangeController(changeFeed))
+                                 .setControllerAdvice(new RestResponseEntityExceptionHandler())
+                                 .build();
+    }
+
+    private MockHttpServletResponse subscribe(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        return result.getResponse();
+    }
+
+    private static ResourceChange customerChange(Long id, ResourceChange.Type type) {
+        return new ResourceChange(ResourceChange.CUSTOMERS, type, id, "/api/v1/customers/" + id, 3L);
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!response.getContentAsString().contains(expected)) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + expected
+                    + " in " + response.getContentAsString());
+            Thread.sleep(10);
+        }
+    }
+}
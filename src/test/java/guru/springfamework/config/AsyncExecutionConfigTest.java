@@ -0,0 +1,119 @@
+package guru.springfamework.config;
+
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.controllers.v1.CategoryController;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.VendorController;
+import guru.springfamework.services.CustomerService;
+import guru.springfamework.services.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.async.enabled=true")
+@AutoConfigureMockMvc
+class AsyncExecutionConfigTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    CustomerService customerService;
+
+    @Test
+    void customerRequestsRunOnTheCustomersExecutor() throws Exception {
+        //given
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(customerService.getCustomerById(anyLong())).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return new CustomerDTO("Michale", "Weston", CustomerController.BASE_URL + 1);
+        });
+
+        //when
+        MvcResult result = mockMvc.perform(get(CustomerController.BASE_URL + "1"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.firstName", equalTo("Michale")));
+        assertTrue(thread.get().startsWith("customers-"), thread.get());
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModified() throws Exception {
+        //given
+        when(customerService.getCustomerVersion(1L)).thenReturn(3L);
+
+        //when
+        MvcResult result = mockMvc.perform(get(CustomerController.BASE_URL + "1")
+                                          .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isNotModified())
+               .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+        verify(customerService, never()).getCustomerById(anyLong());
+    }
+
+    @Test
+    void serverTimingCoversTheWorkOnTheExecutor() throws Exception {
+        //when, with the vendor service left unmocked so its calls are timed
+        MvcResult result = mockMvc.perform(get(VendorController.BASE_URL + "1").header("X-Server-Timing", "true"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(header().string("Server-Timing",
+                       allOf(containsString("service;dur="), containsString("sql;dur="))));
+    }
+
+    @Test
+    void exceptionsAreHandledAfterTheAsyncDispatch() throws Exception {
+        //given
+        when(customerService.getCustomerById(anyLong())).thenThrow(new ResourceNotFoundException());
+
+        //when
+        MvcResult result = mockMvc.perform(get(CustomerController.BASE_URL + "1"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void categoriesStayOnTheServletThread() throws Exception {
+        mockMvc.perform(get(CategoryController.BASE_URL))
+               .andExpect(request().asyncNotStarted())
+               .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,100 @@
+package guru.springfamework.config;
+
+import guru.springfamework.services.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainExecutorsTest {
+
+    MeterRegistry meterRegistry;
+
+    DomainExecutors domainExecutors;
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    AtomicReference<String> decoratedOn = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.async.threads", "4")
+                .withProperty("app.async.executors.customers.threads", "1")
+                .withProperty("app.async.executors.customers.queue-capacity", "1");
+        domainExecutors = new DomainExecutors(environment, meterRegistry, runnable -> {
+            String submittedOn = Thread.currentThread().getName();
+            return () -> {
+                decoratedOn.set(submittedOn);
+                runnable.run();
+            };
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        domainExecutors.destroy();
+    }
+
+    @Test
+    void rejectsWorkWhenThreadsAndQueueAreFull() {
+        //given
+        domainExecutors.execute("customers", this::awaitRelease);
+        domainExecutors.execute("customers", this::awaitRelease);
+
+        //when
+        assertThrows(ServiceUnavailableException.class, () -> domainExecutors.execute("customers", this::awaitRelease));
+
+        //then
+        assertEquals(1, meterRegistry.counter(DomainExecutors.REJECTED_COUNTER, "domain", "customers").count());
+        assertEquals(1, meterRegistry.get("executor.queued").tag("name", "customers").gauge().value());
+    }
+
+    @Test
+    void saturatedDomainDoesNotBlockOtherDomains() throws Exception {
+        //given
+        domainExecutors.execute("customers", this::awaitRelease);
+        domainExecutors.execute("customers", this::awaitRelease);
+
+        //when
+        CountDownLatch vendorDone = new CountDownLatch(1);
+        domainExecutors.execute("vendors", vendorDone::countDown);
+
+        //then
+        assertTrue(vendorDone.await(5, TimeUnit.SECONDS));
+        assertEquals(4, meterRegistry.get("executor.pool.max").tag("name", "vendors").gauge().value());
+    }
+
+    @Test
+    void tasksAreDecoratedOnTheSubmittingThread() throws Exception {
+        //given
+        CountDownLatch done = new CountDownLatch(1);
+
+        //when
+        domainExecutors.execute("customers", done::countDown);
+
+        //then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Thread.currentThread().getName(), decoratedOn.get());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package guru.springfamework.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GenerationalCaffeineCacheTest {
+
+    GenerationalCaffeineCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GenerationalCaffeineCache("customers", Caffeine.newBuilder().build(), true);
+    }
+
+    @Test
+    void loadedValueIsCached() {
+        assertEquals("old", cache.get(1L, () -> "old"));
+
+        assertEquals("old", cache.get(1L, () -> "new"));
+    }
+
+    @Test
+    void valueLoadedWhileTheKeyIsEvictedIsNotCached() {
+        //when
+        String loaded = cache.get(1L, () -> {
+            cache.evict(1L);
+            return "old";
+        });
+
+        //then
+        assertEquals("old", loaded);
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void valueLoadedWhileTheCacheIsClearedIsNotCached() {
+        cache.get(1L, () -> {
+            cache.clear();
+            return "old";
+        });
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void evictingAnotherKeyKeepsTheValue() {
+        cache.get(1L, () -> {
+            cache.evict(2L);
+            return "old";
+        });
+
+        assertEquals("old", cache.get(1L).get());
+    }
+
+    @Test
+    void loaderExceptionIsWrapped() {
+        Cache.ValueRetrievalException e = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get(1L, () -> {
+                    throw new IllegalStateException("gone");
+                }));
+
+        assertEquals("gone", e.getCause().getMessage());
+    }
+}
@@ -0,0 +1,69 @@
+package guru.springfamework.config;
+
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerListDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.services.CustomerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Streams rows for longer than the default async timeout, which is set far below the container's 30 seconds here.
+ * Tomcat checks for timeouts once a second, so the stream has to last a few seconds.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.mvc.async.request-timeout=200ms")
+class StreamingConfigTest {
+
+    static final int ROWS = 5;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @MockBean
+    CustomerService customerService;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<CustomerDTO> consumer = invocation.getArgument(0);
+            for (int i = 1; i <= ROWS; i++) {
+                Thread.sleep(500);
+                consumer.accept(new CustomerDTO("Michale", "Weston", CustomerController.BASE_URL + i));
+            }
+            return null;
+        }).when(customerService).exportCustomers(any());
+    }
+
+    @Test
+    void exportOutlastsTheDefaultTimeout() {
+        //when
+        ResponseEntity<String> response = restTemplate.getForEntity(CustomerController.BASE_URL + "export", String.class);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(ROWS, response.getBody().split("\n").length);
+    }
+
+    @Test
+    void listOutlastsTheDefaultTimeout() {
+        //when
+        ResponseEntity<CustomerListDTO> response = restTemplate.getForEntity(CustomerController.BASE_URL, CustomerListDTO.class);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(ROWS, response.getBody().getCustomers().size());
+    }
+}
@@ -0,0 +1,68 @@
+package guru.springfamework.config;
+
+import guru.springfamework.domain.Customer;
+import guru.springfamework.repositories.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Keeps transactions open past a write timeout shortened to half a second.
+ */
+@SpringBootTest(properties = "app.sync.write-timeout=500ms")
+class TransactionConfigTest {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Test
+    void writeOpenPastTheTimeoutIsRolledBack() {
+        //given
+        long countBefore = customerRepository.count();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        //when
+        assertThrows(TransactionTimedOutException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            Customer customer = new Customer();
+            customer.setFirstName("Michale");
+            customerRepository.saveAndFlush(customer);
+            sleepPastTheTimeout();
+        }));
+
+        //then
+        assertEquals(countBefore, customerRepository.count());
+    }
+
+    @Test
+    void readOnlyTransactionsAreNotLimited() {
+        //given
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        //when
+        Long count = transactionTemplate.execute(status -> {
+            sleepPastTheTimeout();
+            return customerRepository.count();
+        });
+
+        //then
+        assertEquals(customerRepository.count(), count);
+    }
+
+    private static void sleepPastTheTimeout() {
+        try {
+            Thread.sleep(700);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
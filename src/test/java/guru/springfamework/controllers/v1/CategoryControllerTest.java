@@ -1,26 +1,36 @@
 package guru.springfamework.controllers.v1;
 
-import guru.springfamework.api.v1.model.CategoryDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.mapper.CategoryMapper;
 import guru.springfamework.controllers.RestResponseEntityExceptionHandler;
-import guru.springfamework.services.CategoryService;
-import guru.springfamework.services.ResourceNotFoundException;
+import guru.springfamework.domain.Category;
+import guru.springfamework.repositories.CategoryRepository;
+import guru.springfamework.services.CategoryCatalog;
+import guru.springfamework.services.CategoryServiceImpl;
+import guru.springfamework.services.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,9 +39,8 @@ public class CategoryControllerTest {
     public static final String NAME = "Jim";
 
     @Mock
-    CategoryService categoryService;
+    CategoryRepository categoryRepository;
 
-    @InjectMocks
     CategoryController categoryController;
 
     MockMvc mockMvc;
@@ -40,26 +49,28 @@ public class CategoryControllerTest {
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
 
-        mockMvc = MockMvcBuilders.standaloneSetup(categoryController)
-                .setControllerAdvice(new RestResponseEntityExceptionHandler())
-                .build();
-
-    }
-
-    @Test
-    public void testListCategories() throws Exception {
-        CategoryDTO category1 = new CategoryDTO();
+        Category category1 = new Category();
         category1.setId(1l);
         category1.setName(NAME);
 
-        CategoryDTO category2 = new CategoryDTO();
+        Category category2 = new Category();
         category2.setId(2l);
         category2.setName("Bob");
 
-        List<CategoryDTO> categories = Arrays.asList(category1, category2);
+        when(categoryRepository.findAll()).thenReturn(Arrays.asList(category1, category2));
 
-        when(categoryService.getAllCategories()).thenReturn(categories);
+        categoryController = new CategoryController(new CategoryServiceImpl(
+                new CategoryCatalog(CategoryMapper.INSTANCE, categoryRepository, new ObjectMapper(),
+                        new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()), event -> { })));
 
+        mockMvc = MockMvcBuilders.standaloneSetup(categoryController)
+                .setControllerAdvice(new RestResponseEntityExceptionHandler())
+                .build();
+
+    }
+
+    @Test
+    public void testListCategories() throws Exception {
         mockMvc.perform(get(CategoryController.BASE_URL)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -68,12 +79,6 @@ public class CategoryControllerTest {
 
     @Test
     public void testGetByNameCategories() throws Exception {
-        CategoryDTO category1 = new CategoryDTO();
-        category1.setId(1l);
-        category1.setName(NAME);
-
-        when(categoryService.getCategoryByName(anyString())).thenReturn(category1);
-
         mockMvc.perform(get(CategoryController.BASE_URL + "/Jim")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -81,12 +86,31 @@ public class CategoryControllerTest {
     }
 
     @Test
-    public void testGetByNameNotFound() throws Exception {
+    public void testGetByNameGzip() throws Exception {
+        MvcResult result = mockMvc.perform(get(CategoryController.BASE_URL + "/Jim")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
 
-        when(categoryService.getCategoryByName(anyString())).thenThrow(ResourceNotFoundException.class);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals("{\"id\":1,\"name\":\"Jim\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
 
+    @Test
+    public void testGzipRefused() throws Exception {
+        mockMvc.perform(get(CategoryController.BASE_URL)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(jsonPath("$.categories", hasSize(2)));
+    }
+
+    @Test
+    public void testGetByNameNotFound() throws Exception {
         mockMvc.perform(get(CategoryController.BASE_URL + "/Foo")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+}
@@ -1,28 +1,51 @@
 package guru.springfamework.controllers.v1;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentBodyConverter;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
 import guru.springfamework.controllers.RestResponseEntityExceptionHandler;
 import guru.springfamework.services.CustomerService;
 import guru.springfamework.services.ResourceNotFoundException;
+import guru.springfamework.services.SyncTokenExpiredException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class CustomerControllerTest extends AbstractRestControllerTest {
@@ -35,6 +58,12 @@ public class CustomerControllerTest extends AbstractRestControllerTest {
     @Mock
     CustomerService customerService;
 
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    JsonFragmentCache jsonFragmentCache = new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1));
+
     @InjectMocks
     CustomerController customerController;
 
@@ -46,6 +75,7 @@ public class CustomerControllerTest extends AbstractRestControllerTest {
 
         mockMvc = MockMvcBuilders.standaloneSetup(customerController)
                                  .setControllerAdvice(new RestResponseEntityExceptionHandler())
+                                 .setMessageConverters(new JsonFragmentBodyConverter(), new MappingJackson2HttpMessageConverter())
                                  .build();
     }
 
@@ -62,12 +92,125 @@ public class CustomerControllerTest extends AbstractRestControllerTest {
         customer2.setLastName("Axe");
         customer2.setCustomerUrl(getCustomerUri(2L));
 
-        when(customerService.getAllCustomers()).thenReturn(Arrays.asList(customer1, customer2));
+        doAnswer(invocation -> {
+            Consumer<CustomerDTO> consumer = invocation.getArgument(0);
+            consumer.accept(customer1);
+            consumer.accept(customer2);
+            return null;
+        }).when(customerService).exportCustomers(any());
+
+        MvcResult result = mockMvc.perform(get(CustomerController.BASE_URL)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().exists(ApiHeaders.SYNC_TOKEN))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(2)))
+                .andExpect(jsonPath("$.customers[1].customer_url", equalTo(getCustomerUri(2L))));
+    }
+
+    @Test
+    public void testPageOfCustomers() throws Exception {
+        //given
+        CustomerDTO customer1 = new CustomerDTO();
+        customer1.setFirstName(FIRST_NAME);
+        customer1.setLastName(LAST_NAME);
+        customer1.setCustomerUrl(getCustomerUri(ID));
+
+        when(customerService.findCustomers(anyMap(), isNull(), isNull(), eq(1)))
+                .thenReturn(new CustomerPageDTO(Arrays.asList(customer1), "abc"));
+
+        mockMvc.perform(get(CustomerController.BASE_URL)
+                        .param("limit", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(1)))
+                .andExpect(jsonPath("$.next", equalTo("abc")));
+    }
+
+    @Test
+    public void testPageOfCustomersFilteredAndSorted() throws Exception {
+        //given
+        CustomerDTO customer1 = new CustomerDTO(FIRST_NAME, LAST_NAME, getCustomerUri(ID));
+
+        Map<String, String> filters = new HashMap<>();
+        filters.put("firstName", null);
+        filters.put("lastName", "prefix:Ax");
+        when(customerService.findCustomers(filters, "-lastName", "abc", 10))
+                .thenReturn(new CustomerPageDTO(Arrays.asList(customer1), null));
+
+        mockMvc.perform(get(CustomerController.BASE_URL)
+                        .param("limit", "10")
+                        .param("cursor", "abc")
+                        .param("lastName", "prefix:Ax")
+                        .param("sort", "-lastName")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(1)))
+                .andExpect(jsonPath("$.customers[0].lastName", equalTo(LAST_NAME)));
+    }
+
+    @Test
+    public void testFilterWithoutLimitIsBadRequest() throws Exception {
+        mockMvc.perform(get(CustomerController.BASE_URL)
+                        .param("lastName", LAST_NAME)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testCustomersChangedSince() throws Exception {
+        //given
+        CustomerDTO customer1 = new CustomerDTO(FIRST_NAME, LAST_NAME, getCustomerUri(ID));
+
+        when(customerService.getCustomersChangedSince("abc"))
+                .thenReturn(new CustomerChangesDTO(Arrays.asList(customer1), Arrays.asList(2L), "def"));
+
+        mockMvc.perform(get(CustomerController.BASE_URL)
+                        .param("changedSince", "abc")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(1)))
+                .andExpect(jsonPath("$.deleted[0]", equalTo(2)))
+                .andExpect(jsonPath("$.token", equalTo("def")));
+    }
+
+    @Test
+    public void testCustomersChangedSinceExpiredToken() throws Exception {
+        when(customerService.getCustomersChangedSince("abc")).thenThrow(SyncTokenExpiredException.class);
 
         mockMvc.perform(get(CustomerController.BASE_URL)
+                        .param("changedSince", "abc")
                         .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void testExportCustomersCsv() throws Exception {
+        //given
+        CustomerDTO customer1 = new CustomerDTO(FIRST_NAME, LAST_NAME, getCustomerUri(ID));
+        CustomerDTO customer2 = new CustomerDTO(FIRST_NAME2, "Flint, \"Fred\"", getCustomerUri(2L));
+
+        doAnswer(invocation -> {
+            Consumer<CustomerDTO> consumer = invocation.getArgument(0);
+            consumer.accept(customer1);
+            consumer.accept(customer2);
+            return null;
+        }).when(customerService).exportCustomers(any());
+
+        //when
+        MvcResult result = mockMvc.perform(get(CustomerController.BASE_URL + "export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.customers", hasSize(2)));
+                .andExpect(content().string("firstName,lastName,customer_url\r\n"
+                        + FIRST_NAME + "," + LAST_NAME + "," + getCustomerUri(ID) + "\r\n"
+                        + FIRST_NAME2 + ",\"Flint, \"\"Fred\"\"\"," + getCustomerUri(2L) + "\r\n"));
     }
 
     @Test
@@ -166,6 +309,49 @@ public class CustomerControllerTest extends AbstractRestControllerTest {
                 .andExpect(jsonPath("$.customer_url", equalTo(getCustomerUri(ID))));
     }
 
+    @Test
+    public void testPatchCustomerInPlaceAmongOtherPreferences() throws Exception {
+        //given
+        CustomerDTO customer = new CustomerDTO();
+        customer.setFirstName(FIRST_NAME2);
+
+        when(customerService.patchCustomerInPlace(anyLong(), any(CustomerDTO.class))).thenReturn(4L);
+
+        //when/then
+        mockMvc.perform(patch(getCustomerUri(ID))
+                        .header(ApiHeaders.PREFER, "respond-async, RETURN = \"minimal\"; x=1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(customer)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(content().string(""));
+
+        verify(customerService, never()).patchCustomer(anyLong(), any(CustomerDTO.class));
+    }
+
+    @Test
+    public void testPatchCustomerPreferringRepresentation() throws Exception {
+        //given
+        CustomerDTO customer = new CustomerDTO();
+        customer.setFirstName(FIRST_NAME2);
+
+        when(customerService.patchCustomer(anyLong(), any(CustomerDTO.class)))
+                .thenReturn(new CustomerDTO(FIRST_NAME2, LAST_NAME, getCustomerUri(ID)));
+
+        //when/then
+        mockMvc.perform(patch(getCustomerUri(ID))
+                        .header(ApiHeaders.PREFER, "return=representation")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(customer)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiHeaders.PREFERENCE_APPLIED))
+                .andExpect(jsonPath("$.lastName", equalTo(LAST_NAME)));
+
+        verify(customerService, never()).patchCustomerInPlace(anyLong(), any(CustomerDTO.class));
+    }
+
     @Test
     public void testDeleteCustomer() throws Exception {
         mockMvc.perform(delete(getCustomerUri(ID)).contentType(MediaType.APPLICATION_JSON))
@@ -174,6 +360,15 @@ public class CustomerControllerTest extends AbstractRestControllerTest {
         verify(customerService).deleteCustomerByID(anyLong());
     }
 
+    @Test
+    public void testDeleteCustomersReturnsCount() throws Exception {
+        when(customerService.deleteCustomersByIDs(Arrays.asList(1L, 2L, 3L))).thenReturn(2);
+
+        mockMvc.perform(delete(CustomerController.BASE_URL).param("ids", "1,2,3"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.deleted", equalTo(2)));
+    }
+
     private String getCustomerUri(Long Id){
         return CustomerController.BASE_URL + Id;
     }
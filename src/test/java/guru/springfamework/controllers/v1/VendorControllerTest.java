@@ -1,30 +1,55 @@
 package guru.springfamework.controllers.v1;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentBodyConverter;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.model.VendorDTO;
-import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
 import guru.springfamework.controllers.RestResponseEntityExceptionHandler;
+import guru.springfamework.imports.NdjsonImporter;
+import guru.springfamework.services.PreconditionFailedException;
 import guru.springfamework.services.ResourceNotFoundException;
 import guru.springfamework.services.VendorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
 
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class VendorControllerTest extends AbstractRestControllerTest {
@@ -36,6 +61,15 @@ class VendorControllerTest extends AbstractRestControllerTest {
     @Mock
     VendorService vendorService;
 
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    JsonFragmentCache jsonFragmentCache = new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1));
+
+    @Spy
+    NdjsonImporter ndjsonImporter = new NdjsonImporter(new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), 10, 1, 1);
+
     @InjectMocks
     VendorController vendorController;
 
@@ -47,27 +81,119 @@ class VendorControllerTest extends AbstractRestControllerTest {
 
         mockMvc = MockMvcBuilders.standaloneSetup(vendorController)
                 .setControllerAdvice(new RestResponseEntityExceptionHandler())
+                                 .setMessageConverters(new JsonFragmentBodyConverter(), new MappingJackson2HttpMessageConverter())
                 .build();
     }
 
     @Test
     void testListVendors() throws Exception{
+        //given
+        givenExportedVendors();
+
+        //when
+        MvcResult result = mockMvc.perform(get(VendorController.BASE_URL)
+                                           .contentType(MediaType.APPLICATION_JSON))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(jsonPath("$.vendors", hasSize(2)))
+               .andExpect(jsonPath("$.vendors[1].name", equalTo(NAME2)));
+    }
+
+    @Test
+    void testListVendorsFailureLeavesListOpen() throws Exception{
+        //given
+        doAnswer(invocation -> {
+            Consumer<VendorDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new VendorDTO(NAME, getVendorUri(ID)));
+            throw new IllegalStateException("connection lost");
+        }).when(vendorService).exportVendors(any());
+
+        //when
+        MvcResult result = mockMvc.perform(get(VendorController.BASE_URL))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        result.getAsyncResult();
+
+        //then
+        assertEquals("{\"vendors\":[{\"name\":\"" + NAME + "\",\"vendor_url\":\"" + getVendorUri(ID) + "\"}",
+                result.getResponse().getContentAsString());
+    }
+
+    @Test
+    void testPageOfVendors() throws Exception{
         //given
         VendorDTO vendor1 = new VendorDTO();
         vendor1.setName(NAME);
         vendor1.setVendorUrl(getVendorUri(ID));
 
-        VendorDTO vendor2 = new VendorDTO();
-        vendor2.setName("Sam");
-        vendor2.setVendorUrl(getVendorUri(2L));
+        when(vendorService.findVendors(anyMap(), isNull(), eq("abc"), eq(1))).thenReturn(new VendorPageDTO(Arrays.asList(vendor1), "def"));
+
+        //when
+        mockMvc.perform(get(VendorController.BASE_URL)
+                        .param("limit", "1")
+                        .param("cursor", "abc")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.vendors", hasSize(1)))
+                .andExpect(jsonPath("$.next", equalTo("def")));
+    }
+
+    @Test
+    void testExportVendorsNdjson() throws Exception{
+        givenExportedVendors();
+
+        MvcResult result = mockMvc.perform(get(VendorController.BASE_URL + "export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"name\":\"" + NAME + "\",\"vendor_url\":\"" + getVendorUri(ID) + "\"}\n"
+                        + "{\"name\":\"" + NAME2 + "\",\"vendor_url\":\"" + getVendorUri(2L) + "\"}\n"));
+    }
+
+    @Test
+    void testExportVendorsCsv() throws Exception{
+        givenExportedVendors();
+
+        MvcResult result = mockMvc.perform(get(VendorController.BASE_URL + "export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("name,vendor_url\r\n"
+                        + NAME + "," + getVendorUri(ID) + "\r\n"
+                        + NAME2 + "," + getVendorUri(2L) + "\r\n"));
+    }
+
+    @Test
+    void testExportVendorsUnknownFormat() throws Exception{
+        mockMvc.perform(get(VendorController.BASE_URL + "export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetVendorsByIds() throws Exception{
+        //given
+        VendorDTO vendor1 = new VendorDTO(NAME, getVendorUri(ID));
 
-        when(vendorService.getAllVendors()).thenReturn(Arrays.asList(vendor1, vendor2));
-        ResultActions resultActions =
+        when(vendorService.getVendorsByIds(Arrays.asList(ID, 2L)))
+                .thenReturn(new VendorLookupDTO(Arrays.asList(vendor1), Arrays.asList(2L)));
+
+        //when
         mockMvc.perform(get(VendorController.BASE_URL)
-                        .contentType(MediaType.APPLICATION_JSON));
-        resultActions
+                        .param("ids", "1,2")
+                        .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.vendors", hasSize(2)));
+                .andExpect(jsonPath("$.vendors", hasSize(1)))
+                .andExpect(jsonPath("$.missing[0]", equalTo(2)));
     }
 
     @Test
@@ -96,6 +222,49 @@ class VendorControllerTest extends AbstractRestControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void testGetVendorByIdSendsETag() throws Exception{
+        //given
+        VendorDTO vendor1 = new VendorDTO(NAME, getVendorUri(ID));
+        vendor1.setVersion(3L);
+
+        when(vendorService.getVendorById(anyLong())).thenReturn(vendor1);
+
+        //when/then
+        mockMvc.perform(get(getVendorUri(ID)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void testGetVendorByIdNotModified() throws Exception{
+        //given
+        when(vendorService.getVendorVersion(anyLong())).thenReturn(3L);
+
+        //when/then
+        mockMvc.perform(get(getVendorUri(ID))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(vendorService, never()).getVendorById(anyLong());
+    }
+
+    @Test
+    void testGetVendorByIdNotModifiedByWeakTagInList() throws Exception{
+        //given
+        when(vendorService.getVendorVersion(anyLong())).thenReturn(3L);
+
+        //when/then
+        mockMvc.perform(get(getVendorUri(ID))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"2\", W/\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(vendorService, never()).getVendorById(anyLong());
+    }
+
     @Test
     void testCreateNewVendor() throws Exception{
         //given
@@ -117,6 +286,52 @@ class VendorControllerTest extends AbstractRestControllerTest {
                 .andExpect(jsonPath("$.vendor_url", equalTo(getVendorUri(ID))));
     }
 
+    @Test
+    void testCreateNewVendors() throws Exception{
+        //given
+        VendorDTO vendor = new VendorDTO();
+        vendor.setName(NAME2);
+
+        VendorDTO returnDTO = new VendorDTO(NAME2, getVendorUri(ID));
+
+        when(vendorService.createNewVendors(anyList())).thenReturn(Arrays.asList(returnDTO));
+
+        //when/then
+        mockMvc.perform(post(VendorController.BASE_URL + "batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(Arrays.asList(vendor))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.vendors", hasSize(1)))
+                .andExpect(jsonPath("$.vendors[0].vendor_url", equalTo(getVendorUri(ID))));
+    }
+
+    @Test
+    void testImportVendors() throws Exception{
+        //when
+        MvcResult result = mockMvc.perform(post(VendorController.BASE_URL + "import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"" + NAME + "\"}\n{\"name\":[]}\n{\"name\":\"" + NAME2 + "\"}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        //then
+        // the first line is the job as it starts, the last one the finished job
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        String jobId = objectMapper.readTree(lines[0]).get("id").asText();
+        assertEquals(HttpStatus.ACCEPTED.value(), result.getResponse().getStatus());
+        assertEquals(ImportController.BASE_URL + jobId, result.getResponse().getHeader(HttpHeaders.LOCATION));
+
+        JsonNode job = objectMapper.readTree(lines[lines.length - 1]);
+        assertEquals("completed", job.get("state").asText());
+        assertEquals(2, job.get("rowsImported").asInt());
+        assertEquals(1, job.get("rowsFailed").asInt());
+        assertEquals(2, job.get("errors").get(0).get("line").asInt());
+
+        verify(vendorService).importVendors(argThat(vendors -> vendors.size() == 2
+                && vendors.get(1).getName().equals(NAME2)));
+    }
+
     @Test
     void testUpdateVendor() throws Exception{
         //given
@@ -159,6 +374,88 @@ class VendorControllerTest extends AbstractRestControllerTest {
                 .andExpect(jsonPath("$.vendor_url", equalTo(getVendorUri(ID))));
     }
 
+    @Test
+    void testUpdateVendorIfMatch() throws Exception{
+        //given
+        VendorDTO returnDTO = new VendorDTO(NAME2, getVendorUri(ID));
+        returnDTO.setVersion(4L);
+
+        when(vendorService.saveVendorByDTO(anyLong(), argThat(dto -> Long.valueOf(3L).equals(dto.getVersion()))))
+                .thenReturn(returnDTO);
+
+        //when/then
+        mockMvc.perform(put(getVendorUri(ID))
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new VendorDTO(NAME2, null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void testPatchVendorStaleIfMatch() throws Exception{
+        //given
+        when(vendorService.patchVendor(anyLong(), any(VendorDTO.class))).thenThrow(PreconditionFailedException.class);
+
+        //when/then
+        mockMvc.perform(patch(getVendorUri(ID))
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new VendorDTO(NAME2, null))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testPatchVendorWeakIfMatch() throws Exception{
+        mockMvc.perform(patch(getVendorUri(ID))
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new VendorDTO(NAME2, null))))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(vendorService, never()).patchVendor(anyLong(), any(VendorDTO.class));
+    }
+
+    @Test
+    void testPatchVendorInPlace() throws Exception{
+        //given
+        VendorDTO vendor = new VendorDTO();
+        vendor.setName(NAME2);
+
+        when(vendorService.patchVendorInPlace(anyLong(), any(VendorDTO.class))).thenReturn(null);
+
+        //when/then
+        mockMvc.perform(patch(getVendorUri(ID))
+                        .header(ApiHeaders.PREFER, ApiHeaders.RETURN_MINIMAL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(vendor)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL))
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(content().string(""));
+
+        verify(vendorService, never()).patchVendor(anyLong(), any(VendorDTO.class));
+    }
+
+    @Test
+    void testPatchVendorInPlaceFromSecondPreferHeader() throws Exception{
+        //given
+        when(vendorService.patchVendorInPlace(anyLong(), any(VendorDTO.class))).thenReturn(4L);
+
+        //when/then
+        mockMvc.perform(patch(getVendorUri(ID))
+                        .header(ApiHeaders.PREFER, "respond-async")
+                        .header(ApiHeaders.PREFER, "return=minimal")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new VendorDTO(NAME2, null))))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(ApiHeaders.PREFERENCE_APPLIED, ApiHeaders.RETURN_MINIMAL))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+
+        verify(vendorService, never()).patchVendor(anyLong(), any(VendorDTO.class));
+    }
+
     @Test
     void deleteVendor() throws Exception{
         mockMvc.perform(delete(getVendorUri(ID)).contentType(MediaType.APPLICATION_JSON))
@@ -167,6 +464,29 @@ class VendorControllerTest extends AbstractRestControllerTest {
         verify(vendorService).deleteVendorByID(anyLong());
     }
 
+    @Test
+    void deleteVendors() throws Exception{
+        when(vendorService.deleteVendorsByIDs(Arrays.asList(1L, 2L))).thenReturn(1);
+
+        mockMvc.perform(delete(VendorController.BASE_URL).param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", equalTo(1)));
+
+        verify(vendorService).deleteVendorsByIDs(Arrays.asList(1L, 2L));
+    }
+
+    private void givenExportedVendors() {
+        VendorDTO vendor1 = new VendorDTO(NAME, getVendorUri(ID));
+        VendorDTO vendor2 = new VendorDTO(NAME2, getVendorUri(2L));
+
+        doAnswer(invocation -> {
+            Consumer<VendorDTO> consumer = invocation.getArgument(0);
+            consumer.accept(vendor1);
+            consumer.accept(vendor2);
+            return null;
+        }).when(vendorService).exportVendors(any());
+    }
+
     private String getVendorUri(long id) {
         return VendorController.BASE_URL + id;
     }
@@ -0,0 +1,261 @@
+package guru.springfamework.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.services.ResourceNotFoundException;
+import guru.springfamework.services.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonImporterTest {
+
+    NdjsonImporter ndjsonImporter;
+    List<List<String>> written = new ArrayList<>();
+    ByteArrayOutputStream progress = new ByteArrayOutputStream();
+
+    @AfterEach
+    void tearDown() {
+        ndjsonImporter.destroy();
+    }
+
+    @Test
+    void writesRowsInBatches() {
+        //given
+        ndjsonImporter = importer(2, 1);
+
+        //when
+        ImportJob job = importRows(body("{\"name\":\"a\"}\n{\"name\":\"b\"}\n{\"name\":\"c\"}\n"),
+                VendorDTO.class, this::write);
+
+        //then
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")), written);
+        assertEquals(3, job.getRowsRead());
+        assertEquals(3, job.getRowsImported());
+        assertNull(job.getFailure());
+        assertSame(job, ndjsonImporter.getJob(job.getId()));
+    }
+
+    @Test
+    void rowsThatDoNotMapAreReportedAndSkipped() {
+        //given
+        ndjsonImporter = importer(10, 1);
+
+        //when
+        ImportJob job = importRows(body("{\"name\":\"a\"}\n{\"name\":{}}\nnull\n{\"name\":\"b\"}\n"),
+                VendorDTO.class, this::write);
+
+        //then
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b")), written);
+        assertEquals(4, job.getRowsRead());
+        assertEquals(2, job.getRowsFailed());
+        assertEquals(Arrays.asList(2L, 3L),
+                job.getErrors().stream().map(ImportJob.RowError::getLine).collect(Collectors.toList()));
+    }
+
+    @Test
+    void onlyTheFirstErrorsAreKept() {
+        //given
+        ndjsonImporter = importer(10, 1);
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < ImportJob.MAX_REPORTED_ERRORS * 2; i++) {
+            rows.append("{\"name\":[]}\n");
+        }
+
+        //when
+        ImportJob job = importRows(body(rows.toString()), VendorDTO.class, this::write);
+
+        //then
+        assertEquals(ImportJob.MAX_REPORTED_ERRORS * 2, job.getRowsFailed());
+        assertEquals(ImportJob.MAX_REPORTED_ERRORS, job.getErrors().size());
+    }
+
+    @Test
+    void bodyThatIsNotJsonStopsTheImportAfterWritingTheRowsBefore() {
+        //given
+        ndjsonImporter = importer(10, 1);
+
+        //when
+        ImportJob job = importRows(body("{\"name\":\"a\"}\n{\"name\": oops}\n{\"name\":\"b\"}\n"),
+                VendorDTO.class, this::write);
+
+        //then
+        assertEquals(ImportJob.State.FAILED, job.getState());
+        assertTrue(job.getFailure().startsWith("Line 2 is not JSON"), job.getFailure());
+        assertEquals(Arrays.asList(Arrays.asList("a")), written);
+        assertEquals(1, job.getRowsImported());
+    }
+
+    @Test
+    void rowsTheDatabaseRejectsAreReportedAndTheRestWritten() {
+        //given
+        ndjsonImporter = importer(10, 1);
+
+        //when
+        ImportJob job = importRows(body("{\"name\":\"a\"}\n{\"name\":\"bad\"}\n{\"name\":\"b\"}\n"),
+                VendorDTO.class, batch -> {
+                    if (batch.stream().anyMatch(vendor -> vendor.getName().equals("bad"))) {
+                        throw new DataIntegrityViolationException("Value too long");
+                    }
+                    write(batch);
+                });
+
+        //then
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), written);
+        assertEquals(2, job.getRowsImported());
+        assertEquals(1, job.getRowsFailed());
+        assertEquals(2L, job.getErrors().get(0).getLine());
+        assertEquals("Value too long", job.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void progressIsReportedFromTheStart() throws Exception {
+        //given
+        ndjsonImporter = importer(2, 1);
+
+        //when
+        ImportJob job = importRows(body("{\"name\":\"a\"}\n{\"name\":\"b\"}\n{\"name\":\"c\"}\n"),
+                VendorDTO.class, this::write);
+
+        //then
+        // at the start, after the first full batch, and at the end
+        String[] lines = progress.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(3, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(job.getId(), objectMapper.readTree(lines[0]).get("id").asText());
+        assertEquals("running", objectMapper.readTree(lines[0]).get("state").asText());
+        assertEquals(2, objectMapper.readTree(lines[1]).get("rowsRead").asInt());
+        assertEquals("completed", objectMapper.readTree(lines[2]).get("state").asText());
+        assertEquals(3, objectMapper.readTree(lines[2]).get("rowsImported").asInt());
+    }
+
+    @Test
+    void failingWriterStopsTheImport() {
+        //given
+        ndjsonImporter = importer(1, 1);
+
+        //when
+        ImportJob job = importRows(endlessBody(), VendorDTO.class, batch -> {
+            throw new IllegalStateException("Database is gone");
+        });
+
+        //then
+        assertEquals(ImportJob.State.FAILED, job.getState());
+        assertEquals("Writing failed: Database is gone", job.getFailure());
+        assertEquals(0, job.getRowsImported());
+    }
+
+    @Test
+    void slowWriterStopsTheParser() throws Exception {
+        //given
+        ndjsonImporter = importer(1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        //when
+        ExecutorService request = Executors.newSingleThreadExecutor();
+        Future<ImportJob> job = request.submit(() -> importRows(endlessBody(),
+                VendorDTO.class, batch -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("stop");
+                }));
+        Thread.sleep(200);
+
+        //then
+        // one batch is being written, two wait in the queue and one is waiting for room
+        long rowsRead = ndjsonImporter.getJobs().get(0).getRowsRead();
+        assertTrue(rowsRead <= 4, "Parser read " + rowsRead + " rows ahead");
+        release.countDown();
+        assertEquals(ImportJob.State.FAILED, job.get(5, TimeUnit.SECONDS).getState());
+        request.shutdown();
+    }
+
+    @Test
+    void importsBeyondTheLimitAreRejected() throws Exception {
+        //given
+        ndjsonImporter = importer(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService request = Executors.newSingleThreadExecutor();
+        Future<ImportJob> running = request.submit(() -> importRows(body("{\"name\":\"a\"}\n"),
+                VendorDTO.class, batch -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        Thread.sleep(100);
+
+        //when/then
+        assertThrows(ServiceUnavailableException.class, () -> ndjsonImporter.start("vendors"));
+        release.countDown();
+        assertEquals(ImportJob.State.COMPLETED, running.get(5, TimeUnit.SECONDS).getState());
+        request.shutdown();
+    }
+
+    @Test
+    void unknownJobIsNotFound() {
+        ndjsonImporter = importer(1, 1);
+
+        assertThrows(ResourceNotFoundException.class, () -> ndjsonImporter.getJob("nope"));
+    }
+
+    private NdjsonImporter importer(int batchSize, int queueCapacity) {
+        return new NdjsonImporter(new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), batchSize,
+                queueCapacity, 1);
+    }
+
+    private <T> ImportJob importRows(InputStream body, Class<T> type, Consumer<List<T>> batchWriter) {
+        ImportJob job = ndjsonImporter.start("vendors");
+        ndjsonImporter.importRows(job, body, type, batchWriter, progress);
+        return job;
+    }
+
+    private void write(List<VendorDTO> batch) {
+        written.add(batch.stream().map(VendorDTO::getName).collect(Collectors.toList()));
+    }
+
+    private static InputStream body(String rows) {
+        return new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream endlessBody() {
+        byte[] row = "{\"name\":\"a\"}\n".getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                return row[(int) (position++ % row.length)];
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package guru.springfamework.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentBodyConverter;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.imports.NdjsonImporter;
+import guru.springfamework.services.CustomerService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AllocationFilterTest {
+
+    @Mock
+    CustomerService customerService;
+
+    @Mock
+    NdjsonImporter ndjsonImporter;
+
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(customerService.findCustomers(anyMap(), isNull(), isNull(), eq(10))).thenReturn(new CustomerPageDTO(Collections.emptyList(), null));
+    }
+
+    @Test
+    void recordsAllocationsByHandler() throws Exception {
+        //given
+        MockMvc mockMvc = mockMvc(new AllocationRecorder(meterRegistry, true));
+
+        //when
+        mockMvc.perform(get(CustomerController.BASE_URL).param("limit", "10")).andExpect(status().isOk());
+        mockMvc.perform(get(CustomerController.BASE_URL).param("limit", "10")).andExpect(status().isOk());
+
+        //then
+        DistributionSummary summary = meterRegistry.find(AllocationRecorder.ALLOCATED_SUMMARY)
+                                                   .tags("handler", "CustomerController.getPageOfCustomers",
+                                                           "async", "false")
+                                                   .summary();
+        assertNotNull(summary);
+        assertEquals(2, summary.count());
+        assertTrue(summary.totalAmount() > 0);
+
+        Map<String, Object> stats = new AllocationsEndpoint(meterRegistry).allocations()
+                                                                          .get("CustomerController.getPageOfCustomers");
+        assertEquals(2L, stats.get("requests"));
+        assertTrue(stats.containsKey("p99Bytes"));
+    }
+
+    @Test
+    void disabledRecorderRecordsNothing() throws Exception {
+        //given
+        MockMvc mockMvc = mockMvc(new AllocationRecorder(meterRegistry, false));
+
+        //when
+        mockMvc.perform(get(CustomerController.BASE_URL).param("limit", "10")).andExpect(status().isOk());
+
+        //then
+        assertNull(meterRegistry.find(AllocationRecorder.ALLOCATED_SUMMARY).summary());
+    }
+
+    private MockMvc mockMvc(AllocationRecorder allocationRecorder) {
+        return MockMvcBuilders.standaloneSetup(new CustomerController(customerService, new ObjectMapper(),
+                                      new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), ndjsonImporter))
+                              .setMessageConverters(new JsonFragmentBodyConverter(), new MappingJackson2HttpMessageConverter())
+                              .addFilters(new AllocationFilter(allocationRecorder))
+                              .build();
+    }
+}
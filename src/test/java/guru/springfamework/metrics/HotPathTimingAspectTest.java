@@ -0,0 +1,68 @@
+package guru.springfamework.metrics;
+
+import guru.springfamework.services.CategoryService;
+import guru.springfamework.services.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+class HotPathTimingAspectTest {
+
+    @Mock
+    CategoryService categoryService;
+
+    MeterRegistry meterRegistry;
+
+    CategoryService timedService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(categoryService);
+        proxyFactory.addInterface(CategoryService.class);
+        proxyFactory.addAspect(new HotPathTimingAspect(meterRegistry));
+        timedService = proxyFactory.getProxy();
+    }
+
+    @Test
+    void timesServiceCalls() {
+        //when
+        timedService.getAllCategories();
+        timedService.getAllCategories();
+
+        //then
+        Timer timer = meterRegistry.find(HotPathTimingAspect.SERVICE_TIMER)
+                                   .tags("class", "CategoryService", "method", "getAllCategories", "exception", "none")
+                                   .timer();
+        assertNotNull(timer);
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    void tagsFailedCallsWithTheException() {
+        //given
+        when(categoryService.getCategoryByName("Fruits")).thenThrow(new ResourceNotFoundException());
+
+        //when
+        assertThrows(ResourceNotFoundException.class, () -> timedService.getCategoryByName("Fruits"));
+
+        //then
+        Timer timer = meterRegistry.find(HotPathTimingAspect.SERVICE_TIMER)
+                                   .tags("method", "getCategoryByName", "exception", "ResourceNotFoundException")
+                                   .timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+}
@@ -0,0 +1,80 @@
+package guru.springfamework.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestTimingsTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestTimings.end();
+    }
+
+    @Test
+    void nestedCallsOfAPhaseCountOnce() {
+        //given
+        RequestTimings timings = RequestTimings.begin();
+
+        //when
+        timings.start(RequestTimings.Phase.SERVICE);
+        timings.start(RequestTimings.Phase.SERVICE);
+        timings.stop(RequestTimings.Phase.SERVICE);
+        timings.stop(RequestTimings.Phase.SERVICE);
+        timings.start(RequestTimings.Phase.REPOSITORY);
+        timings.stop(RequestTimings.Phase.REPOSITORY);
+        timings.start(RequestTimings.Phase.REPOSITORY);
+        timings.stop(RequestTimings.Phase.REPOSITORY);
+
+        //then
+        assertEquals(1, timings.getCalls(RequestTimings.Phase.SERVICE));
+        assertEquals(2, timings.getCalls(RequestTimings.Phase.REPOSITORY));
+        assertTrue(timings.getNanos(RequestTimings.Phase.SERVICE) > 0);
+    }
+
+    @Test
+    void serverTimingListsOnlyPhasesThatRan() {
+        //given
+        RequestTimings timings = RequestTimings.begin();
+        timings.start(RequestTimings.Phase.REPOSITORY);
+        timings.statementExecuted(1_000_000);
+        timings.statementExecuted(500_000);
+        timings.stop(RequestTimings.Phase.REPOSITORY);
+        timings.start(RequestTimings.Phase.WRITE);
+
+        //when
+        String header = timings.toServerTiming();
+
+        //then
+        assertTrue(header.matches("repo;dur=\\d+\\.\\d\\d;desc=\"calls=1\", sql;dur=1.50;desc=\"statements=2\""), header);
+    }
+
+    @Test
+    void sqlIsListedWithoutRepositoryCalls() {
+        //given
+        RequestTimings timings = RequestTimings.begin();
+        timings.start(RequestTimings.Phase.SERVICE);
+        timings.statementExecuted(2_000_000);
+        timings.stop(RequestTimings.Phase.SERVICE);
+
+        //when
+        String header = timings.toServerTiming();
+
+        //then
+        assertTrue(header.matches("service;dur=\\d+\\.\\d\\d, sql;dur=2.00;desc=\"statements=1\""), header);
+    }
+
+    @Test
+    void currentIsClearedAtTheEnd() {
+        RequestTimings timings = RequestTimings.begin();
+        assertSame(timings, RequestTimings.current());
+
+        RequestTimings.end();
+
+        assertNull(RequestTimings.current());
+    }
+}
@@ -0,0 +1,119 @@
+package guru.springfamework.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentBodyConverter;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.imports.NdjsonImporter;
+import guru.springfamework.services.CustomerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ServerTimingFilterTest {
+
+    @Mock
+    CustomerService customerService;
+
+    @Mock
+    NdjsonImporter ndjsonImporter;
+
+    CustomerController customerController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(customerService);
+        proxyFactory.addInterface(CustomerService.class);
+        proxyFactory.addAspect(new HotPathTimingAspect(new SimpleMeterRegistry()));
+        customerController = new CustomerController(proxyFactory.getProxy(), new ObjectMapper(),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), ndjsonImporter);
+
+        CustomerDTO customer = new CustomerDTO();
+        customer.setFirstName("Fred");
+        when(customerService.saveCustomerByDTO(anyLong(), any(CustomerDTO.class))).thenReturn(customer);
+        when(customerService.getCustomerById(anyLong())).thenReturn(customer);
+    }
+
+    @Test
+    void requestAskingForServerTimingGetsHeader() throws Exception {
+        MockMvc mockMvc = mockMvc(new ServerTimingFilter(true, false, 0.0));
+
+        mockMvc.perform(put(CustomerController.BASE_URL + "1")
+                        .header(ServerTimingFilter.REQUEST_HEADER, "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Fred\"}"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(ServerTimingFilter.SERVER_TIMING,
+                       allOf(startsWith("parse;dur="), containsString(", service;dur="))));
+    }
+
+    @Test
+    void alwaysGivesEveryResponseTheHeader() throws Exception {
+        MockMvc mockMvc = mockMvc(new ServerTimingFilter(true, true, 0.0));
+
+        mockMvc.perform(get(CustomerController.BASE_URL + "1"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(ServerTimingFilter.SERVER_TIMING, startsWith("service;dur=")));
+    }
+
+    @Test
+    void sampledRequestIsOnlyLogged() throws Exception {
+        MockMvc mockMvc = mockMvc(new ServerTimingFilter(true, false, 1.0));
+
+        mockMvc.perform(get(CustomerController.BASE_URL + "1"))
+               .andExpect(status().isOk())
+               .andExpect(header().doesNotExist(ServerTimingFilter.SERVER_TIMING));
+        assertNull(RequestTimings.current());
+    }
+
+    @Test
+    void untimedRequestHasNoHeader() throws Exception {
+        MockMvc mockMvc = mockMvc(new ServerTimingFilter(true, false, 0.0));
+
+        mockMvc.perform(get(CustomerController.BASE_URL + "1"))
+               .andExpect(status().isOk())
+               .andExpect(header().doesNotExist(ServerTimingFilter.SERVER_TIMING));
+    }
+
+    @Test
+    void disabledFilterTimesNothing() throws Exception {
+        MockMvc mockMvc = mockMvc(new ServerTimingFilter(false, true, 1.0));
+
+        mockMvc.perform(get(CustomerController.BASE_URL + "1")
+                        .header(ServerTimingFilter.REQUEST_HEADER, "true"))
+               .andExpect(status().isOk())
+               .andExpect(header().doesNotExist(ServerTimingFilter.SERVER_TIMING));
+        assertNull(RequestTimings.current());
+    }
+
+    private MockMvc mockMvc(ServerTimingFilter filter) {
+        return MockMvcBuilders.standaloneSetup(customerController)
+                              .setControllerAdvice(new ServerTimingAdvice())
+                              .setMessageConverters(new JsonFragmentBodyConverter(), new MappingJackson2HttpMessageConverter())
+                              .addFilters(filter)
+                              .build();
+    }
+}
@@ -0,0 +1,75 @@
+package guru.springfamework.metrics;
+
+import guru.springfamework.controllers.v1.CustomerController;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs on a real server in async mode, so handlers run on the domain executors and streamed bodies on the task
+ * executor, and checks their statements are counted for the request.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.async.enabled=true")
+class StatementBudgetFilterTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void streamedListIsCountedUnderTheBudget() throws Exception {
+        //when
+        ResponseEntity<String> response = restTemplate.getForEntity(CustomerController.BASE_URL, String.class);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        DistributionSummary statements = awaitStatements(CustomerController.BASE_URL);
+        assertEquals(1, statements.count());
+        assertTrue(statements.totalAmount() > 0, "the SELECT run while the body streams is counted");
+        assertNull(meterRegistry.find(StatementBudgetFilter.BUDGET_EXCEEDED_COUNTER).counter());
+    }
+
+    @Test
+    void handlerOnTheDomainExecutorIsCounted() throws Exception {
+        //when
+        ResponseEntity<String> response = restTemplate.getForEntity(CustomerController.BASE_URL + "1", String.class);
+
+        //then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        DistributionSummary statements = awaitStatements(CustomerController.BASE_URL + "{id}");
+        assertEquals(1, statements.count());
+        assertTrue(statements.totalAmount() > 0, "the SELECT run on the customers executor is counted");
+    }
+
+    /**
+     * An async request is recorded when it completes, which can be just after the client has read the response.
+     */
+    private DistributionSummary awaitStatements(String uri) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            DistributionSummary summary = meterRegistry.find(StatementBudgetFilter.STATEMENTS_SUMMARY)
+                                                       .tags("method", "GET", "uri", uri)
+                                                       .summary();
+            if (summary != null && summary.count() > 0) {
+                return summary;
+            }
+            Thread.sleep(100);
+        }
+        DistributionSummary summary = meterRegistry.find(StatementBudgetFilter.STATEMENTS_SUMMARY)
+                                                   .tags("method", "GET", "uri", uri)
+                                                   .summary();
+        assertNotNull(summary, "no statements recorded for " + uri);
+        return summary;
+    }
+}
@@ -1,19 +1,25 @@
 package guru.springfamework.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springfamework.api.v1.mapper.CategoryMapper;
 import guru.springfamework.api.v1.model.CategoryDTO;
 import guru.springfamework.domain.Category;
 import guru.springfamework.repositories.CategoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CategoryServiceTest {
@@ -30,7 +36,9 @@ public class CategoryServiceTest {
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
 
-        categoryService = new CategoryServiceImpl(CategoryMapper.INSTANCE, categoryRepository);
+        categoryService = new CategoryServiceImpl(
+                new CategoryCatalog(CategoryMapper.INSTANCE, categoryRepository, new ObjectMapper(),
+                        new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()), event -> { }));
     }
 
     @Test
@@ -57,7 +65,7 @@ public class CategoryServiceTest {
         category.setId(ID);
         category.setName(NAME);
 
-        when(categoryRepository.findByName(anyString())).thenReturn(category);
+        when(categoryRepository.findAll()).thenReturn(Arrays.asList(category));
 
         //when
         CategoryDTO categoryDTO = categoryService.getCategoryByName(NAME);
@@ -68,4 +76,31 @@ public class CategoryServiceTest {
 
     }
 
+    @Test(expected = ResourceNotFoundException.class)
+    public void getCategoryByNameNotFound() throws Exception {
+        when(categoryRepository.findAll()).thenReturn(Arrays.asList(new Category()));
+
+        categoryService.getCategoryByName(NAME);
+    }
+
+    @Test
+    public void categoriesAreLoadedOnce() throws Exception {
+
+        //given
+        Category category = new Category();
+        category.setName(NAME);
+
+        when(categoryRepository.findAll()).thenReturn(Arrays.asList(category));
+
+        //when
+        categoryService.getAllCategories();
+        categoryService.getCategoryByName(NAME);
+        categoryService.getAllCategoriesBody();
+        categoryService.getCategoryBodyByName(NAME);
+
+        //then
+        verify(categoryRepository, times(1)).findAll();
+        verify(categoryRepository, never()).findByName(anyString());
+    }
+
 }
\ No newline at end of file
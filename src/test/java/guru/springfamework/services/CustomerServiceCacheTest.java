@@ -0,0 +1,215 @@
+package guru.springfamework.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.config.CacheConfig;
+import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.CustomerView;
+import guru.springfamework.repositories.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = CustomerServiceCacheTest.Config.class)
+class CustomerServiceCacheTest {
+
+    public static final long ID = 1L;
+
+    @Configuration
+    @Import({CacheConfig.class, CustomerServiceImpl.class, RequestCoalescer.class, JsonFragmentCache.class})
+    @ImportAutoConfiguration(CacheAutoConfiguration.class)
+    static class Config {
+
+        @Bean
+        CustomerMapper customerMapper() {
+            return CustomerMapper.INSTANCE;
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockBean
+    CustomerRepository customerRepository;
+
+    @MockBean
+    Tombstones tombstones;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.CUSTOMERS_CACHE).clear();
+
+        Customer customer = new Customer();
+        customer.setId(ID);
+        customer.setFirstName("Michale");
+        when(customerRepository.findById(ID)).thenReturn(Optional.of(customer));
+        when(customerRepository.findViewById(ID)).thenReturn(Optional.of(new CustomerView(ID, 0L, "Michale", null)));
+        when(customerRepository.save(any(Customer.class))).thenReturn(customer);
+    }
+
+    @Test
+    void getCustomerByIdIsCached() throws Exception {
+        //given
+        // the statistics are kept across clears, so other tests' hits count too
+        long hits = nativeCache().stats().hitCount();
+
+        //when
+        customerService.getCustomerById(ID);
+        CustomerDTO customerDTO = customerService.getCustomerById(ID);
+
+        //then
+        assertEquals("Michale", customerDTO.getFirstName());
+        verify(customerRepository, times(1)).findViewById(ID);
+        assertEquals(hits + 1, nativeCache().stats().hitCount());
+    }
+
+    @Test
+    void patchCustomerEvicts() throws Exception {
+        //given
+        customerService.getCustomerById(ID);
+
+        //when
+        customerService.patchCustomer(ID, new CustomerDTO());
+        customerService.getCustomerById(ID);
+
+        //then
+        // the read after the patch misses the cache and queries again
+        verify(customerRepository, times(2)).findViewById(ID);
+        verify(customerRepository, times(1)).findById(ID);
+    }
+
+    @Test
+    void getCustomerVersionReadsTheCachedCustomer() throws Exception {
+        //given
+        customerService.getCustomerById(ID);
+
+        //when
+        Long version = customerService.getCustomerVersion(ID);
+
+        //then
+        assertEquals(Long.valueOf(0L), version);
+        verify(customerRepository, never()).findVersionById(ID);
+    }
+
+    @Test
+    void getCustomerVersionQueriesOnAMiss() throws Exception {
+        //given
+        when(customerRepository.findVersionById(ID)).thenReturn(Optional.of(3L));
+
+        //when
+        Long version = customerService.getCustomerVersion(ID);
+
+        //then
+        assertEquals(Long.valueOf(3L), version);
+        verify(customerRepository, times(1)).findVersionById(ID);
+    }
+
+    @Test
+    void deleteCustomerEvicts() throws Exception {
+        //given
+        customerService.getCustomerById(ID);
+        when(customerRepository.purgeById(ID)).thenReturn(1);
+
+        //when
+        customerService.deleteCustomerByID(ID);
+        when(customerRepository.findViewById(ID)).thenReturn(Optional.empty());
+
+        //then
+        assertThrows(ResourceNotFoundException.class, () -> customerService.getCustomerById(ID));
+    }
+
+    @Test
+    void deleteCustomersEvictsAll() throws Exception {
+        //given
+        customerService.getCustomerById(ID);
+        when(customerRepository.lockExistingIds(any())).thenReturn(Arrays.asList(ID));
+        when(customerRepository.purgeAllByIdIn(any())).thenReturn(1);
+
+        //when
+        customerService.deleteCustomersByIDs(Arrays.asList(ID));
+
+        //then
+        assertEquals(0, nativeCache().estimatedSize());
+    }
+
+    @Test
+    void lookupRacingAPatchDoesNotCacheTheOldRow() throws Exception {
+        //given
+        AtomicReference<CustomerView> row = new AtomicReference<>(new CustomerView(ID, 0L, "Michale", null));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerRepository.findViewById(ID)).thenAnswer(invocation -> {
+            CustomerView read = row.get();
+            if (loading.getCount() > 0) {
+                loading.countDown();
+                release.await();
+            }
+            return Optional.of(read);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<CustomerDTO> lookup = executor.submit(() -> customerService.getCustomerById(ID));
+        loading.await();
+
+        //when
+        // the lookup has read the old row; the patch commits and evicts before the lookup puts it
+        CustomerDTO patch = new CustomerDTO();
+        patch.setFirstName("Fred");
+        customerService.patchCustomer(ID, patch);
+        row.set(new CustomerView(ID, 1L, "Fred", null));
+        release.countDown();
+
+        //then
+        assertEquals("Michale", lookup.get(5, TimeUnit.SECONDS).getFirstName());
+        assertEquals("Fred", customerService.getCustomerById(ID).getFirstName());
+        executor.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cacheManager.getCache(CacheConfig.CUSTOMERS_CACHE)).getNativeCache();
+    }
+}
@@ -1,27 +1,42 @@
 package guru.springfamework.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
 import guru.springfamework.bootstrap.Bootstrap;
 import guru.springfamework.domain.Customer;
 import guru.springfamework.repositories.CategoryRepository;
 import guru.springfamework.repositories.CustomerRepository;
+import guru.springfamework.repositories.TombstoneRepository;
 import guru.springfamework.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -33,6 +48,8 @@ class CustomerServiceIT {
     CategoryRepository categoryRepository;
     @Autowired
     VendorRepository vendorRepository;
+    @Autowired
+    TombstoneRepository tombstoneRepository;
     CustomerService customerService;
 
 
@@ -41,7 +58,10 @@ class CustomerServiceIT {
         Bootstrap bootstrap = new Bootstrap(categoryRepository, customerRepository, vendorRepository);
         bootstrap.run();
 
-        customerService = new CustomerServiceImpl(CustomerMapper.INSTANCE, customerRepository);
+        customerService = new CustomerServiceImpl(CustomerMapper.INSTANCE, customerRepository,
+                new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), event -> { },
+                new Tombstones(tombstoneRepository, Duration.ofDays(30)), new ConcurrentMapCacheManager());
     }
 
     @Test
@@ -93,6 +113,132 @@ class CustomerServiceIT {
         assertThat(originalLastName, not(equalTo(updatedCustomer.getLastName())));
     }
 
+    @Test
+    public void patchCustomerInPlaceKeepsOtherFields() throws Exception {
+        String updatedName = "UpdatedName";
+        long id = getCustomerToIdValue();
+
+        String originalLastName = customerRepository.findById(id).get().getLastName();
+
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName(updatedName);
+
+        // without a version to check the new one is not known
+        assertNull(customerService.patchCustomerInPlace(id, customerDTO));
+
+        Customer updatedCustomer = customerRepository.findById(id).get();
+
+        assertEquals(updatedName, updatedCustomer.getFirstName());
+        assertEquals(originalLastName, updatedCustomer.getLastName());
+    }
+
+    @Test
+    public void patchCustomerInPlaceUnknownId() throws Exception {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName("UpdatedName");
+
+        assertThrows(ResourceNotFoundException.class, () -> customerService.patchCustomerInPlace(Long.MAX_VALUE, customerDTO));
+    }
+
+    @Test
+    public void patchCustomerInPlaceBumpsVersion() throws Exception {
+        long id = getCustomerToIdValue();
+        Long version = customerService.getCustomerVersion(id);
+
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName("UpdatedName");
+        customerDTO.setVersion(version);
+
+        assertEquals(Long.valueOf(version + 1), customerService.patchCustomerInPlace(id, customerDTO));
+        assertEquals(Long.valueOf(version + 1), customerService.getCustomerVersion(id));
+
+        // the same If-Match again is now stale
+        assertThrows(PreconditionFailedException.class, () -> customerService.patchCustomerInPlace(id, customerDTO));
+    }
+
+    @Test
+    public void deleteCustomersByIds() throws Exception {
+        long id = getCustomerToIdValue();
+        long countBefore = customerRepository.count();
+
+        assertEquals(1, customerService.deleteCustomersByIDs(Arrays.asList(id, Long.MAX_VALUE)));
+        assertEquals(countBefore - 1, customerRepository.count());
+        assertThrows(ResourceNotFoundException.class, () -> customerService.deleteCustomerByID(id));
+    }
+
+    @Test
+    public void changedSinceReturnsOnlyChangedAndDeletedCustomers() throws Exception {
+        List<Customer> customers = customerRepository.findAll();
+        long patchedId = customers.get(0).getId();
+        long deletedId = customers.get(1).getId();
+
+        // tokens have millisecond precision, so keep the bootstrap rows and the changes apart
+        Thread.sleep(2);
+        String token = SyncToken.next(null, Instant.now().plus(SyncToken.COMMIT_LAG));
+        Thread.sleep(2);
+
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName("UpdatedName");
+        customerService.patchCustomerInPlace(patchedId, customerDTO);
+        customerService.deleteCustomerByID(deletedId);
+
+        CustomerChangesDTO changes = customerService.getCustomersChangedSince(token);
+
+        assertEquals(1, changes.getCustomers().size());
+        assertEquals("UpdatedName", changes.getCustomers().get(0).getFirstName());
+        assertEquals(Arrays.asList(deletedId), changes.getDeleted());
+        assertEquals(customers.size() - 1, customerService.getCustomersChangedSince("").getCustomers().size());
+    }
+
+    @Test
+    public void findCustomersPagesThroughFilteredSortedResultsWithTiesAndNulls() throws Exception {
+        for (String firstName : Arrays.asList("Bo", null, "Al", "Bo", "Cy")) {
+            Customer customer = new Customer();
+            customer.setFirstName(firstName);
+            customer.setLastName("Zed");
+            customerRepository.save(customer);
+        }
+        Customer other = new Customer();
+        other.setFirstName("Bo");
+        other.setLastName("Other");
+        customerRepository.save(other);
+
+        assertEquals(Arrays.asList("Cy", "Bo", "Bo", "Al", null), zedFirstNamesOfAllPages(null, "-firstName"));
+        assertEquals(Arrays.asList(null, "Al", "Bo", "Bo", "Cy"), zedFirstNamesOfAllPages(null, "firstName"));
+        assertEquals(Arrays.asList("Bo", "Bo", "Al"), zedFirstNamesOfAllPages("in:Bo,Al", "-firstName"));
+        assertEquals(Arrays.asList("Bo", "Bo"), zedFirstNamesOfAllPages("prefix:B", "firstName"));
+        assertEquals(2, zedFirstNamesOfAllPages("Bo", "-id").size());
+    }
+
+    @Test
+    public void findCustomersRejectsFilterSortedByAnotherField() throws Exception {
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.singletonMap("lastName", "prefix:Ze"), "-firstName", null, 10));
+    }
+
+    @Test
+    public void findCustomersRejectsUnsupportedSortKey() throws Exception {
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.emptyMap(), "customerURL", null, 10));
+    }
+
+    /**
+     * The first names of the Zed customers among all pages; a filter can only be on the sort field, so the other
+     * customers are left out here.
+     */
+    private List<String> zedFirstNamesOfAllPages(String firstName, String sort) {
+        List<String> firstNames = new ArrayList<>();
+        String cursor = null;
+        do {
+            CustomerPageDTO page = customerService.findCustomers(Collections.singletonMap("firstName", firstName), sort, cursor, 2);
+            page.getCustomers().stream()
+                .filter(customer -> "Zed".equals(customer.getLastName()))
+                .forEach(customer -> firstNames.add(customer.getFirstName()));
+            cursor = page.getNext();
+        } while (cursor != null);
+        return firstNames;
+    }
+
     private Long getCustomerToIdValue(){
         List<Customer> customers = customerRepository.findAll();
 
@@ -0,0 +1,233 @@
+package guru.springfamework.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.CacheConfig;
+import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.Tombstone;
+import guru.springfamework.metrics.SqlStatementCounter;
+import guru.springfamework.metrics.StatementCountingDataSourcePostProcessor;
+import guru.springfamework.repositories.CustomerRepository;
+import guru.springfamework.repositories.TombstoneRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The exact number of SQL statements every operation sends to the database. Each test runs like a request:
+ * without a surrounding transaction and with one entity manager for the whole call, as open-in-view provides.
+ */
+@DataJpaTest
+@Import(StatementCountingDataSourcePostProcessor.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerServiceStatementCountTest {
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    CustomerService customerService;
+
+    CacheManager cacheManager;
+
+    EntityManagerHolder entityManagerHolder;
+
+    Long id;
+
+    Long otherId;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager();
+        customerService = new CustomerServiceImpl(CustomerMapper.INSTANCE, customerRepository,
+                new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), event -> { },
+                new Tombstones(tombstoneRepository, Duration.ofDays(30)), cacheManager);
+
+        // saving the fixtures also fetches a block of ids, so inserts in the tests do not hit the sequence
+        id = customerRepository.save(customer("Michale", "Weston")).getId();
+        otherId = customerRepository.save(customer("Sam", "Axe")).getId();
+        tombstoneRepository.save(new Tombstone(ResourceChange.CUSTOMERS, -1L, Instant.now()));
+
+        entityManagerHolder = new EntityManagerHolder(entityManagerFactory.createEntityManager());
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, entityManagerHolder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        entityManagerHolder.getEntityManager().close();
+        customerRepository.deleteAllInBatch();
+        tombstoneRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void getAllCustomers() {
+        assertStatements(1, () -> customerService.getAllCustomers());
+    }
+
+    @Test
+    void getCustomersPage() {
+        assertStatements(1, () -> customerService.getCustomersPage(null, 10));
+    }
+
+    @Test
+    void exportCustomers() {
+        // the service is not proxied here, so the read-only transaction of exportCustomers is started by hand
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertStatements(1, () -> readOnly.executeWithoutResult(
+                status -> customerService.exportCustomers(customer -> { })));
+    }
+
+    @Test
+    void getCustomerById() {
+        assertStatements(1, () -> customerService.getCustomerById(id));
+    }
+
+    @Test
+    void getCustomerVersion() {
+        assertStatements(1, () -> customerService.getCustomerVersion(id));
+    }
+
+    @Test
+    void getCachedCustomerVersion() {
+        cacheManager.getCache(CacheConfig.CUSTOMERS_CACHE).put(id, customerService.getCustomerById(id));
+
+        assertStatements(0, () -> customerService.getCustomerVersion(id));
+    }
+
+    @Test
+    void getCustomersByIds() {
+        assertStatements(1, () -> customerService.getCustomersByIds(Arrays.asList(id, otherId, -1L)));
+    }
+
+    @Test
+    void readsLeaveNoEntitiesInThePersistenceContext() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        customerService.getAllCustomers();
+        customerService.getCustomersPage(null, 10);
+        customerService.getCustomerById(id);
+        customerService.getCustomersByIds(Arrays.asList(id, otherId));
+        readOnly.executeWithoutResult(status -> customerService.exportCustomers(customer -> { }));
+
+        Session session = entityManagerHolder.getEntityManager().unwrap(Session.class);
+        assertEquals(0, session.getStatistics().getEntityCount());
+    }
+
+    @Test
+    void createNewCustomer() {
+        assertStatements(1, () -> customerService.createNewCustomer(customerDTO("Fred")));
+    }
+
+    @Test
+    void createNewCustomersIsOneBatch() {
+        assertStatements(1, () -> customerService.createNewCustomers(
+                Arrays.asList(customerDTO("Fred"), customerDTO("Wilma"), customerDTO("Barney"))));
+    }
+
+    @Test
+    void saveCustomerByDTOSelectsThenUpdates() {
+        assertStatements(2, () -> customerService.saveCustomerByDTO(id, customerDTO("Fred")));
+    }
+
+    @Test
+    void saveCustomerByDTOSelectsThenInsertsUnknownId() {
+        assertStatements(2, () -> customerService.saveCustomerByDTO(-1L, customerDTO("Fred")));
+    }
+
+    @Test
+    void patchCustomerSelectsThenUpdates() {
+        assertStatements(2, () -> customerService.patchCustomer(id, customerDTO("Fred")));
+    }
+
+    @Test
+    void patchCustomerInPlace() {
+        assertStatements(1, () -> customerService.patchCustomerInPlace(id, customerDTO("Fred")));
+    }
+
+    @Test
+    void patchCustomerInPlaceWithStaleVersionChecksExistence() {
+        CustomerDTO customerDTO = customerDTO("Fred");
+        customerDTO.setVersion(99L);
+
+        assertStatements(2, () -> assertThrows(PreconditionFailedException.class,
+                () -> customerService.patchCustomerInPlace(id, customerDTO)));
+    }
+
+    @Test
+    void deleteCustomerByID() {
+        // the DELETE and the tombstone INSERT
+        assertStatements(2, () -> customerService.deleteCustomerByID(id));
+    }
+
+    @Test
+    void deleteCustomersByIDs() {
+        // the service is not proxied here, so the transaction holding the row locks is started by hand
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // the SELECT locking the existing ids, the DELETE and one batched INSERT for both tombstones
+        assertStatements(3, () -> transaction.executeWithoutResult(
+                status -> customerService.deleteCustomersByIDs(Arrays.asList(id, otherId))));
+    }
+
+    @Test
+    void deleteCustomersByNoIDs() {
+        assertStatements(0, () -> customerService.deleteCustomersByIDs(Collections.emptyList()));
+    }
+
+    private static void assertStatements(long expected, Runnable operation) {
+        assertEquals(expected, SqlStatementCounter.count(operation));
+    }
+
+    private static Customer customer(String firstName, String lastName) {
+        Customer customer = new Customer();
+        customer.setFirstName(firstName);
+        customer.setLastName(lastName);
+        return customer;
+    }
+
+    private static CustomerDTO customerDTO(String firstName) {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName(firstName);
+        customerDTO.setLastName("Flintstone");
+        return customerDTO;
+    }
+}
@@ -1,17 +1,39 @@
 package guru.springfamework.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.mapper.CustomerMapper;
+import guru.springfamework.api.v1.model.CustomerChangesDTO;
 import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerLookupDTO;
+import guru.springfamework.api.v1.model.CustomerPageDTO;
+import guru.springfamework.changes.ResourceChange;
 import guru.springfamework.controllers.v1.CustomerController;
 import guru.springfamework.domain.Customer;
+import guru.springfamework.domain.CustomerView;
 import guru.springfamework.repositories.CustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,18 +50,27 @@ class CustomerServiceTest {
     @Mock
     CustomerRepository customerRepository;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    Tombstones tombstones;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
 
-        customerService = new CustomerServiceImpl(CustomerMapper.INSTANCE, customerRepository);
+        customerService = new CustomerServiceImpl(CustomerMapper.INSTANCE, customerRepository,
+                new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), eventPublisher, tombstones,
+                new ConcurrentMapCacheManager());
     }
 
     @Test
     void getAllCustomers() throws Exception {
-        List<Customer> categories = Arrays.asList(new Customer(),new Customer(),new Customer());
+        List<CustomerView> customers = Arrays.asList(customerViewWithId(1L), customerViewWithId(2L), customerViewWithId(3L));
 
-        when(customerRepository.findAll()).thenReturn(categories);
+        when(customerRepository.findAllViews()).thenReturn(customers);
 
         List<CustomerDTO> customerDTOS = customerService.getAllCustomers();
 
@@ -47,14 +78,124 @@ class CustomerServiceTest {
     }
 
     @Test
-    public void getCustomerById() throws Exception {
+    void getCustomersPage() throws Exception {
         //given
-        Customer customer1 = new Customer();
-        customer1.setId(ID);
-        customer1.setFirstName(FIRST_NAME);
-        customer1.setLastName(LAST_NAME);
+        List<CustomerView> customers = Arrays.asList(customerViewWithId(3L), customerViewWithId(4L), customerViewWithId(5L));
 
-        when(customerRepository.findById(anyLong())).thenReturn(java.util.Optional.ofNullable(customer1));
+        when(customerRepository.findViewsAfter(eq(2L), any(Pageable.class))).thenReturn(customers);
+
+        //when
+        CustomerPageDTO page = customerService.getCustomersPage(PageCursor.encode(2L), 2);
+
+        //then
+        assertEquals(2, page.getCustomers().size());
+        assertEquals(getCustomerUri(4L), page.getCustomers().get(1).getCustomerUrl());
+        assertEquals(4L, PageCursor.decode(page.getNext()));
+    }
+
+    @Test
+    void getCustomersLastPage() throws Exception {
+        when(customerRepository.findViewsAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(customerViewWithId(1L)));
+
+        CustomerPageDTO page = customerService.getCustomersPage(null, 2);
+
+        assertEquals(1, page.getCustomers().size());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void getCustomersPageInvalidLimit() throws Exception {
+        assertThrows(BadRequestException.class, () -> customerService.getCustomersPage(null, 0));
+    }
+
+    @Test
+    void findCustomersWithoutFiltersPagesById() throws Exception {
+        when(customerRepository.findViewsAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(customerViewWithId(1L)));
+
+        CustomerPageDTO page = customerService.findCustomers(Collections.singletonMap("lastName", null), null, null, 2);
+
+        assertEquals(1, page.getCustomers().size());
+        verify(customerRepository, never()).findViews(any(), any(), anyInt());
+    }
+
+    @Test
+    void findCustomersFiltered() throws Exception {
+        //given
+        when(customerRepository.findViews(any(), eq(Sort.by(Sort.Direction.DESC, "lastName", "id")), eq(2)))
+                .thenReturn(Arrays.asList(new CustomerView(5L, 0L, "Jim", "Axe"), new CustomerView(3L, 0L, "Ann", "Axe")));
+
+        //when
+        CustomerPageDTO page = customerService.findCustomers(Collections.singletonMap("lastName", "prefix:A"), "-lastName", null, 1);
+
+        //then
+        assertEquals(1, page.getCustomers().size());
+        assertNotNull(page.getNext());
+    }
+
+    @Test
+    void findCustomersRejectsUnsupportedFilterAndSort() throws Exception {
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.singletonMap("customerURL", "x"), null, null, 10));
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.emptyMap(), "-version", null, 10));
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.emptyMap(), "lastName", "not a cursor", 10));
+    }
+
+    @Test
+    void findCustomersRejectsQueriesOutOfIndexOrder() throws Exception {
+        // a filter on one field sorted by another
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.singletonMap("lastName", "Axe"), "firstName", null, 10));
+        // a prefix or in-list sorted by id
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.singletonMap("lastName", "prefix:A"), null, null, 10));
+        assertThrows(BadRequestException.class,
+                () -> customerService.findCustomers(Collections.singletonMap("lastName", "in:Axe,Weston"), "-id", null, 10));
+        // two filtered fields
+        Map<String, String> filters = new HashMap<>();
+        filters.put("firstName", "Sam");
+        filters.put("lastName", "Axe");
+        assertThrows(BadRequestException.class, () -> customerService.findCustomers(filters, "lastName", null, 10));
+
+        verify(customerRepository, never()).findViews(any(), any(), anyInt());
+    }
+
+    @Test
+    void findCustomersByExactValueSortedById() throws Exception {
+        //given
+        when(customerRepository.findViews(any(), eq(Sort.by(Sort.Direction.DESC, "id")), eq(3)))
+                .thenReturn(Arrays.asList(new CustomerView(5L, 0L, "Jim", "Axe")));
+
+        //when
+        CustomerPageDTO page = customerService.findCustomers(Collections.singletonMap("lastName", "Axe"), "-id", null, 2);
+
+        //then
+        assertEquals(1, page.getCustomers().size());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void exportCustomers() throws Exception {
+        //given
+        when(customerRepository.streamAllViews()).thenReturn(Stream.of(customerViewWithId(1L), customerViewWithId(2L)));
+
+        //when
+        List<CustomerDTO> exported = new ArrayList<>();
+        customerService.exportCustomers(exported::add);
+
+        //then
+        assertEquals(2, exported.size());
+        assertEquals(getCustomerUri(2L), exported.get(1).getCustomerUrl());
+    }
+
+    @Test
+    public void getCustomerById() throws Exception {
+        //given
+        when(customerRepository.findViewById(anyLong()))
+                .thenReturn(java.util.Optional.of(new CustomerView(ID, 0L, FIRST_NAME, LAST_NAME)));
 
         //when
         CustomerDTO customerDTO = customerService.getCustomerById(ID);
@@ -62,6 +203,23 @@ class CustomerServiceTest {
         assertEquals(FIRST_NAME, customerDTO.getFirstName());
     }
 
+    @Test
+    void getCustomersByIds() throws Exception {
+        //given
+        when(customerRepository.findViewsByIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(customerViewWithId(1L), customerViewWithId(3L)));
+
+        //when
+        CustomerLookupDTO lookup = customerService.getCustomersByIds(Arrays.asList(3L, 2L, 1L, 3L));
+
+        //then
+        assertEquals(2, lookup.getCustomers().size());
+        assertEquals(getCustomerUri(3L), lookup.getCustomers().get(0).getCustomerUrl());
+        assertEquals(getCustomerUri(1L), lookup.getCustomers().get(1).getCustomerUrl());
+        assertEquals(Arrays.asList(2L), lookup.getMissing());
+        verify(customerRepository, times(1)).findViewsByIdIn(anyCollection());
+    }
+
     @Test
     public void createNewCustomer() throws Exception {
 
@@ -82,6 +240,60 @@ class CustomerServiceTest {
         //then
         assertEquals(customerDTO.getFirstName(), savedDto.getFirstName());
         assertEquals(getCustomerUri(ID), savedDto.getCustomerUrl());
+
+        ArgumentCaptor<ResourceChange> change = ArgumentCaptor.forClass(ResourceChange.class);
+        verify(eventPublisher).publishEvent(change.capture());
+        assertEquals(ResourceChange.Type.CREATED, change.getValue().getType());
+        assertEquals(getCustomerUri(ID), change.getValue().getUrl());
+    }
+
+    @Test
+    void createNewCustomers() throws Exception {
+        //given
+        int count = CustomerServiceImpl.BATCH_CHUNK_SIZE * 2 + 1;
+        List<CustomerDTO> customerDTOS = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            customerDTOS.add(new CustomerDTO(FIRST_NAME2, LAST_NAME, null));
+        }
+
+        AtomicLong ids = new AtomicLong();
+        when(customerRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Customer> chunk = invocation.getArgument(0);
+            chunk.forEach(customer -> customer.setId(ids.incrementAndGet()));
+            return chunk;
+        });
+
+        //when
+        List<CustomerDTO> created = customerService.createNewCustomers(customerDTOS);
+
+        //then
+        assertEquals(count, created.size());
+        assertEquals(getCustomerUri((long) count), created.get(count - 1).getCustomerUrl());
+        verify(customerRepository, times(3)).saveAll(anyList());
+        verify(customerRepository, times(3)).flushAndClear();
+    }
+
+    @Test
+    void importCustomers() throws Exception {
+        //given
+        List<CustomerDTO> customerDTOS = Arrays.asList(new CustomerDTO(FIRST_NAME, LAST_NAME, null),
+                new CustomerDTO(FIRST_NAME2, LAST_NAME, null));
+
+        AtomicLong ids = new AtomicLong();
+        when(customerRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Customer> batch = invocation.getArgument(0);
+            batch.forEach(customer -> customer.setId(ids.incrementAndGet()));
+            return batch;
+        });
+
+        //when
+        customerService.importCustomers(customerDTOS);
+
+        //then
+        ArgumentCaptor<List<Customer>> saved = ArgumentCaptor.forClass(List.class);
+        verify(customerRepository).saveAll(saved.capture());
+        assertEquals(FIRST_NAME2, saved.getValue().get(1).getFirstName());
+        verify(eventPublisher, times(2)).publishEvent(any(ResourceChange.class));
     }
 
     @Test
@@ -103,6 +315,11 @@ class CustomerServiceTest {
         //then
         assertEquals(customerDTO.getFirstName(), savedDto.getFirstName());
         assertEquals(getCustomerUri(ID), savedDto.getCustomerUrl());
+
+        ArgumentCaptor<ResourceChange> change = ArgumentCaptor.forClass(ResourceChange.class);
+        verify(eventPublisher).publishEvent(change.capture());
+        assertEquals(ResourceChange.Type.CREATED, change.getValue().getType());
+        assertEquals(getCustomerUri(ID), change.getValue().getUrl());
     }
 
     @Test
@@ -133,6 +350,57 @@ class CustomerServiceTest {
         assertEquals(getCustomerUri(ID), savedDto.getCustomerUrl());
     }
 
+    @Test
+    void patchCustomerInPlace() throws Exception{
+        //given
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setLastName(LAST_NAME);
+
+        when(customerRepository.patchById(eq(ID), isNull(), eq(LAST_NAME), any(Instant.class))).thenReturn(1);
+
+        //when
+        Long patchedVersion = customerService.patchCustomerInPlace(ID, customerDTO);
+
+        //then
+        assertNull(patchedVersion);
+        verify(customerRepository, never()).findById(anyLong());
+        verify(customerRepository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    void patchCustomerInPlaceNotFound() throws Exception{
+        when(customerRepository.patchById(anyLong(), any(), any(), any())).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> customerService.patchCustomerInPlace(ID, new CustomerDTO()));
+    }
+
+    @Test
+    void patchCustomerInPlaceUnknownIdWithVersion() throws Exception{
+        when(customerRepository.patchByIdAndVersion(anyLong(), anyLong(), any(), any(), any())).thenReturn(0);
+        when(customerRepository.existsById(ID)).thenReturn(false);
+
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setVersion(0L);
+        assertThrows(ResourceNotFoundException.class, () -> customerService.patchCustomerInPlace(ID, customerDTO));
+    }
+
+    @Test
+    void patchCustomerStaleVersion() throws Exception{
+        //given
+        Customer customer = customerWithId(ID);
+        customer.setVersion(5L);
+        when(customerRepository.findById(ID)).thenReturn(java.util.Optional.of(customer));
+
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setFirstName(FIRST_NAME2);
+        customerDTO.setVersion(4L);
+
+        //when/then
+        assertThrows(PreconditionFailedException.class, () -> customerService.patchCustomer(ID, customerDTO));
+        verify(customerRepository, never()).save(any(Customer.class));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
     @Test
     public void deleteCustomerById() throws Exception{
         Long id =ID;
@@ -142,6 +410,94 @@ class CustomerServiceTest {
         verify(customerRepository, times(1)).deleteById(anyLong());
     }
 
+    @Test
+    void deleteCustomerByIdNotFound() throws Exception{
+        when(customerRepository.purgeById(ID)).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> customerService.deleteCustomerByID(ID));
+        verify(customerRepository, never()).findById(anyLong());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(tombstones, never()).record(any(), anyCollection());
+    }
+
+    @Test
+    void deleteCustomersByIds() throws Exception{
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        List<Long> existing = Arrays.asList(1L, 3L);
+        when(customerRepository.lockExistingIds(ids)).thenReturn(existing);
+        when(customerRepository.purgeAllByIdIn(existing)).thenReturn(2);
+
+        assertEquals(2, customerService.deleteCustomersByIDs(ids));
+        // id 2 never existed, so nobody is told it was deleted
+        verify(eventPublisher, times(2)).publishEvent(any(ResourceChange.class));
+        verify(tombstones).record(ResourceChange.CUSTOMERS, existing);
+    }
+
+    @Test
+    void deleteCustomersByIdsThatDoNotExist() throws Exception{
+        assertEquals(0, customerService.deleteCustomersByIDs(Arrays.asList(7L, 8L)));
+        verify(customerRepository, never()).purgeAllByIdIn(anyCollection());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(tombstones, never()).record(any(), anyCollection());
+    }
+
+    @Test
+    void getCustomersChangedSince() throws Exception{
+        //given
+        Instant since = Instant.now().minusSeconds(60);
+        String token = SyncToken.next(since, since);
+        when(customerRepository.findViewsModifiedAfter(any(Instant.class)))
+                .thenReturn(Arrays.asList(new CustomerView(1L, 2L, FIRST_NAME, LAST_NAME)));
+        when(tombstones.deletedAfter(eq(ResourceChange.CUSTOMERS), any(Instant.class))).thenReturn(Arrays.asList(7L));
+
+        //when
+        CustomerChangesDTO changes = customerService.getCustomersChangedSince(token);
+
+        //then
+        assertEquals(1, changes.getCustomers().size());
+        assertEquals(getCustomerUri(1L), changes.getCustomers().get(0).getCustomerUrl());
+        assertEquals(Arrays.asList(7L), changes.getDeleted());
+        assertTrue(SyncToken.decode(changes.getToken()).isAfter(SyncToken.decode(token)));
+        verify(customerRepository, never()).findAllViews();
+    }
+
+    @Test
+    void getCustomersChangedSinceWithoutTokenGetsAll() throws Exception{
+        //given
+        when(customerRepository.findAllViews()).thenReturn(Arrays.asList(new CustomerView(1L, 0L, FIRST_NAME, LAST_NAME)));
+        when(tombstones.deletedAfter(ResourceChange.CUSTOMERS, null)).thenReturn(Collections.emptyList());
+
+        //when
+        CustomerChangesDTO changes = customerService.getCustomersChangedSince("");
+
+        //then
+        assertEquals(1, changes.getCustomers().size());
+        assertTrue(changes.getDeleted().isEmpty());
+        assertNotNull(changes.getToken());
+        verify(customerRepository, never()).findViewsModifiedAfter(any());
+    }
+
+    @Test
+    void deleteCustomersByIdsTooMany() throws Exception{
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id <= CustomerServiceImpl.MAX_IDS_PER_REQUEST; id++) {
+            ids.add(id);
+        }
+
+        assertThrows(BadRequestException.class, () -> customerService.deleteCustomersByIDs(ids));
+        verify(customerRepository, never()).purgeAllByIdIn(anyCollection());
+    }
+
+    private Customer customerWithId(Long id) {
+        Customer customer = new Customer();
+        customer.setId(id);
+        return customer;
+    }
+
+    private CustomerView customerViewWithId(Long id) {
+        return new CustomerView(id, 0L, null, null);
+    }
+
     private String getCustomerUri(Long Id){
         return CustomerController.BASE_URL + Id;
     }
@@ -0,0 +1,214 @@
+package guru.springfamework.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    private static final String GROUP = "customers";
+
+    RequestCoalescer requestCoalescer;
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        requestCoalescer = new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry());
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneLoad() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        Future<String> leader = executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "Michale";
+        }));
+        waitUntilInFlight();
+
+        List<Future<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            waiters.add(executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitUntil(() -> requestCoalescer.getCollapsed(GROUP) == 7);
+        release.countDown();
+
+        //then
+        assertEquals("Michale", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> waiter : waiters) {
+            assertEquals("Michale", waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, requestCoalescer.getLoads(GROUP));
+        assertEquals(7, requestCoalescer.getCollapsed(GROUP));
+    }
+
+    @Test
+    void differentKeysLoadSeparately() throws Exception {
+        requestCoalescer.execute(GROUP, 1L, () -> "a");
+        requestCoalescer.execute(GROUP, 2L, () -> "b");
+        requestCoalescer.execute("vendors", 1L, () -> "c");
+
+        assertEquals(2, requestCoalescer.getLoads(GROUP));
+        assertEquals(0, requestCoalescer.getCollapsed(GROUP));
+    }
+
+    @Test
+    void waitersSeeTheLoadException() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            await(release);
+            throw new ResourceNotFoundException("Customer 1 not found");
+        }));
+        waitUntilInFlight();
+
+        //when
+        Future<String> waiter = executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> "other"));
+        waitUntil(() -> requestCoalescer.getCollapsed(GROUP) == 1);
+        release.countDown();
+
+        //then
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderFailure.getCause() instanceof ResourceNotFoundException);
+        assertTrue(waiterFailure.getCause() instanceof ResourceNotFoundException);
+    }
+
+    @Test
+    void waiterTimesOut() throws Exception {
+        //given
+        requestCoalescer = new RequestCoalescer(Duration.ofMillis(50), new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            await(release);
+            return "Michale";
+        }));
+        waitUntilInFlight();
+
+        //when/then
+        assertThrows(ServiceUnavailableException.class, () -> requestCoalescer.execute(GROUP, 1L, () -> "other"));
+        assertEquals(1, requestCoalescer.getTimeouts(GROUP));
+        release.countDown();
+    }
+
+    @Test
+    void waiterTimeoutCanBeSetPerCall() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            await(release);
+            return "Michale";
+        }));
+        waitUntilInFlight();
+
+        //when/then
+        assertThrows(ServiceUnavailableException.class,
+                () -> requestCoalescer.execute(GROUP, 1L, Duration.ofMillis(50), () -> "other"));
+        assertEquals(1, requestCoalescer.getTimeouts(GROUP));
+        release.countDown();
+    }
+
+    @Test
+    void callAfterAWriteStartsANewLoad() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> before = executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            await(release);
+            return "Michale";
+        }));
+        waitUntilInFlight();
+
+        //when
+        requestCoalescer.invalidate(GROUP, 1L);
+        String after = requestCoalescer.execute(GROUP, 1L, () -> "Fred");
+
+        //then
+        assertEquals("Fred", after);
+        assertEquals(2, requestCoalescer.getLoads(GROUP));
+        assertEquals(0, requestCoalescer.getCollapsed(GROUP));
+        release.countDown();
+        assertEquals("Michale", before.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void writeInATransactionInvalidatesOnCommit() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> {
+            await(release);
+            return "Michale";
+        }));
+        waitUntilInFlight();
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            //when
+            requestCoalescer.invalidate(GROUP, 1L);
+            Future<String> beforeCommit = executor.submit(() -> requestCoalescer.execute(GROUP, 1L, () -> "other"));
+            waitUntil(() -> requestCoalescer.getCollapsed(GROUP) == 1);
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+
+            //then
+            assertEquals("Fred", requestCoalescer.execute(GROUP, 1L, () -> "Fred"));
+            release.countDown();
+            assertEquals("Michale", beforeCommit.get(5, TimeUnit.SECONDS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void waitUntilInFlight() throws InterruptedException {
+        waitUntil(() -> requestCoalescer.getLoads(GROUP) == 1);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
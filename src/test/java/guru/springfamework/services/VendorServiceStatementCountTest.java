@@ -0,0 +1,231 @@
+package guru.springfamework.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
+import guru.springfamework.api.v1.mapper.VendorMapper;
+import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.changes.ResourceChange;
+import guru.springfamework.config.CacheConfig;
+import guru.springfamework.domain.Vendor;
+import guru.springfamework.domain.Tombstone;
+import guru.springfamework.metrics.SqlStatementCounter;
+import guru.springfamework.metrics.StatementCountingDataSourcePostProcessor;
+import guru.springfamework.repositories.TombstoneRepository;
+import guru.springfamework.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The exact number of SQL statements every operation sends to the database. Each test runs like a request:
+ * without a surrounding transaction and with one entity manager for the whole call, as open-in-view provides.
+ */
+@DataJpaTest
+@Import(StatementCountingDataSourcePostProcessor.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VendorServiceStatementCountTest {
+
+    @Autowired
+    VendorRepository vendorRepository;
+
+    @Autowired
+    TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    VendorService vendorService;
+
+    CacheManager cacheManager;
+
+    EntityManagerHolder entityManagerHolder;
+
+    Long id;
+
+    Long otherId;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager();
+        vendorService = new VendorServiceImpl(VendorMapper.INSTANCE, vendorRepository,
+                new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), event -> { },
+                new Tombstones(tombstoneRepository, Duration.ofDays(30)), cacheManager);
+
+        // saving the fixtures also fetches a block of ids, so inserts in the tests do not hit the sequence
+        id = vendorRepository.save(vendor("Western Tasty Fruits Ltd.")).getId();
+        otherId = vendorRepository.save(vendor("Exotic Fruits Company.")).getId();
+        tombstoneRepository.save(new Tombstone(ResourceChange.VENDORS, -1L, Instant.now()));
+
+        entityManagerHolder = new EntityManagerHolder(entityManagerFactory.createEntityManager());
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, entityManagerHolder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        entityManagerHolder.getEntityManager().close();
+        vendorRepository.deleteAllInBatch();
+        tombstoneRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void getAllVendors() {
+        assertStatements(1, () -> vendorService.getAllVendors());
+    }
+
+    @Test
+    void getVendorsPage() {
+        assertStatements(1, () -> vendorService.getVendorsPage(null, 10));
+    }
+
+    @Test
+    void exportVendors() {
+        // the service is not proxied here, so the read-only transaction of exportVendors is started by hand
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertStatements(1, () -> readOnly.executeWithoutResult(
+                status -> vendorService.exportVendors(vendor -> { })));
+    }
+
+    @Test
+    void getVendorById() {
+        assertStatements(1, () -> vendorService.getVendorById(id));
+    }
+
+    @Test
+    void getVendorVersion() {
+        assertStatements(1, () -> vendorService.getVendorVersion(id));
+    }
+
+    @Test
+    void getCachedVendorVersion() {
+        cacheManager.getCache(CacheConfig.VENDORS_CACHE).put(id, vendorService.getVendorById(id));
+
+        assertStatements(0, () -> vendorService.getVendorVersion(id));
+    }
+
+    @Test
+    void getVendorsByIds() {
+        assertStatements(1, () -> vendorService.getVendorsByIds(Arrays.asList(id, otherId, -1L)));
+    }
+
+    @Test
+    void readsLeaveNoEntitiesInThePersistenceContext() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        vendorService.getAllVendors();
+        vendorService.getVendorsPage(null, 10);
+        vendorService.getVendorById(id);
+        vendorService.getVendorsByIds(Arrays.asList(id, otherId));
+        readOnly.executeWithoutResult(status -> vendorService.exportVendors(vendor -> { }));
+
+        Session session = entityManagerHolder.getEntityManager().unwrap(Session.class);
+        assertEquals(0, session.getStatistics().getEntityCount());
+    }
+
+    @Test
+    void createNewVendor() {
+        assertStatements(1, () -> vendorService.createNewVendor(vendorDTO("Fresh Fruits Ltd.")));
+    }
+
+    @Test
+    void createNewVendorsIsOneBatch() {
+        assertStatements(1, () -> vendorService.createNewVendors(
+                Arrays.asList(vendorDTO("Fresh Fruits Ltd."), vendorDTO("Home Fruits"), vendorDTO("Fun Fresh Fruits Ltd."))));
+    }
+
+    @Test
+    void saveVendorByDTOSelectsThenUpdates() {
+        assertStatements(2, () -> vendorService.saveVendorByDTO(id, vendorDTO("Fresh Fruits Ltd.")));
+    }
+
+    @Test
+    void saveVendorByDTOSelectsThenInsertsUnknownId() {
+        assertStatements(2, () -> vendorService.saveVendorByDTO(-1L, vendorDTO("Fresh Fruits Ltd.")));
+    }
+
+    @Test
+    void patchVendorSelectsThenUpdates() {
+        assertStatements(2, () -> vendorService.patchVendor(id, vendorDTO("Fresh Fruits Ltd.")));
+    }
+
+    @Test
+    void patchVendorInPlace() {
+        assertStatements(1, () -> vendorService.patchVendorInPlace(id, vendorDTO("Fresh Fruits Ltd.")));
+    }
+
+    @Test
+    void patchVendorInPlaceWithStaleVersionChecksExistence() {
+        VendorDTO vendorDTO = vendorDTO("Fresh Fruits Ltd.");
+        vendorDTO.setVersion(99L);
+
+        assertStatements(2, () -> assertThrows(PreconditionFailedException.class,
+                () -> vendorService.patchVendorInPlace(id, vendorDTO)));
+    }
+
+    @Test
+    void deleteVendorByID() {
+        // the DELETE and the tombstone INSERT
+        assertStatements(2, () -> vendorService.deleteVendorByID(id));
+    }
+
+    @Test
+    void deleteVendorsByIDs() {
+        // the service is not proxied here, so the transaction holding the row locks is started by hand
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // the SELECT locking the existing ids, the DELETE and one batched INSERT for both tombstones
+        assertStatements(3, () -> transaction.executeWithoutResult(
+                status -> vendorService.deleteVendorsByIDs(Arrays.asList(id, otherId))));
+    }
+
+    @Test
+    void deleteVendorsByNoIDs() {
+        assertStatements(0, () -> vendorService.deleteVendorsByIDs(Collections.emptyList()));
+    }
+
+    private static void assertStatements(long expected, Runnable operation) {
+        assertEquals(expected, SqlStatementCounter.count(operation));
+    }
+
+    private static Vendor vendor(String name) {
+        Vendor vendor = new Vendor();
+        vendor.setName(name);
+        return vendor;
+    }
+
+    private static VendorDTO vendorDTO(String name) {
+        VendorDTO vendorDTO = new VendorDTO();
+        vendorDTO.setName(name);
+        return vendorDTO;
+    }
+}
@@ -1,21 +1,45 @@
 package guru.springfamework.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.json.JsonFragmentCache;
 import guru.springfamework.api.v1.mapper.VendorMapper;
+import guru.springfamework.api.v1.model.VendorChangesDTO;
 import guru.springfamework.api.v1.model.VendorDTO;
+import guru.springfamework.api.v1.model.VendorLookupDTO;
+import guru.springfamework.api.v1.model.VendorPageDTO;
+import guru.springfamework.changes.ResourceChange;
 import guru.springfamework.controllers.v1.VendorController;
 import guru.springfamework.domain.Vendor;
+import guru.springfamework.domain.VendorView;
 import guru.springfamework.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class VendorServiceTest {
@@ -28,18 +52,27 @@ class VendorServiceTest {
     @Mock
     VendorRepository vendorRepository;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    Tombstones tombstones;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
 
-        vendorService = new VendorServiceImpl(VendorMapper.INSTANCE, vendorRepository);
+        vendorService = new VendorServiceImpl(VendorMapper.INSTANCE, vendorRepository,
+                new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+                new JsonFragmentCache(new ObjectMapper(), new SimpleMeterRegistry(), DataSize.ofMegabytes(1)), eventPublisher, tombstones,
+                new ConcurrentMapCacheManager());
     }
 
     @Test
     void getAllVendors() throws Exception{
-        List<Vendor> vendors = Arrays.asList(new Vendor(), new Vendor(), new Vendor());
+        List<VendorView> vendors = Arrays.asList(vendorViewWithId(1L), vendorViewWithId(2L), vendorViewWithId(3L));
 
-        when(vendorRepository.findAll()).thenReturn(vendors);
+        when(vendorRepository.findAllViews()).thenReturn(vendors);
 
         List<VendorDTO> vendorDTOS = vendorService.getAllVendors();
 
@@ -47,13 +80,73 @@ class VendorServiceTest {
     }
 
     @Test
-    void getVendorById() throws Exception{
+    void getVendorsPage() throws Exception{
         //given
-        Vendor vendor = new Vendor();
-        vendor.setId(ID);
-        vendor.setName(NAME);
+        List<VendorView> vendors = Arrays.asList(vendorViewWithId(3L), vendorViewWithId(4L));
+
+        when(vendorRepository.findViewsAfter(eq(2L), any(Pageable.class))).thenReturn(vendors);
+
+        //when
+        VendorPageDTO page = vendorService.getVendorsPage(PageCursor.encode(2L), 1);
+
+        //then
+        assertEquals(1, page.getVendors().size());
+        assertEquals(getVendorUri(3L), page.getVendors().get(0).getVendorUrl());
+        assertEquals(3L, PageCursor.decode(page.getNext()));
+    }
+
+    @Test
+    void getVendorsLastPage() throws Exception{
+        when(vendorRepository.findViewsAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(vendorViewWithId(1L)));
 
-        when(vendorRepository.findById(anyLong())).thenReturn(java.util.Optional.ofNullable(vendor));
+        VendorPageDTO page = vendorService.getVendorsPage(null, 5);
+
+        assertEquals(1, page.getVendors().size());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void findVendorsByNameSortedByName() throws Exception{
+        //given
+        when(vendorRepository.findViews(any(), eq(Sort.by(Sort.Direction.ASC, "name", "id")), eq(6)))
+                .thenReturn(Arrays.asList(new VendorView(ID, 0L, NAME)));
+
+        //when
+        VendorPageDTO page = vendorService.findVendors(Collections.singletonMap("name", "in:" + NAME), "name", null, 5);
+
+        //then
+        assertEquals(1, page.getVendors().size());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void findVendorsRejectsTooManyInValues() throws Exception{
+        String names = "in:" + String.join(",", Collections.nCopies(ListQuery.MAX_IN_VALUES + 1, NAME));
+
+        assertThrows(BadRequestException.class,
+                () -> vendorService.findVendors(Collections.singletonMap("name", names), null, null, 5));
+    }
+
+    @Test
+    void exportVendors() throws Exception{
+        //given
+        when(vendorRepository.streamAllViews()).thenReturn(Stream.of(new VendorView(ID, 0L, NAME)));
+
+        //when
+        List<VendorDTO> exported = new ArrayList<>();
+        vendorService.exportVendors(exported::add);
+
+        //then
+        assertEquals(1, exported.size());
+        assertEquals(NAME, exported.get(0).getName());
+        assertEquals(getVendorUri(ID), exported.get(0).getVendorUrl());
+    }
+
+    @Test
+    void getVendorById() throws Exception{
+        //given
+        when(vendorRepository.findViewById(anyLong())).thenReturn(java.util.Optional.of(new VendorView(ID, 0L, NAME)));
 
         //when
         VendorDTO vendorDTO = vendorService.getVendorById(ID);
@@ -61,6 +154,21 @@ class VendorServiceTest {
         assertEquals(NAME, vendorDTO.getName());
     }
 
+    @Test
+    void getVendorsByIds() throws Exception{
+        //given
+        when(vendorRepository.findViewsByIdIn(anyCollection())).thenReturn(Arrays.asList(new VendorView(2L, 0L, NAME)));
+
+        //when
+        VendorLookupDTO lookup = vendorService.getVendorsByIds(Arrays.asList(1L, 2L));
+
+        //then
+        assertEquals(1, lookup.getVendors().size());
+        assertEquals(NAME, lookup.getVendors().get(0).getName());
+        assertEquals(getVendorUri(2L), lookup.getVendors().get(0).getVendorUrl());
+        assertEquals(Arrays.asList(1L), lookup.getMissing());
+    }
+
     @Test
     void createNewVendor() throws Exception{
         //given
@@ -79,6 +187,35 @@ class VendorServiceTest {
         //then
         assertEquals(vendorDTO.getName(), savedDto.getName());
         assertEquals(getVendorUri(ID), savedDto.getVendorUrl());
+
+        ArgumentCaptor<ResourceChange> change = ArgumentCaptor.forClass(ResourceChange.class);
+        verify(eventPublisher).publishEvent(change.capture());
+        assertEquals(ResourceChange.VENDORS, change.getValue().getDomain());
+        assertEquals(ResourceChange.Type.CREATED, change.getValue().getType());
+    }
+
+    @Test
+    void createNewVendors() throws Exception{
+        //given
+        List<VendorDTO> vendorDTOS = Arrays.asList(new VendorDTO(NAME, null), new VendorDTO(NAME2, null));
+
+        when(vendorRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Vendor> chunk = invocation.getArgument(0);
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(i + 1L);
+            }
+            return chunk;
+        });
+
+        //when
+        List<VendorDTO> created = vendorService.createNewVendors(vendorDTOS);
+
+        //then
+        assertEquals(2, created.size());
+        assertEquals(NAME2, created.get(1).getName());
+        assertEquals(getVendorUri(2L), created.get(1).getVendorUrl());
+        verify(vendorRepository, times(1)).saveAll(anyList());
+        verify(vendorRepository, times(1)).flushAndClear();
     }
 
     @Test
@@ -100,6 +237,26 @@ class VendorServiceTest {
         //then
         assertEquals(vendorDTO.getName(), savedDto.getName());
         assertEquals(getVendorUri(ID), savedDto.getVendorUrl());
+
+        ArgumentCaptor<ResourceChange> change = ArgumentCaptor.forClass(ResourceChange.class);
+        verify(eventPublisher).publishEvent(change.capture());
+        assertEquals(ResourceChange.VENDORS, change.getValue().getDomain());
+        assertEquals(ResourceChange.Type.CREATED, change.getValue().getType());
+    }
+
+    @Test
+    void saveVendorByDTOStaleVersion() throws Exception{
+        //given
+        Vendor vendor = vendorWithId(ID);
+        vendor.setVersion(2L);
+        when(vendorRepository.findById(ID)).thenReturn(java.util.Optional.of(vendor));
+
+        VendorDTO vendorDTO = new VendorDTO(NAME2, null);
+        vendorDTO.setVersion(1L);
+
+        //when/then
+        assertThrows(PreconditionFailedException.class, () -> vendorService.saveVendorByDTO(ID, vendorDTO));
+        verify(vendorRepository, never()).save(any(Vendor.class));
     }
 
     @Test
@@ -127,6 +284,57 @@ class VendorServiceTest {
         assertEquals(getVendorUri(ID), savedDto.getVendorUrl());
     }
 
+    @Test
+    void patchVendorInPlace() throws Exception{
+        //given
+        VendorDTO vendorDTO = new VendorDTO();
+        vendorDTO.setName(NAME2);
+
+        when(vendorRepository.patchById(eq(ID), eq(NAME2), any(Instant.class))).thenReturn(1);
+
+        //when
+        Long patchedVersion = vendorService.patchVendorInPlace(ID, vendorDTO);
+
+        //then
+        assertNull(patchedVersion);
+        verify(vendorRepository, never()).findById(anyLong());
+        verify(vendorRepository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    void patchVendorInPlaceNotFound() throws Exception{
+        when(vendorRepository.patchById(eq(ID), eq(NAME2), any(Instant.class))).thenReturn(0);
+
+        VendorDTO vendorDTO = new VendorDTO(NAME2, null);
+        assertThrows(ResourceNotFoundException.class, () -> vendorService.patchVendorInPlace(ID, vendorDTO));
+    }
+
+    @Test
+    void patchVendorInPlaceWithVersion() throws Exception{
+        //given
+        when(vendorRepository.patchByIdAndVersion(eq(ID), eq(3L), eq(NAME2), any(Instant.class))).thenReturn(1);
+
+        VendorDTO vendorDTO = new VendorDTO(NAME2, null);
+        vendorDTO.setVersion(3L);
+
+        //when
+        Long patchedVersion = vendorService.patchVendorInPlace(ID, vendorDTO);
+
+        //then
+        assertEquals(Long.valueOf(4L), patchedVersion);
+        verify(vendorRepository, never()).patchById(anyLong(), any(), any());
+    }
+
+    @Test
+    void patchVendorInPlaceStaleVersion() throws Exception{
+        when(vendorRepository.patchByIdAndVersion(eq(ID), eq(3L), eq(NAME2), any(Instant.class))).thenReturn(0);
+        when(vendorRepository.existsById(ID)).thenReturn(true);
+
+        VendorDTO vendorDTO = new VendorDTO(NAME2, null);
+        vendorDTO.setVersion(3L);
+        assertThrows(PreconditionFailedException.class, () -> vendorService.patchVendorInPlace(ID, vendorDTO));
+    }
+
     @Test
     void deleteVendorByID() throws Exception{
         Long id =ID;
@@ -136,6 +344,58 @@ class VendorServiceTest {
         verify(vendorRepository, times(1)).deleteById(anyLong());
     }
 
+    @Test
+    void deleteVendorByIDNotFound() throws Exception{
+        when(vendorRepository.purgeById(ID)).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> vendorService.deleteVendorByID(ID));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(tombstones, never()).record(any(), any());
+    }
+
+    @Test
+    void deleteVendorsByIDs() throws Exception{
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(vendorRepository.lockExistingIds(ids)).thenReturn(Arrays.asList(2L));
+        when(vendorRepository.purgeAllByIdIn(Arrays.asList(2L))).thenReturn(1);
+
+        assertEquals(1, vendorService.deleteVendorsByIDs(ids));
+        verify(tombstones).record(ResourceChange.VENDORS, Arrays.asList(2L));
+        verify(eventPublisher, times(1)).publishEvent(any(ResourceChange.class));
+    }
+
+    @Test
+    void getVendorsChangedSince() throws Exception{
+        //given
+        Instant since = Instant.ofEpochMilli(System.currentTimeMillis() - 60_000);
+        when(vendorRepository.findViewsModifiedAfter(since)).thenReturn(Arrays.asList(new VendorView(ID, 1L, NAME)));
+        when(tombstones.deletedAfter(ResourceChange.VENDORS, since)).thenReturn(Arrays.asList(2L));
+
+        //when
+        VendorChangesDTO changes = vendorService.getVendorsChangedSince(SyncToken.next(since, since));
+
+        //then
+        assertEquals(1, changes.getVendors().size());
+        assertEquals(getVendorUri(ID), changes.getVendors().get(0).getVendorUrl());
+        assertEquals(Arrays.asList(2L), changes.getDeleted());
+    }
+
+    @Test
+    void getVendorsChangedSinceInvalidToken() throws Exception{
+        assertThrows(BadRequestException.class, () -> vendorService.getVendorsChangedSince("not a token"));
+        verify(vendorRepository, never()).findViewsModifiedAfter(any());
+    }
+
+    private Vendor vendorWithId(Long id) {
+        Vendor vendor = new Vendor();
+        vendor.setId(id);
+        return vendor;
+    }
+
+    private VendorView vendorViewWithId(Long id) {
+        return new VendorView(id, 0L, null);
+    }
+
     private String getVendorUri(long id) {
         return VendorController.BASE_URL + id;
     }
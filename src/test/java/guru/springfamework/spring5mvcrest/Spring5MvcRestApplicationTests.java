@@ -1,16 +1,144 @@
 package guru.springfamework.spring5mvcrest;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springfamework.api.v1.model.CustomerDTO;
+import guru.springfamework.api.v1.model.CustomerListDTO;
+import guru.springfamework.controllers.v1.CustomerController;
+import guru.springfamework.controllers.v1.ImportController;
+import guru.springfamework.domain.Vendor;
+import guru.springfamework.repositories.CustomerRepository;
+import guru.springfamework.repositories.VendorRepository;
+import guru.springfamework.services.CustomerService;
+import guru.springfamework.services.RequestCoalescer;
+import guru.springfamework.services.VendorService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class Spring5MvcRestApplicationTests {
 
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CustomerService customerService;
+
+	@Autowired
+	CustomerRepository customerRepository;
+
+	@Autowired
+	VendorService vendorService;
+
+	@Autowired
+	VendorRepository vendorRepository;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@SpyBean
+	RequestCoalescer requestCoalescer;
+
 	@Test
 	public void contextLoads() {
 	}
 
+	@Test
+	public void lookupsWaitForTheCoalescerOutsideATransaction() {
+		//given
+		List<Boolean> inTransaction = new ArrayList<>();
+		doAnswer(invocation -> {
+			inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+			return invocation.callRealMethod();
+		}).when(requestCoalescer).execute(anyString(), any(), any(Supplier.class));
+		String customerUrl = customerService.createNewCustomer(new CustomerDTO("Jesse", "Porter", null)).getCustomerUrl();
+		Long customerId = Long.valueOf(customerUrl.substring(customerUrl.lastIndexOf('/') + 1));
+		Vendor vendor = new Vendor();
+		vendor.setName("Fiona's Fruits");
+		Long vendorId = vendorRepository.save(vendor).getId();
+
+		//when
+		customerService.getCustomerById(customerId);
+		vendorService.getVendorById(vendorId);
+
+		//then a waiting lookup holds no transaction, and so no connection
+		assertEquals(Arrays.asList(false, false), inTransaction);
+	}
+
+	@Test
+	public void batchIsSaved() {
+		long count = customerRepository.count();
+
+		// through the server, so open-in-view has bound the EntityManager before the batch's transaction starts
+		ResponseEntity<CustomerListDTO> response = restTemplate.postForEntity(CustomerController.BASE_URL + "batch",
+				Arrays.asList(new CustomerDTO("Jesse", "Porter", null), new CustomerDTO("Madeline", "Westen", null)),
+				CustomerListDTO.class);
+
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		assertEquals(count + 2, customerRepository.count());
+		String url = response.getBody().getCustomers().get(1).getCustomerUrl();
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity(url, String.class).getStatusCode());
+	}
+
+	@Test
+	public void batchWithAFailingRowCreatesNone() {
+		long count = customerRepository.count();
+		// the failing row comes after the first chunk of 1000, which has already been flushed
+		List<CustomerDTO> customerDTOs = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			customerDTOs.add(new CustomerDTO("Jesse", "Porter", null));
+		}
+		customerDTOs.add(new CustomerDTO("x".repeat(256), "Porter", null));
+
+		assertThrows(DataIntegrityViolationException.class, () -> customerService.createNewCustomers(customerDTOs));
+
+		assertEquals(count, customerRepository.count());
+	}
+
+	@Test
+	public void importReportsTheRowsTheDatabaseRejects() throws Exception {
+		long count = customerRepository.count();
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+		String rows = "{\"firstName\":\"Jesse\"}\n{\"firstName\":\"" + "x".repeat(256) + "\"}\n{\"firstName\":\"Sam\"}\n";
+
+		ResponseEntity<String> response = restTemplate.postForEntity(CustomerController.BASE_URL + "import",
+				new HttpEntity<>(rows, headers), String.class);
+
+		assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+		String[] lines = response.getBody().split("\n");
+		assertEquals(ImportController.BASE_URL + objectMapper.readTree(lines[0]).get("id").asText(),
+				response.getHeaders().getLocation().toString());
+		JsonNode job = objectMapper.readTree(lines[lines.length - 1]);
+		assertEquals("completed", job.get("state").asText());
+		assertEquals(2, job.get("rowsImported").asInt());
+		assertEquals(1, job.get("rowsFailed").asInt());
+		assertEquals(2, job.get("errors").get(0).get("line").asInt());
+		assertEquals(count + 2, customerRepository.count());
+	}
+
 }